@@ -5,7 +5,11 @@ import com.waffle.modelBrowserPlugin.command.TabCompleter;
 import com.waffle.modelBrowserPlugin.gui.GUIManager;
 import com.waffle.modelBrowserPlugin.listener.BukkitInventoryListener;
 import com.waffle.modelBrowserPlugin.manager.ModelManager;
+import com.waffle.modelBrowserPlugin.manager.PackRolloutManager;
 import com.waffle.modelBrowserPlugin.network.PacketEventsCommunicator;
+import com.waffle.modelBrowserPlugin.util.AssetDeduplicator;
+import com.waffle.modelBrowserPlugin.util.PngOptimizer;
+import com.waffle.modelBrowserPlugin.util.SettledImports;
 import com.waffle.modelBrowserPlugin.util.WebImportServer;
 import com.github.retrooper.packetevents.PacketEvents;
 import org.bukkit.Bukkit;
@@ -19,6 +23,10 @@ public class ModelBrowserPlugin extends JavaPlugin {
     private GUIManager guiManager;
     private PacketEventsCommunicator packetCommunicator;
     private WebImportServer webImportServer;
+    private SettledImports settledImports;
+    private AssetDeduplicator assetDeduplicator;
+    private PngOptimizer pngOptimizer;
+    private PackRolloutManager packRollout;
     private FileConfiguration config;
 
     @Override
@@ -35,6 +43,11 @@ public class ModelBrowserPlugin extends JavaPlugin {
         // Initialize managers
         this.modelManager = new ModelManager(this);
         this.guiManager = new GUIManager(this);
+        this.settledImports = new SettledImports(getDataFolder().toPath().resolve("imports"),
+                getDataFolder().toPath().resolve("cache").resolve("settled-imports.json"));
+        this.assetDeduplicator = new AssetDeduplicator(this, settledImports);
+        this.pngOptimizer = new PngOptimizer(this, settledImports);
+        this.packRollout = new PackRolloutManager(this);
         this.webImportServer = new WebImportServer(this);
 
         // Initialize PacketEvents communicator
@@ -132,10 +145,17 @@ public class ModelBrowserPlugin extends JavaPlugin {
         getLogger().info("Loaded " + modelCount + " models");
         getLogger().info("Network: PacketEvents");
         getLogger().info("=======================================");
+
+        // Build the pack once so joining players can be sent the current version
+        packRollout.scheduleBuild();
     }
 
     @Override
     public void onDisable() {
+        if (packRollout != null) {
+            packRollout.shutdown();
+        }
+
         // Stop web import server
         if (webImportServer != null) {
             webImportServer.stop();
@@ -209,6 +229,41 @@ public class ModelBrowserPlugin extends JavaPlugin {
         return guiManager;
     }
 
+    /**
+     * Returns the record of imports/ files whose pack copy was changed after import.
+     */
+    public SettledImports getSettledImports() {
+        return settledImports;
+    }
+
+    /**
+     * Returns the AssetDeduplicator shared by imports and the dedupe command.
+     */
+    public AssetDeduplicator getAssetDeduplicator() {
+        return assetDeduplicator;
+    }
+
+    /**
+     * Returns the PngOptimizer shared by imports and the optimize command.
+     */
+    public PngOptimizer getPngOptimizer() {
+        return pngOptimizer;
+    }
+
+    /**
+     * Get the pack rollout manager
+     */
+    public PackRolloutManager getPackRollout() {
+        return packRollout;
+    }
+
+    /**
+     * Get the web import server
+     */
+    public WebImportServer getWebImportServer() {
+        return webImportServer;
+    }
+
     /**
      * Returns the PacketEventsCommunicator for network communication.
      */
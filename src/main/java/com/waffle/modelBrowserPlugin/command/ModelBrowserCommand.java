@@ -2,15 +2,28 @@ package com.waffle.modelBrowserPlugin.command;
 
 import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
 import com.waffle.modelBrowserPlugin.gui.ModelBrowserGUI;
+import com.waffle.modelBrowserPlugin.manager.ModelBatch;
 import com.waffle.modelBrowserPlugin.manager.ModelManager;
+import com.waffle.modelBrowserPlugin.network.PacketEventsCommunicator;
+import com.waffle.modelBrowserPlugin.util.AssetDeduplicator;
+import com.waffle.modelBrowserPlugin.util.PackCopyEngine;
+import com.waffle.modelBrowserPlugin.util.PackOptimizer;
+import com.waffle.modelBrowserPlugin.util.PackZipBuilder;
+import com.waffle.modelBrowserPlugin.util.PngOptimizer;
+import com.waffle.modelBrowserPlugin.util.ResourcePackImporter;
+import com.waffle.modelBrowserPlugin.util.ThrottledHandler;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
+import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -28,6 +41,9 @@ public class ModelBrowserCommand implements CommandExecutor {
     /** Manager responsible for model operations like loading, searching, and categorization. */
     private final ModelManager modelManager;
 
+    /** Maximum number of plan lines shown in chat for a batch operation. */
+    private static final int MAX_PLAN_LINES = 10;
+
     /**
      * Constructs a new ModelBrowserCommand instance.
      */
@@ -72,6 +88,30 @@ public class ModelBrowserCommand implements CommandExecutor {
             case "delete":
                 return handleDelete(player, args);
 
+            case "move":
+                return handleMove(player, args);
+
+            case "rename":
+                return handleRename(player, args);
+
+            case "import":
+                return handleImport(player);
+
+            case "dedupe":
+                return handleDedupe(player, args);
+
+            case "optimize":
+                return handleOptimize(player, args);
+
+            case "build":
+                return handleBuild(player);
+
+            case "web":
+                return handleWebStats(player);
+
+            case "network":
+                return handleNetworkStats(player);
+
             case "help":
                 return handleHelp(player);
 
@@ -122,11 +162,10 @@ public class ModelBrowserCommand implements CommandExecutor {
 
     private boolean handleList(Player player, String[] args) {
         // Instead of chat output, send model list via PacketEvents to the GUI
-        List<String> models = modelManager.getAvailableModels();
-        plugin.getPacketCommunicator().sendModelList(player, models);
+        plugin.getPacketCommunicator().sendModelList(player);
 
         player.sendMessage(Component.text("Sending model list to GUI...").color(NamedTextColor.GREEN));
-        player.sendMessage(Component.text(models.size() + " models available").color(NamedTextColor.GRAY));
+        player.sendMessage(Component.text(modelManager.getModelCount() + " models available").color(NamedTextColor.GRAY));
         return true;
     }
 
@@ -145,8 +184,7 @@ public class ModelBrowserCommand implements CommandExecutor {
     }
 
     private boolean handleCategories(Player player) {
-        Map<String, List<String>> categories = modelManager.getCategories();
-        plugin.getPacketCommunicator().sendCategories(player, categories);
+        plugin.getPacketCommunicator().sendCategories(player);
 
         player.sendMessage(Component.text("Categories sent to GUI!").color(NamedTextColor.GREEN));
         return true;
@@ -185,22 +223,326 @@ public class ModelBrowserCommand implements CommandExecutor {
         }
 
         if (args.length < 2) {
-            player.sendMessage(Component.text("Usage: /modelbrowser delete <model>").color(NamedTextColor.RED));
+            player.sendMessage(Component.text("Usage: /modelbrowser delete <model...> [--dry-run]").color(NamedTextColor.RED));
             return true;
         }
 
-        String modelId = args[1];
-        boolean success = modelManager.deleteModel(modelId);
+        List<ModelBatch.Operation> operations = new ArrayList<>();
+        for (String modelId : modelArgs(args, 1)) {
+            operations.add(ModelBatch.Operation.delete(modelId));
+        }
 
-        if (success) {
-            player.sendMessage(Component.text("Model deleted: " + modelId).color(NamedTextColor.GREEN));
-        } else {
-            player.sendMessage(Component.text("Model not found: " + modelId).color(NamedTextColor.RED));
+        runBatch(player, operations, isDryRun(args));
+        return true;
+    }
+
+    private boolean handleMove(Player player, String[] args) {
+        if (!player.hasPermission("modelbrowser.admin")) {
+            player.sendMessage(Component.text("You don't have permission!").color(NamedTextColor.RED));
+            return true;
+        }
+
+        if (args.length < 3) {
+            player.sendMessage(Component.text("Usage: /modelbrowser move <namespace> <model...> [--dry-run]").color(NamedTextColor.RED));
+            return true;
+        }
+
+        List<ModelBatch.Operation> operations = new ArrayList<>();
+        for (String modelId : modelArgs(args, 2)) {
+            operations.add(ModelBatch.Operation.move(modelId, args[1].toLowerCase()));
+        }
+
+        runBatch(player, operations, isDryRun(args));
+        return true;
+    }
+
+    private boolean handleRename(Player player, String[] args) {
+        if (!player.hasPermission("modelbrowser.admin")) {
+            player.sendMessage(Component.text("You don't have permission!").color(NamedTextColor.RED));
+            return true;
+        }
+
+        if (args.length < 3) {
+            player.sendMessage(Component.text("Usage: /modelbrowser rename <model> <newName> [--dry-run]").color(NamedTextColor.RED));
+            return true;
+        }
+
+        runBatch(player, List.of(ModelBatch.Operation.rename(args[1], args[2].toLowerCase())), isDryRun(args));
+        return true;
+    }
+
+    private boolean handleImport(Player player) {
+        if (!player.hasPermission("modelbrowser.import")) {
+            player.sendMessage(Component.text("You don't have permission!").color(NamedTextColor.RED));
+            return true;
+        }
+
+        player.sendMessage(Component.text("Importing from imports/ folder...").color(NamedTextColor.GRAY));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                ResourcePackImporter.ImportResult result = ResourcePackImporter.importFromLocalFolder(plugin);
+                PackCopyEngine.Manifest manifest = result.manifest();
+                modelManager.applyDelta(result.changedPackPaths());
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    player.sendMessage(Component.text("Import done: " + manifest.added().size() + " added, "
+                            + manifest.changed().size() + " changed, " + manifest.unchanged() + " unchanged, "
+                            + result.createdItemWrappers() + " new models").color(NamedTextColor.GREEN));
+                    if (!manifest.removed().isEmpty()) {
+                        player.sendMessage(Component.text(manifest.removed().size()
+                                + " file(s) no longer in imports/ were kept in the pack").color(NamedTextColor.GRAY));
+                    }
+                    if (!manifest.failed().isEmpty()) {
+                        player.sendMessage(Component.text(manifest.failed().size()
+                                + " file(s) failed, check console").color(NamedTextColor.RED));
+                    }
+                    if (result.textures().savedBytes() > 0) {
+                        player.sendMessage(Component.text("Optimized " + result.textures().count(PngOptimizer.Status.OPTIMIZED)
+                                + " texture(s), saved " + formatSize(result.textures().savedBytes())).color(NamedTextColor.GRAY));
+                    }
+                    if (result.dedupe().duplicateFiles() > 0) {
+                        player.sendMessage(Component.text("Merged " + result.dedupe().duplicateFiles()
+                                + " duplicate file(s), saved " + formatSize(result.dedupe().reclaimableBytes()))
+                                .color(NamedTextColor.GRAY));
+                    }
+                });
+            } catch (IOException e) {
+                plugin.getLogger().severe("Import failed: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(
+                        Component.text("Import failed! Check console for errors.").color(NamedTextColor.RED)));
+            }
+        });
+        return true;
+    }
+
+    private boolean handleDedupe(Player player, String[] args) {
+        if (!player.hasPermission("modelbrowser.admin")) {
+            player.sendMessage(Component.text("You don't have permission!").color(NamedTextColor.RED));
+            return true;
+        }
+
+        boolean apply = Arrays.asList(args).contains("--apply");
+        player.sendMessage(Component.text("Scanning pack for duplicate assets...").color(NamedTextColor.GRAY));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                AssetDeduplicator.Report report = plugin.getAssetDeduplicator().deduplicate(null, apply);
+                if (report.applied()) {
+                    modelManager.applyDelta(report.changedPaths());
+                }
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    player.sendMessage(Component.text("Scanned " + report.filesScanned() + " files ("
+                            + formatSize(report.bytesScanned()) + "): " + report.duplicateFiles()
+                            + " duplicate(s) in " + report.groups().size() + " group(s), "
+                            + formatSize(report.reclaimableBytes()) + " reclaimable").color(NamedTextColor.GREEN));
+                    int shown = Math.min(report.groups().size(), MAX_PLAN_LINES);
+                    for (int i = 0; i < shown; i++) {
+                        AssetDeduplicator.DuplicateGroup group = report.groups().get(i);
+                        player.sendMessage(Component.text("- " + group.canonical() + " <- "
+                                + String.join(", ", group.duplicates())).color(NamedTextColor.GRAY));
+                    }
+                    if (report.groups().size() > shown) {
+                        player.sendMessage(Component.text("... and " + (report.groups().size() - shown) + " more").color(NamedTextColor.GRAY));
+                    }
+                    if (report.applied()) {
+                        player.sendMessage(Component.text("Removed duplicates and updated "
+                                + report.rewrittenFiles().size() + " referencing file(s)").color(NamedTextColor.GREEN));
+                    } else if (report.duplicateFiles() > 0) {
+                        player.sendMessage(Component.text("Run /modelbrowser dedupe --apply to merge them").color(NamedTextColor.YELLOW));
+                    }
+                });
+            } catch (IOException e) {
+                plugin.getLogger().severe("Dedupe failed: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(
+                        Component.text("Dedupe failed! Check console for errors.").color(NamedTextColor.RED)));
+            }
+        });
+        return true;
+    }
+
+    private boolean handleOptimize(Player player, String[] args) {
+        if (!player.hasPermission("modelbrowser.admin")) {
+            player.sendMessage(Component.text("You don't have permission!").color(NamedTextColor.RED));
+            return true;
+        }
+        if (args.length >= 2 && args[1].equalsIgnoreCase("pack")) {
+            return handleOptimizePack(player);
+        }
+        if (args.length < 2 || !args[1].equalsIgnoreCase("textures")) {
+            player.sendMessage(Component.text("Usage: /modelbrowser optimize <textures [--dry-run]|pack>").color(NamedTextColor.RED));
+            return true;
+        }
+
+        boolean dryRun = isDryRun(args);
+        player.sendMessage(Component.text("Optimizing pack textures...").color(NamedTextColor.GRAY));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                PngOptimizer.Report report = plugin.getPngOptimizer()
+                        .optimize(null, plugin.getConfig().getInt("optimize.threads", 0), !dryRun);
+                if (!dryRun) {
+                    modelManager.applyDelta(report.optimizedPaths());
+                }
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    player.sendMessage(Component.text((dryRun ? "[Dry run] " : "") + report.files().size() + " textures: "
+                            + formatSize(report.bytesBefore()) + " -> " + formatSize(report.bytesAfter())
+                            + " (saved " + formatSize(report.savedBytes()) + ")").color(NamedTextColor.GREEN));
+                    player.sendMessage(Component.text(report.count(PngOptimizer.Status.OPTIMIZED) + " optimized, "
+                            + report.count(PngOptimizer.Status.ALREADY_OPTIMAL) + " already optimal, "
+                            + report.count(PngOptimizer.Status.CACHED) + " cached, "
+                            + report.count(PngOptimizer.Status.UNSUPPORTED) + " unsupported, "
+                            + report.count(PngOptimizer.Status.FAILED) + " failed").color(NamedTextColor.GRAY));
+                });
+            } catch (IOException e) {
+                plugin.getLogger().severe("Texture optimization failed: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(
+                        Component.text("Optimization failed! Check console for errors.").color(NamedTextColor.RED)));
+            }
+        });
+        return true;
+    }
+
+    private boolean handleOptimizePack(Player player) {
+        player.sendMessage(Component.text("Building optimized pack...").color(NamedTextColor.GRAY));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                PackOptimizer.Report report = PackOptimizer.optimize(plugin);
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    player.sendMessage(Component.text("Optimized pack: " + formatSize(report.inputBytes()) + " -> "
+                            + formatSize(report.outputBytes()) + " (saved " + formatSize(report.savedBytes()) + "), "
+                            + report.inputFiles() + " -> " + report.outputFiles() + " files").color(NamedTextColor.GREEN));
+                    player.sendMessage(Component.text(report.rebuilt() + " rebuilt, " + report.reused() + " reused, "
+                            + report.removed() + " removed, " + report.droppedKeys() + " keys dropped, "
+                            + report.inlinedParents() + " parents inlined").color(NamedTextColor.GRAY));
+                    if (!report.failed().isEmpty()) {
+                        player.sendMessage(Component.text(report.failed().size()
+                                + " file(s) failed, check console").color(NamedTextColor.RED));
+                    }
+                });
+                report.failed().forEach((path, error) -> plugin.getLogger().warning("Optimize failed for " + path + ": " + error));
+            } catch (IOException e) {
+                plugin.getLogger().severe("Pack optimization failed: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(
+                        Component.text("Optimization failed! Check console for errors.").color(NamedTextColor.RED)));
+            }
+        });
+        return true;
+    }
+
+    private boolean handleBuild(Player player) {
+        if (!player.hasPermission("modelbrowser.admin")) {
+            player.sendMessage(Component.text("You don't have permission!").color(NamedTextColor.RED));
+            return true;
+        }
+
+        player.sendMessage(Component.text("Building pack zip...").color(NamedTextColor.GRAY));
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                PackZipBuilder.Result result = PackZipBuilder.build(plugin);
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    player.sendMessage(Component.text((result.unchanged() ? "Pack unchanged: " : "Built ")
+                            + result.zip().getFileName() + " (" + formatSize(result.size()) + ", "
+                            + result.entries() + " entries) in " + result.millis() + " ms").color(NamedTextColor.GREEN));
+                    player.sendMessage(Component.text(result.compressed() + " compressed, " + result.reused()
+                            + " reused").color(NamedTextColor.GRAY));
+                    player.sendMessage(Component.text("SHA-1: " + result.sha1()).color(NamedTextColor.YELLOW));
+                    plugin.getPackRollout().publish(result);
+                });
+            } catch (IOException e) {
+                plugin.getLogger().severe("Pack build failed: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(
+                        Component.text("Build failed! Check console for errors.").color(NamedTextColor.RED)));
+            }
+        });
+        return true;
+    }
+
+    private boolean handleWebStats(Player player) {
+        if (!player.hasPermission("modelbrowser.admin")) {
+            player.sendMessage(Component.text("You don't have permission!").color(NamedTextColor.RED));
+            return true;
+        }
+
+        Map<String, ThrottledHandler.Stats> stats = plugin.getWebImportServer().getEndpointStats();
+        if (stats.isEmpty()) {
+            player.sendMessage(Component.text("The web server is not running").color(NamedTextColor.YELLOW));
+            return true;
         }
 
+        player.sendMessage(Component.text("=== Web Endpoints ===").color(NamedTextColor.GOLD));
+        stats.forEach((path, s) -> {
+            player.sendMessage(Component.text(path + ": " + s.requests() + " requests, " + s.limited() + " rate limited, " + s.rejected() + " rejected, "
+                    + s.running() + " running, " + s.queued() + " queued").color(NamedTextColor.YELLOW));
+            player.sendMessage(Component.text("  queue avg " + s.averageQueueNanos() / 1_000_000 + " ms / max "
+                    + s.queueNanosMax() / 1_000_000 + " ms, work avg " + s.averageWorkNanos() / 1_000_000 + " ms / max "
+                    + s.workNanosMax() / 1_000_000 + " ms").color(NamedTextColor.GRAY));
+        });
         return true;
     }
 
+    private boolean handleNetworkStats(Player player) {
+        if (!player.hasPermission("modelbrowser.admin")) {
+            player.sendMessage(Component.text("You don't have permission!").color(NamedTextColor.RED));
+            return true;
+        }
+
+        PacketEventsCommunicator.NetworkStats stats = plugin.getPacketCommunicator().getNetworkStats();
+        player.sendMessage(Component.text("=== Client Messages ===").color(NamedTextColor.GOLD));
+        player.sendMessage(Component.text("Compressed: " + stats.compressed() + ", below threshold: " + stats.belowThreshold()
+                + ", incompressible: " + stats.incompressible()).color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("Bytes: " + formatSize(stats.bytesIn()) + " -> " + formatSize(stats.bytesOut())
+                + " (" + formatSize(stats.bytesSaved()) + " saved)").color(NamedTextColor.YELLOW));
+        player.sendMessage(Component.text("Frames pending: " + stats.pendingFrames() + ", requests queued: " + stats.queuedRequests()
+                + ", dropped: " + stats.droppedRequests()).color(NamedTextColor.GRAY));
+        player.sendMessage(Component.text("Requests over budget: " + stats.limitedRequests() + ", searches merged: "
+                + stats.mergedSearches()).color(NamedTextColor.GRAY));
+        player.sendMessage(Component.text("Clients with a handshake: " + stats.sessions() + ", average RTT: "
+                + (stats.averageRttMillis() >= 0 ? stats.averageRttMillis() + " ms" : "n/a")).color(NamedTextColor.GRAY));
+        return true;
+    }
+
+    /**
+     * Runs a batch off the main thread and reports back to the player.
+     */
+    private void runBatch(Player player, List<ModelBatch.Operation> operations, boolean dryRun) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                ModelBatch.Result result = modelManager.applyBatch(operations, dryRun);
+                List<String> lines = result.plan().describe();
+
+                Bukkit.getScheduler().runTask(plugin, () -> {
+                    NamedTextColor color = result.applied() ? NamedTextColor.GREEN : NamedTextColor.YELLOW;
+                    player.sendMessage(Component.text((dryRun ? "[Dry run] " : "") + lines.get(0)).color(color));
+                    int shown = Math.min(lines.size(), MAX_PLAN_LINES + 1);
+                    for (int i = 1; i < shown; i++) {
+                        player.sendMessage(Component.text(lines.get(i)).color(NamedTextColor.GRAY));
+                    }
+                    if (lines.size() > shown) {
+                        player.sendMessage(Component.text("... and " + (lines.size() - shown) + " more").color(NamedTextColor.GRAY));
+                    }
+                });
+            } catch (IOException e) {
+                plugin.getLogger().severe("Batch operation failed: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(
+                        Component.text("Batch failed! Check console for errors.").color(NamedTextColor.RED)));
+            }
+        });
+    }
+
+    private boolean isDryRun(String[] args) {
+        return Arrays.asList(args).contains("--dry-run");
+    }
+
+    private List<String> modelArgs(String[] args, int from) {
+        List<String> ids = new ArrayList<>();
+        for (int i = from; i < args.length; i++) {
+            if (!args[i].startsWith("--")) ids.add(args[i]);
+        }
+        return ids;
+    }
+
     private boolean handleHelp(Player player) {
         player.sendMessage(Component.text("=== ModelBrowser Help ===").color(NamedTextColor.GOLD));
         player.sendMessage(Component.text("/modelbrowser - Open the Model Browser GUI"));
@@ -215,8 +557,23 @@ public class ModelBrowserCommand implements CommandExecutor {
             player.sendMessage(Component.text("/modelbrowser reload - Reload the plugin"));
         }
 
+        if (player.hasPermission("modelbrowser.admin")) {
+            player.sendMessage(Component.text("/modelbrowser move <namespace> <model...> - Move models to a namespace"));
+            player.sendMessage(Component.text("/modelbrowser rename <model> <newName> - Rename a model"));
+            player.sendMessage(Component.text("/modelbrowser dedupe [--apply] - Find (and merge) duplicate textures and models"));
+            player.sendMessage(Component.text("/modelbrowser optimize textures [--dry-run] - Losslessly recompress pack textures"));
+            player.sendMessage(Component.text("/modelbrowser optimize pack - Build a minified copy of the pack"));
+            player.sendMessage(Component.text("/modelbrowser build - Zip the pack for distribution and print its SHA-1"));
+            player.sendMessage(Component.text("/modelbrowser web - Show web server request counts and timings"));
+            player.sendMessage(Component.text("/modelbrowser network - Show client message compression, queues and round-trip times"));
+        }
+
+        if (player.hasPermission("modelbrowser.import")) {
+            player.sendMessage(Component.text("/modelbrowser import - Import files from the imports/ folder"));
+        }
+
         if (player.hasPermission("modelbrowser.delete")) {
-            player.sendMessage(Component.text("/modelbrowser delete <model> - Delete a model"));
+            player.sendMessage(Component.text("/modelbrowser delete <model...> - Delete models (add --dry-run to preview)"));
         }
 
         player.sendMessage(Component.text(" "));
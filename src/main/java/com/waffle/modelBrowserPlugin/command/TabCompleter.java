@@ -65,12 +65,23 @@ public class TabCompleter implements org.bukkit.command.TabCompleter {
 
             if (player.hasPermission("modelbrowser.admin")) {
                 completions.add("reload");
+                completions.add("move");
+                completions.add("rename");
+                completions.add("dedupe");
+                completions.add("optimize");
+                completions.add("build");
+                completions.add("web");
+                completions.add("network");
             }
 
             if (player.hasPermission("modelbrowser.delete")) {
                 completions.add("delete");
             }
 
+            if (player.hasPermission("modelbrowser.import")) {
+                completions.add("import");
+            }
+
             return filterCompletions(completions, args[0]);
         }
 
@@ -82,12 +93,27 @@ public class TabCompleter implements org.bukkit.command.TabCompleter {
                 case "search":
                     return List.of("<query>");
 
+                case "dedupe":
+                    return filterCompletions(List.of("--apply"), args[1]);
+
+                case "optimize":
+                    return filterCompletions(List.of("textures", "pack"), args[1]);
+
                 case "info":
                 case "delete":
+                case "rename":
                     return filterCompletions(modelManager.getAvailableModels(), args[1]);
             }
         }
 
+        if (args.length > 2) {
+            switch (args[0].toLowerCase()) {
+                case "delete":
+                case "move":
+                    return filterCompletions(modelManager.getAvailableModels(), args[args.length - 1]);
+            }
+        }
+
         return new ArrayList<>();
     }
 
@@ -1,6 +1,7 @@
 package com.waffle.modelBrowserPlugin.gui;
 
 import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
@@ -8,6 +9,7 @@ import org.bukkit.event.inventory.InventoryClickEvent;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -20,6 +22,21 @@ public class GUIManager implements Listener {
     public GUIManager(ModelBrowserPlugin plugin) {
         this.plugin = plugin;
         plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+        // Refresh open browsers as soon as the model index changes (imports, deletes, ...)
+        plugin.getModelManager().addIndexListener((previous, current) ->
+                Bukkit.getScheduler().runTask(plugin, this::refreshBrowsers));
+    }
+
+    /**
+     * Rebuild every open model browser from the current index
+     */
+    private void refreshBrowsers() {
+        for (BaseGUI gui : new ArrayList<>(openGUIs.values())) {
+            if (gui instanceof ModelBrowserGUI browser) {
+                browser.onIndexUpdated();
+            }
+        }
     }
 
     /**
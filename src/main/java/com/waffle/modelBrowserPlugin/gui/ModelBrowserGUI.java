@@ -56,6 +56,9 @@ public class ModelBrowserGUI extends BaseGUI {
         clear();
         List<String> allModels = modelManager.getAvailableModels();
         List<String> itemsModels = getItemsFolderModels(allModels);
+        // The index may have shrunk since the page was chosen
+        int totalPages = Math.max(1, (int) Math.ceil((double) itemsModels.size() / MODELS_PER_PAGE));
+        currentPage = Math.min(currentPage, totalPages - 1);
         int startIdx = currentPage * MODELS_PER_PAGE;
         int endIdx = Math.min(startIdx + MODELS_PER_PAGE, itemsModels.size());
 
@@ -64,6 +67,15 @@ public class ModelBrowserGUI extends BaseGUI {
         addFooterItems(itemsModels.size());
     }
 
+    /**
+     * Called by GUIManager on the main thread when a new model index generation is published.
+     */
+    public void onIndexUpdated() {
+        generateMappings();
+        build();
+        refresh();
+    }
+
     protected List<String> getItemsFolderModels(List<String> allModels) {
         List<String> itemsModels = new ArrayList<>();
         for (String model : allModels) {
@@ -105,10 +117,12 @@ public class ModelBrowserGUI extends BaseGUI {
      * Used for both preview items and "apply to held item".
      */
     private void applyModelToMeta(ItemMeta meta, String modelName) {
-        // Technical link to the JSON file
-        String cleanedKey = modelName.toLowerCase().replace("minecraft:", "");
+        // Technical link to the JSON file (ids are namespaced, e.g. "minecraft:coin")
+        String cleanedKey = modelName.toLowerCase();
         try {
-            meta.setItemModel(NamespacedKey.minecraft(cleanedKey));
+            NamespacedKey key = NamespacedKey.fromString(cleanedKey);
+            if (key == null) throw new IllegalArgumentException("invalid key");
+            meta.setItemModel(key);
         } catch (Exception e) {
             plugin.getLogger().severe("Failed to apply item model: " + cleanedKey);
         }
@@ -126,7 +140,7 @@ public class ModelBrowserGUI extends BaseGUI {
     }
 
     private String formatDisplayName(String name) {
-        String cleaned = name.toLowerCase().replace("minecraft:", "").replace("_", " ");
+        String cleaned = name.toLowerCase().substring(name.indexOf(':') + 1).replace("_", " ");
 
         // Special shields should ONLY trigger when the model id also looks like a shield.
         boolean looksLikeShield = cleaned.contains("shield");
@@ -0,0 +1,435 @@
+package com.waffle.modelBrowserPlugin.manager;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.waffle.modelBrowserPlugin.util.ModelDependencyResolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Plans and applies bulk model operations (delete, move to another namespace, rename).
+ * <p>
+ * A batch is first turned into a {@link Plan} against one {@link ModelIndex} snapshot: every
+ * file that has to be moved, rewritten or deleted is listed up front, and operations that
+ * cannot be applied are skipped with a reason. Files shared with models outside the batch
+ * are never touched, so the rest of the pack keeps working. Neither are files the index cannot
+ * see all users of: {@code minecraft} overrides (vanilla items and blocks may use them), files
+ * in another namespace, and anything a blockstate uses; the plan lists them as kept. The plan can be reported as a
+ * dry run or executed in a single pass by {@link ModelManager#applyBatch(List, boolean)},
+ * which then publishes one new index generation for the whole batch.
+ * </p>
+ */
+public final class ModelBatch {
+
+    private static final Pattern NAMESPACE = Pattern.compile("[a-z0-9_.\\-]+");
+    private static final Pattern NAME = Pattern.compile("[a-z0-9_.\\-]+");
+    /** {@code .} and {@code ..} would resolve to the current or parent folder. */
+    private static final Pattern DOT_ONLY = Pattern.compile("\\.+");
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    private ModelBatch() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    public enum Kind {
+        DELETE,
+        MOVE,
+        RENAME
+    }
+
+    /**
+     * A single requested operation.
+     *
+     * @param kind    what to do
+     * @param modelId namespaced id of the model to change
+     * @param target  target namespace for {@link Kind#MOVE}, new name for {@link Kind#RENAME}, unused for delete
+     */
+    public record Operation(Kind kind, String modelId, String target) {
+        public static Operation delete(String modelId) {
+            return new Operation(Kind.DELETE, modelId, null);
+        }
+
+        public static Operation move(String modelId, String namespace) {
+            return new Operation(Kind.MOVE, modelId, namespace);
+        }
+
+        public static Operation rename(String modelId, String newName) {
+            return new Operation(Kind.RENAME, modelId, newName);
+        }
+    }
+
+    public enum Action {
+        DELETE,
+        MOVE,
+        REWRITE
+    }
+
+    /**
+     * One filesystem change. {@code target} is {@code null} for deletes and for rewrites, which
+     * update references inside a JSON file that stays where it is.
+     */
+    public record Step(Action action, String source, String target) {
+        @Override
+        public String toString() {
+            return switch (action) {
+                case DELETE -> "delete " + source;
+                case MOVE -> "move " + source + " -> " + target;
+                case REWRITE -> "rewrite " + source;
+            };
+        }
+    }
+
+    /**
+     * Everything a batch would do, computed without touching the disk.
+     *
+     * @param steps              file changes in execution order
+     * @param removedIds         model ids that disappear from the index
+     * @param createdIds         model ids that appear in the index (move/rename targets)
+     * @param referenceRewrites  reference keys to rewrite inside moved JSON files and the
+     *                           {@link Action#REWRITE} files (old to new), see
+     *                           {@link ModelDependencyResolver#referenceKey(String)}
+     * @param kept               dependencies left in place although only the batch uses them in
+     *                           the index, keyed by pack path, with the reason
+     * @param skipped            operations that were not planned, keyed by model id, with the reason
+     */
+    public record Plan(
+            List<Step> steps,
+            List<String> removedIds,
+            List<String> createdIds,
+            Map<String, String> referenceRewrites,
+            Map<String, String> kept,
+            Map<String, String> skipped
+    ) {
+        public boolean isEmpty() {
+            return steps.isEmpty();
+        }
+
+        /**
+         * Human-readable plan lines, used for dry runs.
+         */
+        public List<String> describe() {
+            List<String> lines = new ArrayList<>();
+            lines.add(removedIds.size() + " model(s) affected, " + steps.size() + " file change(s), "
+                    + kept.size() + " kept, " + skipped.size() + " skipped");
+            for (Step step : steps) {
+                lines.add("- " + step);
+            }
+            for (Map.Entry<String, String> keep : kept.entrySet()) {
+                lines.add("= keep " + keep.getKey() + ": " + keep.getValue());
+            }
+            for (Map.Entry<String, String> skip : skipped.entrySet()) {
+                lines.add("! " + skip.getKey() + ": " + skip.getValue());
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Outcome of {@link ModelManager#applyBatch(List, boolean)}.
+     *
+     * @param plan       the plan that was reported or executed
+     * @param applied    {@code false} for dry runs and empty plans
+     * @param generation index generation after the batch
+     */
+    public record Result(Plan plan, boolean applied, long generation) {}
+
+    /**
+     * Builds the plan for a batch against the given snapshot.
+     */
+    static Plan plan(ModelIndex index, Path packRoot, Collection<Operation> operations) throws IOException {
+        Map<String, String> skipped = new LinkedHashMap<>();
+        Map<String, Operation> accepted = new LinkedHashMap<>();
+        Set<String> targetIds = new HashSet<>();
+
+        for (Operation op : operations) {
+            String reason = validate(index, op, accepted, targetIds);
+            if (reason != null) {
+                skipped.put(op.modelId(), reason);
+                continue;
+            }
+            accepted.put(op.modelId(), op);
+            if (op.kind() != Kind.DELETE) {
+                targetIds.add(targetId(op));
+            }
+        }
+
+        // Files used only by deleted models can go, even when several of them share it.
+        Set<String> deletedIds = new HashSet<>();
+        for (Operation op : accepted.values()) {
+            if (op.kind() == Kind.DELETE) deletedIds.add(op.modelId());
+        }
+
+        List<Step> steps = new ArrayList<>();
+        Set<String> inPlaceJson = new LinkedHashSet<>();
+        List<String> removedIds = new ArrayList<>();
+        List<String> createdIds = new ArrayList<>();
+        Map<String, String> rewrites = new LinkedHashMap<>();
+        Set<String> claimedTargets = new HashSet<>();
+        Set<String> deletedShared = new HashSet<>();
+        Map<String, String> kept = new LinkedHashMap<>();
+        Set<String> blockstateFiles = accepted.isEmpty() ? Set.of() : blockstateDependencies(packRoot);
+
+        for (Operation op : accepted.values()) {
+            ModelIndex.ModelEntry entry = index.get(op.modelId());
+            List<Step> opSteps = new ArrayList<>();
+            Map<String, String> opRewrites = new LinkedHashMap<>();
+            Map<String, String> opKept = new LinkedHashMap<>();
+            String conflict = null;
+
+            if (op.kind() == Kind.DELETE) {
+                opSteps.add(new Step(Action.DELETE, entry.itemPath(), null));
+                for (String dependency : entry.dependencies()) {
+                    if (!deletedIds.containsAll(index.getDependents(dependency))) continue;
+                    String reason = keepReason(dependency, entry, blockstateFiles);
+                    if (reason != null) {
+                        opKept.put(dependency, reason);
+                    } else if (deletedShared.add(dependency)) {
+                        opSteps.add(new Step(Action.DELETE, dependency, null));
+                    }
+                }
+            } else {
+                String newId = targetId(op);
+                List<String> owned = new ArrayList<>();
+                owned.add(entry.itemPath());
+                for (String dependency : entry.dependencies()) {
+                    if (!index.getDependents(dependency).equals(Set.of(entry.id()))) continue;
+                    String reason = keepReason(dependency, entry, blockstateFiles);
+                    if (reason != null) {
+                        opKept.put(dependency, reason);
+                    } else {
+                        owned.add(dependency);
+                    }
+                }
+
+                for (String source : owned) {
+                    String target = relocate(source, entry, op);
+                    if (target.equals(source)) continue;
+                    if (!claimedTargets.add(target) || Files.exists(packRoot.resolve(target))) {
+                        conflict = "target file already exists: " + target;
+                        break;
+                    }
+                    opSteps.add(new Step(Action.MOVE, source, target));
+                    String oldRef = ModelDependencyResolver.referenceKey(source);
+                    if (oldRef != null) {
+                        opRewrites.put(oldRef, ModelDependencyResolver.referenceKey(target));
+                    }
+                }
+
+                if (conflict == null) {
+                    createdIds.add(newId);
+                }
+            }
+
+            if (conflict != null) {
+                skipped.put(op.modelId(), conflict);
+                continue;
+            }
+            steps.addAll(opSteps);
+            rewrites.putAll(opRewrites);
+            opKept.forEach(kept::putIfAbsent);
+            removedIds.add(op.modelId());
+            if (op.kind() != Kind.DELETE) {
+                inPlaceJson.add(entry.itemPath());
+                inPlaceJson.addAll(entry.dependencies());
+            }
+        }
+
+        // JSON of moved/renamed models that stays in place can still point at files that moved
+        Set<String> touched = new HashSet<>();
+        for (Step step : steps) {
+            touched.add(step.source());
+        }
+        for (String path : inPlaceJson) {
+            if (path.endsWith(".json") && !touched.contains(path) && needsRewrite(packRoot.resolve(path), rewrites)) {
+                steps.add(new Step(Action.REWRITE, path, null));
+            }
+        }
+
+        return new Plan(List.copyOf(steps), List.copyOf(removedIds), List.copyOf(createdIds),
+                Map.copyOf(rewrites), Map.copyOf(kept), Map.copyOf(skipped));
+    }
+
+    /**
+     * Why a dependency only the batch uses in the index has to stay, or {@code null} if it may be
+     * deleted or moved with its model. The index only knows items/ definitions, so files other
+     * parts of the pack or the game itself may use are kept.
+     */
+    private static String keepReason(String dependency, ModelIndex.ModelEntry entry, Set<String> blockstateFiles) {
+        // assets/<namespace>/<rest>
+        int nsEnd = dependency.indexOf('/', "assets/".length());
+        String namespace = nsEnd < 0 ? "" : dependency.substring("assets/".length(), nsEnd);
+        if (namespace.equals("minecraft")) return "minecraft override, vanilla items and blocks may use it";
+        if (!namespace.equals(entry.namespace())) return "in another namespace than the model";
+        if (blockstateFiles.contains(dependency)) return "used by a blockstate";
+        return null;
+    }
+
+    /**
+     * Every models/ and textures/ file the pack's blockstates use, directly or through parents.
+     */
+    private static Set<String> blockstateDependencies(Path packRoot) throws IOException {
+        Set<String> files = new HashSet<>();
+        Path assets = packRoot.resolve("assets");
+        if (!Files.isDirectory(assets)) return files;
+
+        List<Path> blockstates = new ArrayList<>();
+        try (DirectoryStream<Path> namespaces = Files.newDirectoryStream(assets, Files::isDirectory)) {
+            for (Path namespace : namespaces) {
+                Path dir = namespace.resolve("blockstates");
+                if (!Files.isDirectory(dir)) continue;
+                try (Stream<Path> walk = Files.walk(dir)) {
+                    walk.filter(file -> file.toString().endsWith(".json") && Files.isRegularFile(file))
+                            .forEach(blockstates::add);
+                }
+            }
+        }
+
+        // Variants and multipart cases name their models in "model" properties, like items/ definitions
+        Map<String, ModelDependencyResolver.Resolved> modelCache = new HashMap<>();
+        for (Path file : blockstates) {
+            try {
+                JsonElement tree = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8));
+                if (tree.isJsonObject()) {
+                    files.addAll(ModelDependencyResolver.resolve(packRoot, tree.getAsJsonObject(), modelCache).files());
+                }
+            } catch (RuntimeException e) {
+                // Not valid JSON; the game cannot use it either
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Applies a plan to the pack. Moves and rewrites run first so rewritten JSON never points at
+     * a file that was just deleted.
+     */
+    static void execute(Plan plan, Path packRoot) throws IOException {
+        for (Step step : plan.steps()) {
+            if (step.action() != Action.MOVE) continue;
+
+            Path source = packRoot.resolve(step.source());
+            Path target = packRoot.resolve(step.target());
+            Files.createDirectories(target.getParent());
+
+            String rewritten = step.source().endsWith(".json") ? rewrite(source, plan.referenceRewrites()) : null;
+            if (rewritten != null) {
+                Files.writeString(target, rewritten, StandardCharsets.UTF_8);
+                Files.delete(source);
+            } else {
+                Files.move(source, target);
+            }
+        }
+
+        for (Step step : plan.steps()) {
+            if (step.action() != Action.REWRITE) continue;
+            Path file = packRoot.resolve(step.source());
+            String rewritten = rewrite(file, plan.referenceRewrites());
+            if (rewritten != null) {
+                Files.writeString(file, rewritten, StandardCharsets.UTF_8);
+            }
+        }
+
+        for (Step step : plan.steps()) {
+            if (step.action() == Action.DELETE) {
+                Files.deleteIfExists(packRoot.resolve(step.source()));
+            }
+        }
+    }
+
+    /**
+     * Returns the rewritten JSON of a file, or {@code null} if it has no references to update
+     * (or cannot be parsed) and can simply be moved.
+     */
+    private static String rewrite(Path file, Map<String, String> rewrites) throws IOException {
+        if (rewrites.isEmpty()) return null;
+        try {
+            JsonElement tree = JsonParser.parseString(Files.readString(file, StandardCharsets.UTF_8));
+            return ModelDependencyResolver.rewriteReferences(tree, rewrites) ? PRETTY_GSON.toJson(tree) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static boolean needsRewrite(Path file, Map<String, String> rewrites) {
+        if (rewrites.isEmpty() || !Files.isRegularFile(file)) return false;
+        try {
+            return rewrite(file, rewrites) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String validate(ModelIndex index, Operation op, Map<String, Operation> accepted, Set<String> targetIds) {
+        if (!index.contains(op.modelId())) return "model not found";
+        if (accepted.containsKey(op.modelId())) return "model is already part of this batch";
+
+        switch (op.kind()) {
+            case DELETE:
+                return null;
+            case MOVE:
+                if (op.target() == null || !NAMESPACE.matcher(op.target()).matches()
+                        || DOT_ONLY.matcher(op.target()).matches()) return "invalid namespace";
+                break;
+            case RENAME:
+                if (op.target() == null || !NAME.matcher(op.target()).matches()
+                        || DOT_ONLY.matcher(op.target()).matches()) return "invalid name";
+                break;
+        }
+
+        String newId = targetId(op);
+        if (newId.equals(op.modelId())) return "target is the same model";
+        if (index.contains(newId) || targetIds.contains(newId)) return "target already exists: " + newId;
+        return null;
+    }
+
+    private static String targetId(Operation op) {
+        String[] loc = ModelDependencyResolver.splitLocation(op.modelId());
+        return op.kind() == Kind.MOVE ? op.target() + ":" + loc[1] : loc[0] + ":" + op.target();
+    }
+
+    /**
+     * Computes where a file owned by a moved/renamed model ends up. Moves swap the namespace;
+     * renames replace the old name in file names that start with it (so {@code foo_blocking.json}
+     * follows {@code foo.json}).
+     */
+    private static String relocate(String packPath, ModelIndex.ModelEntry entry, Operation op) {
+        // assets/<namespace>/<rest>
+        int nsEnd = packPath.indexOf('/', "assets/".length());
+        String namespace = packPath.substring("assets/".length(), nsEnd);
+        String rest = packPath.substring(nsEnd + 1);
+
+        if (op.kind() == Kind.MOVE) {
+            return namespace.equals(entry.namespace()) ? "assets/" + op.target() + "/" + rest : packPath;
+        }
+
+        int slash = rest.lastIndexOf('/');
+        String dir = rest.substring(0, slash + 1);
+        String fileName = rest.substring(slash + 1);
+        int dot = fileName.indexOf('.');
+        String base = dot < 0 ? fileName : fileName.substring(0, dot);
+        String ext = dot < 0 ? "" : fileName.substring(dot);
+
+        String oldName = entry.name();
+        if (base.equals(oldName) || base.startsWith(oldName + "_")) {
+            return "assets/" + namespace + "/" + dir + op.target() + base.substring(oldName.length()) + ext;
+        }
+        return packPath;
+    }
+}
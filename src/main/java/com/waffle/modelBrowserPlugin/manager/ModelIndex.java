@@ -0,0 +1,175 @@
+package com.waffle.modelBrowserPlugin.manager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of every model the plugin knows about.
+ * <p>
+ * A new snapshot (with a higher generation number) is published by {@link ModelManager}
+ * whenever the resource pack changes. Readers grab the current snapshot once and can use it
+ * from any thread without locking.
+ * </p>
+ * <p>
+ * Besides the model metadata, the snapshot carries the dependency graph of the pack: every
+ * entry lists the pack-relative files it needs (its items/ definition, the models it
+ * references and their parents, and their textures), and the reverse mapping tells which
+ * models use a given file. Referenced files that are not in the pack are kept too, so adding
+ * one of them later can find the models it changes.
+ * </p>
+ */
+public final class ModelIndex {
+
+    /**
+     * Metadata for a single model found in an items/ folder.
+     *
+     * @param id           namespaced id, e.g. {@code minecraft:waffle_shield}
+     * @param itemPath     pack-relative path of the items/ definition
+     * @param size         size of the items/ definition in bytes
+     * @param category     category derived from the definition
+     * @param lastModified last modification time in epoch millis
+     * @param dependencies pack-relative paths of models and textures this model uses
+     * @param missing      pack-relative paths of models and textures it references that are not
+     *                     in the pack, e.g. vanilla ones
+     */
+    public record ModelEntry(
+            String id,
+            String itemPath,
+            long size,
+            String category,
+            long lastModified,
+            Set<String> dependencies,
+            Set<String> missing
+    ) {
+        public ModelEntry {
+            dependencies = Collections.unmodifiableSet(new LinkedHashSet<>(dependencies));
+            missing = Collections.unmodifiableSet(new LinkedHashSet<>(missing));
+        }
+
+        public String namespace() {
+            return id.substring(0, id.indexOf(':'));
+        }
+
+        public String name() {
+            return id.substring(id.indexOf(':') + 1);
+        }
+    }
+
+    private static final ModelIndex EMPTY = new ModelIndex(0L, new LinkedHashMap<>());
+
+    private final long generation;
+    private final Map<String, ModelEntry> entries;
+    private final List<String> ids;
+    private final Map<String, List<String>> categories;
+    private final Map<String, Set<String>> dependents;
+    private final Map<String, Set<String>> missingDependents;
+
+    ModelIndex(long generation, Map<String, ModelEntry> entries) {
+        this.generation = generation;
+        this.entries = Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+        this.ids = List.copyOf(this.entries.keySet());
+
+        Map<String, List<String>> byCategory = new HashMap<>();
+        Map<String, Set<String>> reverse = new HashMap<>();
+        Map<String, Set<String>> reverseMissing = new HashMap<>();
+        for (ModelEntry entry : this.entries.values()) {
+            byCategory.computeIfAbsent(entry.category(), k -> new ArrayList<>()).add(entry.id());
+            for (String dependency : entry.dependencies()) {
+                reverse.computeIfAbsent(dependency, k -> new LinkedHashSet<>()).add(entry.id());
+            }
+            for (String path : entry.missing()) {
+                reverseMissing.computeIfAbsent(path, k -> new LinkedHashSet<>()).add(entry.id());
+            }
+        }
+        byCategory.replaceAll((k, v) -> List.copyOf(v));
+        reverse.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+        reverseMissing.replaceAll((k, v) -> Collections.unmodifiableSet(v));
+        this.categories = Collections.unmodifiableMap(byCategory);
+        this.dependents = Collections.unmodifiableMap(reverse);
+        this.missingDependents = Collections.unmodifiableMap(reverseMissing);
+    }
+
+    /**
+     * Returns the empty generation-0 snapshot used before the first scan.
+     */
+    public static ModelIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Creates the next generation by removing and upserting the given entries.
+     * Entries keep their position; new ids are appended.
+     */
+    ModelIndex withChanges(Collection<String> removedIds, Collection<ModelEntry> upserts) {
+        Map<String, ModelEntry> next = new LinkedHashMap<>(entries);
+        for (String id : removedIds) {
+            next.remove(id);
+        }
+        for (ModelEntry entry : upserts) {
+            next.put(entry.id(), entry);
+        }
+        return new ModelIndex(generation + 1, next);
+    }
+
+    /**
+     * Returns the generation number of this snapshot. Higher means newer.
+     */
+    public long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Returns all model ids in scan order.
+     */
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    public boolean contains(String id) {
+        return entries.containsKey(id);
+    }
+
+    /**
+     * Returns the entry for a model, or {@code null} if it is not in this snapshot.
+     */
+    public ModelEntry get(String id) {
+        return entries.get(id);
+    }
+
+    public Collection<ModelEntry> getEntries() {
+        return entries.values();
+    }
+
+    /**
+     * Returns model ids grouped by category.
+     */
+    public Map<String, List<String>> getCategories() {
+        return categories;
+    }
+
+    /**
+     * Returns the ids of every model that depends on the given pack-relative file.
+     */
+    public Set<String> getDependents(String packPath) {
+        return dependents.getOrDefault(packPath, Set.of());
+    }
+
+    /**
+     * Returns the ids of every model that references the given pack-relative file while it was
+     * not in the pack.
+     */
+    public Set<String> getMissingDependents(String packPath) {
+        return missingDependents.getOrDefault(packPath, Set.of());
+    }
+}
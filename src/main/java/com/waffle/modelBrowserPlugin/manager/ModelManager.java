@@ -1,29 +1,36 @@
 package com.waffle.modelBrowserPlugin.manager;
 
 import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+import com.waffle.modelBrowserPlugin.util.ModelDependencyResolver;
 import com.waffle.modelBrowserPlugin.util.ResourcePackScanner;
 import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import org.bukkit.configuration.file.FileConfiguration;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 
 public class ModelManager {
 
     private final ModelBrowserPlugin plugin;
-    private final List<String> availableModels = new ArrayList<>();
-    private final Map<String, Long> modelSizes = new HashMap<>();
-    private final Map<String, String> modelCategories = new HashMap<>();
-    private final Map<String, Long> modelTimestamps = new HashMap<>();
     private final Gson gson = new Gson();
+    private final Object writeLock = new Object();
+    private volatile ModelIndex index = ModelIndex.empty();
+    private final List<BiConsumer<ModelIndex, ModelIndex>> indexListeners = new CopyOnWriteArrayList<>();
 
     public ModelManager(ModelBrowserPlugin plugin) {
         this.plugin = plugin;
@@ -34,88 +41,106 @@ public class ModelManager {
      * Reload all models from resource pack
      */
     public void reload() {
-        availableModels.clear();
-        modelSizes.clear();
-        modelCategories.clear();
-        modelTimestamps.clear();
-
-        // Get resource pack folder from config
-        FileConfiguration config = plugin.getConfig();
-        String resourcePackPath = config.getString("resource-pack.path", "resourcepack");
+        synchronized (writeLock) {
+            Path packRoot = getResourcePackRoot();
+            File resourcePackDir = packRoot.toFile();
+
+            if (!resourcePackDir.exists()) {
+                plugin.getLogger().warning("Resource pack directory not found: " + resourcePackDir.getPath());
+                plugin.getLogger().warning("Creating example directory structure...");
+                createExampleStructure(resourcePackDir);
+                publish(new ModelIndex(index.getGeneration() + 1, new LinkedHashMap<>()));
+                return;
+            }
 
-        File resourcePackDir = new File(plugin.getDataFolder(), resourcePackPath);
+            // Scan for models using the CORRECT scanner (items/ folder)
+            publish(new ModelIndex(index.getGeneration() + 1, scanForModels(packRoot)));
 
-        if (!resourcePackDir.exists()) {
-            plugin.getLogger().warning("Resource pack directory not found: " + resourcePackDir.getPath());
-            plugin.getLogger().warning("Creating example directory structure...");
-            createExampleStructure(resourcePackDir);
-            return;
+            plugin.getLogger().info("Loaded " + index.size() + " models from resource pack");
         }
+    }
 
-        // Scan for models using the CORRECT scanner (items/ folder)
-        scanForModels(resourcePackDir);
-
-        plugin.getLogger().info("Loaded " + availableModels.size() + " models from resource pack");
+    /**
+     * Resolve the resource pack folder from config
+     */
+    public Path getResourcePackRoot() {
+        FileConfiguration config = plugin.getConfig();
+        String resourcePackPath = config.getString("resource-pack.path", "resourcepack");
+        return plugin.getDataFolder().toPath().resolve(resourcePackPath);
     }
 
     /**
-     * Scan resource pack directory for models - FIXED VERSION
-     * Now scans items/ folder instead of models/ folder
+     * Scan resource pack directory for models
+     * Scans items/ folders of every namespace, never models/
      */
-    private void scanForModels(File resourcePackDir) {
+    private Map<String, ModelIndex.ModelEntry> scanForModels(Path packPath) {
+        Map<String, ModelIndex.ModelEntry> entries = new LinkedHashMap<>();
+        Map<String, ModelDependencyResolver.Resolved> modelCache = new HashMap<>();
+
         try {
-            // Use the ResourcePackScanner to get ONLY items/ folder models
-            Path packPath = resourcePackDir.toPath();
-            List<String> itemsModels = ResourcePackScanner.scanResourcePack(packPath);
-
-            // Process each model found in items/ folder
-            for (String modelId : itemsModels) {
-                // Extract the model name (remove "minecraft:")
-                String modelName = modelId.replace("minecraft:", "");
-
-                // Build the file path
-                Path modelFile = packPath
-                        .resolve("assets")
-                        .resolve("minecraft")
-                        .resolve("items")
-                        .resolve(modelName + ".json");
-
-                if (Files.exists(modelFile)) {
-                    processModelFile(modelFile, modelId);
+            for (String modelId : ResourcePackScanner.scanAllNamespaces(packPath)) {
+                ModelIndex.ModelEntry entry = processModelFile(packPath, modelId, modelCache);
+                if (entry != null) {
+                    entries.put(modelId, entry);
                 }
             }
-
         } catch (IOException e) {
             plugin.getLogger().severe("Error scanning for models: " + e.getMessage());
             e.printStackTrace();
         }
+
+        return entries;
     }
 
     /**
      * Process a single model JSON file from items/ folder
      */
-    private void processModelFile(Path modelFile, String modelId) {
+    private ModelIndex.ModelEntry processModelFile(Path packPath, String modelId, Map<String, ModelDependencyResolver.Resolved> modelCache) {
+        String itemPath = ModelDependencyResolver.itemPath(modelId);
+        Path modelFile = packPath.resolve(itemPath);
+        if (!Files.exists(modelFile)) {
+            return null;
+        }
+
         try {
             // Read file size and timestamp
             long fileSize = Files.size(modelFile);
             long lastModified = Files.getLastModifiedTime(modelFile).toMillis();
 
             // Parse JSON to get more info
-            JsonObject json = gson.fromJson(new FileReader(modelFile.toFile()), JsonObject.class);
+            JsonObject json;
+            try (Reader reader = Files.newBufferedReader(modelFile, StandardCharsets.UTF_8)) {
+                json = gson.fromJson(reader, JsonObject.class);
+            }
 
             // Determine category based on model type
             String category = determineCategoryFromJson(json);
-
-            // Store model info
-            availableModels.add(modelId);
-            modelSizes.put(modelId, fileSize);
-            modelCategories.put(modelId, category);
-            modelTimestamps.put(modelId, lastModified);
+            ModelDependencyResolver.Resolved dependencies = json == null ? ModelDependencyResolver.Resolved.EMPTY
+                    : ModelDependencyResolver.resolve(packPath, json, modelCache);
 
             plugin.getLogger().fine("Found item model: " + modelId + " (" + category + ")");
+            return new ModelIndex.ModelEntry(modelId, itemPath, fileSize, category, lastModified,
+                    dependencies.files(), dependencies.missing());
 
         } catch (Exception e) {
             plugin.getLogger().warning("Error processing model file " + modelFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Swap in a new snapshot
+     */
+    private void publish(ModelIndex next) {
+        ModelIndex previous = index;
+        index = next;
+
+        for (BiConsumer<ModelIndex, ModelIndex> listener : indexListeners) {
+            try {
+                listener.accept(previous, next);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Index listener failed: " + e.getMessage());
+            }
         }
     }
 
@@ -248,32 +273,41 @@ public class ModelManager {
 
     // =============== PUBLIC API ===============
 
+    /**
+     * Get the current immutable index snapshot (safe from any thread)
+     */
+    public ModelIndex getIndex() {
+        return index;
+    }
+
     /**
      * Get all available models
      */
     public List<String> getAvailableModels() {
-        return new ArrayList<>(availableModels);
+        return new ArrayList<>(index.getIds());
     }
 
     /**
      * Get model count
      */
     public int getModelCount() {
-        return availableModels.size();
+        return index.size();
     }
 
     /**
      * Get model file size in bytes
      */
     public long getModelSize(String modelName) {
-        return modelSizes.getOrDefault(modelName, 0L);
+        ModelIndex.ModelEntry entry = index.get(modelName);
+        return entry != null ? entry.size() : 0L;
     }
 
     /**
      * Get model category
      */
     public String getModelCategory(String modelName) {
-        return modelCategories.getOrDefault(modelName, "unknown");
+        ModelIndex.ModelEntry entry = index.get(modelName);
+        return entry != null ? entry.category() : "unknown";
     }
 
     /**
@@ -283,7 +317,7 @@ public class ModelManager {
         List<String> results = new ArrayList<>();
         String lowerQuery = query.toLowerCase();
 
-        for (String model : availableModels) {
+        for (String model : index.getIds()) {
             if (model.toLowerCase().contains(lowerQuery)) {
                 results.add(model);
             }
@@ -297,13 +331,14 @@ public class ModelManager {
      */
     public Map<String, Object> getModelInfo(String modelName) {
         Map<String, Object> info = new HashMap<>();
+        ModelIndex.ModelEntry entry = index.get(modelName);
 
-        if (availableModels.contains(modelName)) {
+        if (entry != null) {
             info.put("exists", true);
             info.put("name", modelName);
-            info.put("size", modelSizes.get(modelName));
-            info.put("category", modelCategories.get(modelName));
-            info.put("lastModified", modelTimestamps.get(modelName));
+            info.put("size", entry.size());
+            info.put("category", entry.category());
+            info.put("lastModified", entry.lastModified());
         } else {
             info.put("exists", false);
         }
@@ -316,12 +351,9 @@ public class ModelManager {
      */
     public Map<String, List<String>> getCategories() {
         Map<String, List<String>> categories = new HashMap<>();
-
-        for (String model : availableModels) {
-            String category = modelCategories.get(model);
-            categories.computeIfAbsent(category, k -> new ArrayList<>()).add(model);
+        for (Map.Entry<String, List<String>> entry : index.getCategories().entrySet()) {
+            categories.put(entry.getKey(), new ArrayList<>(entry.getValue()));
         }
-
         return categories;
     }
 
@@ -329,9 +361,124 @@ public class ModelManager {
      * Delete a model
      */
     public boolean deleteModel(String modelName) {
-        // TODO: Implement model deletion
-        plugin.getLogger().warning("Model deletion not implemented yet for: " + modelName);
-        return false;
+        try {
+            ModelBatch.Result result = applyBatch(List.of(ModelBatch.Operation.delete(modelName)), false);
+            return result.plan().removedIds().contains(modelName);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to delete model " + modelName + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Register a listener called with (previous, current) every time a new index
+     * generation is published. Runs on the publishing thread, which may be async.
+     */
+    public void addIndexListener(BiConsumer<ModelIndex, ModelIndex> listener) {
+        indexListeners.add(listener);
+    }
+
+    public void removeIndexListener(BiConsumer<ModelIndex, ModelIndex> listener) {
+        indexListeners.remove(listener);
+    }
+
+    /**
+     * Apply a set of changed pack files (pack-relative paths, e.g. from an import) as an
+     * incremental update: only the touched items/ files and the models that depend on, or
+     * reference while missing, the touched models/textures are parsed again, and one new
+     * generation is published.
+     */
+    public ModelIndex applyDelta(Collection<String> changedPaths) {
+        synchronized (writeLock) {
+            ModelIndex current = index;
+            Path packRoot = getResourcePackRoot();
+
+            Set<String> affectedIds = new LinkedHashSet<>();
+            for (String path : changedPaths) {
+                String normalized = path.replace('\\', '/');
+                String modelId = toItemModelId(normalized);
+                if (modelId != null) {
+                    affectedIds.add(modelId);
+                } else {
+                    affectedIds.addAll(current.getDependents(normalized));
+                    affectedIds.addAll(current.getMissingDependents(normalized));
+                }
+            }
+
+            if (affectedIds.isEmpty()) {
+                return current;
+            }
+
+            Map<String, ModelDependencyResolver.Resolved> modelCache = new HashMap<>();
+            List<String> removed = new ArrayList<>();
+            List<ModelIndex.ModelEntry> upserts = new ArrayList<>();
+            for (String modelId : affectedIds) {
+                ModelIndex.ModelEntry entry = processModelFile(packRoot, modelId, modelCache);
+                if (entry != null) {
+                    upserts.add(entry);
+                } else if (current.contains(modelId)) {
+                    removed.add(modelId);
+                }
+            }
+
+            publish(current.withChanges(removed, upserts));
+            plugin.getLogger().fine("Applied index delta: " + upserts.size() + " updated, " + removed.size()
+                    + " removed (generation " + index.getGeneration() + ")");
+            return index;
+        }
+    }
+
+    /**
+     * Returns "ns:name" for assets/<ns>/items/<name>.json, or null for any other path
+     */
+    private static String toItemModelId(String packPath) {
+        String[] parts = packPath.split("/");
+        if (parts.length != 4 || !parts[0].equals("assets") || !parts[2].equals("items")
+                || !parts[3].endsWith(".json") || parts[3].startsWith(".")) {
+            return null;
+        }
+        return parts[1] + ":" + parts[3].substring(0, parts[3].length() - 5);
+    }
+
+    /**
+     * Apply many delete/move/rename operations at once.
+     * All file changes happen in one pass, and the index is updated once, publishing a
+     * single new generation. With dryRun the plan is computed and returned but nothing
+     * on disk changes.
+     */
+    public ModelBatch.Result applyBatch(List<ModelBatch.Operation> operations, boolean dryRun) throws IOException {
+        synchronized (writeLock) {
+            ModelIndex current = index;
+            Path packRoot = getResourcePackRoot();
+            ModelBatch.Plan plan = ModelBatch.plan(current, packRoot, operations);
+
+            if (dryRun || plan.isEmpty()) {
+                return new ModelBatch.Result(plan, false, current.getGeneration());
+            }
+
+            try {
+                ModelBatch.execute(plan, packRoot);
+            } catch (IOException | RuntimeException e) {
+                // Part of the batch may be on disk already; resync the index from the pack.
+                plugin.getLogger().severe("Batch failed, rescanning resource pack: " + e.getMessage());
+                reload();
+                throw e;
+            }
+
+            Map<String, ModelDependencyResolver.Resolved> modelCache = new HashMap<>();
+            List<ModelIndex.ModelEntry> created = new ArrayList<>();
+            for (String id : plan.createdIds()) {
+                ModelIndex.ModelEntry entry = processModelFile(packRoot, id, modelCache);
+                if (entry != null) {
+                    created.add(entry);
+                }
+            }
+
+            publish(current.withChanges(plan.removedIds(), created));
+            plugin.getLogger().info("Batch applied: " + plan.removedIds().size() + " models, "
+                    + plan.steps().size() + " file changes (generation " + index.getGeneration() + ")");
+            return new ModelBatch.Result(plan, true, index.getGeneration());
+        }
     }
 
     /**
@@ -346,10 +493,11 @@ public class ModelManager {
      */
     public void debugLoadedModels() {
         plugin.getLogger().info("=== DEBUG: Loaded Models ===");
-        plugin.getLogger().info("Total models: " + availableModels.size());
+        ModelIndex snapshot = index;
+        plugin.getLogger().info("Total models: " + snapshot.size() + " (generation " + snapshot.getGeneration() + ")");
 
-        for (String model : availableModels) {
-            plugin.getLogger().info("- " + model + " [" + modelCategories.get(model) + "]");
+        for (ModelIndex.ModelEntry entry : snapshot.getEntries()) {
+            plugin.getLogger().info("- " + entry.id() + " [" + entry.category() + "]");
         }
 
         // Also show what the ResourcePackScanner finds
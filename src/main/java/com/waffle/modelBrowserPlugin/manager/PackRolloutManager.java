@@ -0,0 +1,305 @@
+package com.waffle.modelBrowserPlugin.manager;
+
+import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+import com.waffle.modelBrowserPlugin.util.PackZipBuilder;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerResourcePackStatusEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Pushes the built pack to online players after it changes, a few players at a time.
+ * <p>
+ * Every index change schedules a (debounced, incremental) {@link PackZipBuilder} run. When the
+ * resulting SHA-1 differs from the one being rolled out, every online player is queued and a
+ * timer sends the pack to at most {@code players-per-wave} players per wave, with no more than
+ * {@code max-in-flight} downloads outstanding. Status events move players along: loaded players
+ * are remembered with the hash they have, failed downloads are retried with exponential backoff,
+ * declines are respected until the next pack. Players that already loaded the current hash are
+ * never sent it again.
+ * </p>
+ * <p>
+ * Each pack version has its own id, derived from its hash, so a late status for the previous
+ * version cannot be taken for the current one. The previous version is removed from the client
+ * when the next one is sent, so they do not stack.
+ * </p>
+ * <p>
+ * All rollout state is only touched on the main thread.
+ * </p>
+ */
+public class PackRolloutManager implements Listener {
+
+    /** Players that never report back are treated as failed after this long. */
+    private static final long IN_FLIGHT_TIMEOUT_MILLIS = 120_000;
+
+    /**
+     * Where a player stands in the current rollout.
+     */
+    public enum State {
+        /** Waiting for a wave (or for a retry). */
+        QUEUED,
+        /** Pack sent, waiting for the client to finish. */
+        SENT,
+        /** The current pack is loaded. */
+        LOADED,
+        /** The player declined the current pack. */
+        DECLINED,
+        /** Retries for the current pack are used up. */
+        FAILED
+    }
+
+    private static final class PlayerRollout {
+        State state = State.QUEUED;
+        String loadedHash;
+        /** Id and hash of the last pack sent to the client. */
+        UUID sentId;
+        String sentHash;
+        int attempts;
+        long notBefore;
+        long sentAt;
+    }
+
+    private final ModelBrowserPlugin plugin;
+    private final Map<UUID, PlayerRollout> players = new HashMap<>();
+    /** Players waiting for a wave, in join/publish order. */
+    private final Set<UUID> queue = new LinkedHashSet<>();
+
+    private String url;
+    private String sha1;
+    private byte[] hash;
+    private UUID packId;
+    private BukkitTask waveTask;
+
+    private BukkitTask pendingBuild;
+    private boolean building;
+    private boolean rebuildRequested;
+
+    public PackRolloutManager(ModelBrowserPlugin plugin) {
+        this.plugin = plugin;
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+        // Rebuild and roll out the pack whenever a new index is published
+        plugin.getModelManager().addIndexListener((previous, current) -> scheduleBuild());
+    }
+
+    private FileConfiguration config() {
+        return plugin.getConfig();
+    }
+
+    private boolean isEnabled() {
+        return config().getBoolean("pack-rollout.enabled", false)
+                && !config().getString("pack-rollout.url", "").isBlank();
+    }
+
+    /**
+     * Builds the pack shortly after the last index change. Changes arriving while a build runs
+     * trigger one more build afterwards. Safe to call from any thread.
+     */
+    public synchronized void scheduleBuild() {
+        if (!isEnabled()) return;
+        if (building) {
+            rebuildRequested = true;
+            return;
+        }
+        if (pendingBuild != null) pendingBuild.cancel();
+        long delay = Math.max(0, config().getLong("pack-rollout.rebuild-delay-seconds", 5)) * 20L;
+        pendingBuild = Bukkit.getScheduler().runTaskLaterAsynchronously(plugin, this::build, delay);
+    }
+
+    private void build() {
+        synchronized (this) {
+            pendingBuild = null;
+            building = true;
+        }
+        try {
+            PackZipBuilder.Result result = PackZipBuilder.build(plugin);
+            Bukkit.getScheduler().runTask(plugin, () -> publish(result));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Pack build for rollout failed: " + e.getMessage());
+        } finally {
+            boolean again;
+            synchronized (this) {
+                building = false;
+                again = rebuildRequested;
+                rebuildRequested = false;
+            }
+            if (again) scheduleBuild();
+        }
+    }
+
+    /**
+     * Starts rolling out a built pack if its hash differs from the current one.
+     * Must be called on the main thread.
+     */
+    public void publish(PackZipBuilder.Result result) {
+        if (!isEnabled() || result.sha1().equals(sha1)) return;
+
+        url = config().getString("pack-rollout.url");
+        sha1 = result.sha1();
+        hash = HexFormat.of().parseHex(sha1);
+        packId = UUID.nameUUIDFromBytes(hash);
+        queue.clear();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            enqueue(player.getUniqueId());
+        }
+        plugin.getLogger().info("Rolling out pack " + sha1 + " to " + queue.size() + " player(s)");
+        startWaves();
+    }
+
+    private void enqueue(UUID playerId) {
+        PlayerRollout rollout = players.computeIfAbsent(playerId, id -> new PlayerRollout());
+        if (sha1 == null || sha1.equals(rollout.loadedHash)) return;
+        rollout.state = State.QUEUED;
+        rollout.attempts = 0;
+        rollout.notBefore = 0;
+        queue.add(playerId);
+    }
+
+    private void startWaves() {
+        if (waveTask != null || queue.isEmpty()) return;
+        long interval = Math.max(1, config().getLong("pack-rollout.wave-interval-ticks", 20));
+        waveTask = Bukkit.getScheduler().runTaskTimer(plugin, this::wave, 1L, interval);
+    }
+
+    /**
+     * Sends the pack to the next players in the queue, within the wave size and in-flight limits.
+     */
+    private void wave() {
+        long now = System.currentTimeMillis();
+        int inFlight = 0;
+        for (Map.Entry<UUID, PlayerRollout> entry : players.entrySet()) {
+            PlayerRollout rollout = entry.getValue();
+            if (rollout.state != State.SENT) continue;
+            if (now - rollout.sentAt > IN_FLIGHT_TIMEOUT_MILLIS) {
+                fail(entry.getKey(), rollout, "no response");
+            } else {
+                inFlight++;
+            }
+        }
+
+        int perWave = Math.max(1, config().getInt("pack-rollout.players-per-wave", 5));
+        int maxInFlight = Math.max(1, config().getInt("pack-rollout.max-in-flight", 20));
+        int sent = 0;
+        Iterator<UUID> iterator = queue.iterator();
+        while (iterator.hasNext() && sent < perWave && inFlight < maxInFlight) {
+            UUID playerId = iterator.next();
+            PlayerRollout rollout = players.get(playerId);
+            Player player = Bukkit.getPlayer(playerId);
+            if (player == null || rollout == null || sha1.equals(rollout.loadedHash)) {
+                iterator.remove();
+                continue;
+            }
+            if (rollout.notBefore > now) continue;
+
+            iterator.remove();
+            rollout.state = State.SENT;
+            rollout.sentAt = now;
+            rollout.attempts++;
+            if (rollout.sentId != null && !rollout.sentId.equals(packId)) {
+                player.removeResourcePack(rollout.sentId);
+            }
+            rollout.sentId = packId;
+            rollout.sentHash = sha1;
+            String prompt = config().getString("pack-rollout.prompt", "");
+            player.addResourcePack(packId, url, hash, prompt.isBlank() ? null : prompt,
+                    config().getBoolean("pack-rollout.force", false));
+            sent++;
+            inFlight++;
+        }
+
+        if (queue.isEmpty() && inFlight == 0 && waveTask != null) {
+            waveTask.cancel();
+            waveTask = null;
+        }
+    }
+
+    private void fail(UUID playerId, PlayerRollout rollout, String reason) {
+        int maxRetries = Math.max(0, config().getInt("pack-rollout.max-retries", 3));
+        if (rollout.attempts > maxRetries) {
+            rollout.state = State.FAILED;
+            plugin.getLogger().warning("Giving up sending the pack to " + playerId + " (" + reason + ")");
+            return;
+        }
+        long backoff = Math.max(1, config().getLong("pack-rollout.retry-backoff-seconds", 5)) * 1000L;
+        rollout.state = State.QUEUED;
+        rollout.notBefore = System.currentTimeMillis() + (backoff << Math.min(rollout.attempts - 1, 10));
+        queue.add(playerId);
+        startWaves();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onResourcePackStatus(PlayerResourcePackStatusEvent event) {
+        PlayerRollout rollout = players.get(event.getPlayer().getUniqueId());
+        // Statuses for an earlier version (or another plugin's pack) carry a different id
+        if (rollout == null || rollout.state != State.SENT || !event.getID().equals(rollout.sentId)) return;
+
+        switch (event.getStatus()) {
+            case ACCEPTED, DOWNLOADED -> rollout.sentAt = System.currentTimeMillis();
+            case SUCCESSFULLY_LOADED -> {
+                rollout.state = State.LOADED;
+                rollout.loadedHash = rollout.sentHash;
+            }
+            case DECLINED -> rollout.state = State.DECLINED;
+            case FAILED_DOWNLOAD, INVALID_URL, FAILED_RELOAD, DISCARDED ->
+                    fail(event.getPlayer().getUniqueId(), rollout, event.getStatus().name());
+        }
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (sha1 == null || !config().getBoolean("pack-rollout.send-on-join", true)) return;
+        enqueue(event.getPlayer().getUniqueId());
+        startWaves();
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID playerId = event.getPlayer().getUniqueId();
+        players.remove(playerId);
+        queue.remove(playerId);
+    }
+
+    /**
+     * Counts online players per rollout state. Must be called on the main thread.
+     */
+    public Map<State, Integer> getStateCounts() {
+        Map<State, Integer> counts = new EnumMap<>(State.class);
+        for (PlayerRollout rollout : players.values()) {
+            counts.merge(rollout.state, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * The SHA-1 being rolled out, or {@code null} before the first build.
+     */
+    public String getCurrentSha1() {
+        return sha1;
+    }
+
+    /**
+     * Stops the wave timer and any pending build.
+     */
+    public synchronized void shutdown() {
+        if (pendingBuild != null) pendingBuild.cancel();
+        if (waveTask != null) waveTask.cancel();
+        pendingBuild = null;
+        waveTask = null;
+    }
+}
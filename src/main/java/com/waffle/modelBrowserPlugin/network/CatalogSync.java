@@ -0,0 +1,147 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import com.waffle.modelBrowserPlugin.manager.ModelIndex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+
+/**
+ * Remembers how the catalog changed over the last few index generations, so a client that
+ * already holds an older generation can be brought up to date with a delta instead of the whole
+ * catalog.
+ * <p>
+ * Each published generation is recorded as one encoded step, relative to the client's
+ * dictionary of the generation before: the ordinals that were removed, the remaining models
+ * whose entry changed (with their category), and the ids appended at the end. Applying the steps
+ * in order reproduces the new dictionary exactly, ordinals included. A generation that cannot
+ * be expressed that way (a full rescan may reorder the ids) breaks the chain, and clients older
+ * than it get a full snapshot.
+ * </p>
+ * <p>
+ * Generations start over when the server restarts, so clients also send the {@link #epoch()} they
+ * synced with; a different epoch always means a full snapshot.
+ * </p>
+ */
+final class CatalogSync implements BiConsumer<ModelIndex, ModelIndex> {
+
+    private record Step(long from, long to, byte[] encoded) {}
+
+    private final long epoch = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+    private final int history;
+    private final Deque<Step> steps = new ArrayDeque<>();
+
+    /**
+     * @param history number of generations to keep deltas for
+     */
+    CatalogSync(int history) {
+        this.history = Math.max(1, history);
+    }
+
+    long epoch() {
+        return epoch;
+    }
+
+    /**
+     * Index listener: records the step from {@code previous} to {@code current}.
+     */
+    @Override
+    public void accept(ModelIndex previous, ModelIndex current) {
+        byte[] encoded = encodeStep(previous, current);
+        synchronized (steps) {
+            if (encoded == null) {
+                // Nothing before this generation can be replayed any more
+                steps.clear();
+                return;
+            }
+            steps.addLast(new Step(previous.getGeneration(), current.getGeneration(), encoded));
+            while (steps.size() > history) {
+                steps.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Returns the encoded steps from {@code from} to {@code to}, or {@code null} if they are not
+     * all remembered or would together be larger than {@code maxBytes}.
+     */
+    List<byte[]> stepsBetween(long from, long to, int maxBytes) {
+        synchronized (steps) {
+            List<byte[]> chain = new ArrayList<>();
+            long generation = from;
+            int bytes = 0;
+            Iterator<Step> it = steps.iterator();
+            while (it.hasNext() && generation != to) {
+                Step step = it.next();
+                if (step.to() <= generation) continue;
+                if (step.from() != generation) return null;
+                bytes += step.encoded().length;
+                if (bytes > maxBytes) return null;
+                chain.add(step.encoded());
+                generation = step.to();
+            }
+            return generation == to ? chain : null;
+        }
+    }
+
+    void clear() {
+        synchronized (steps) {
+            steps.clear();
+        }
+    }
+
+    private static byte[] encodeStep(ModelIndex previous, ModelIndex current) {
+        List<String> before = previous.getIds();
+        List<String> after = current.getIds();
+
+        List<Integer> removed = new ArrayList<>();
+        List<String> kept = new ArrayList<>(before.size());
+        for (int i = 0; i < before.size(); i++) {
+            String id = before.get(i);
+            if (current.contains(id)) {
+                kept.add(id);
+            } else {
+                removed.add(i);
+            }
+        }
+        // Remaining models must keep their order, new ones must come after them
+        if (after.size() < kept.size() || !after.subList(0, kept.size()).equals(kept)) {
+            return null;
+        }
+
+        PacketWriter out = new PacketWriter(64);
+        out.writeVarLong(previous.getGeneration());
+        out.writeVarLong(current.getGeneration());
+
+        out.writeVarInt(removed.size());
+        int last = 0;
+        for (int ordinal : removed) {
+            out.writeVarInt(ordinal - last); // ascending, so gaps stay small
+            last = ordinal;
+        }
+
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < kept.size(); i++) {
+            String id = kept.get(i);
+            if (!Objects.equals(previous.get(id), current.get(id))) changed.add(i);
+        }
+        out.writeVarInt(changed.size());
+        for (int ordinal : changed) {
+            out.writeVarInt(ordinal);
+            out.writeString(current.get(kept.get(ordinal)).category());
+        }
+
+        List<String> added = after.subList(kept.size(), after.size());
+        out.writeVarInt(added.size());
+        for (String id : added) {
+            out.writeString(id);
+            out.writeString(current.get(id).category());
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,231 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Sends plugin messages of any size to v2 clients as numbered frames.
+ * <p>
+ * A payload larger than one frame becomes a transfer of {@link Protocol#V2_CHUNK} frames, each
+ * carrying the transfer id, its sequence number, the frame count and the total length, so the
+ * client can reassemble it. Only {@code window} frames of a transfer may be unacknowledged at a
+ * time; the client acknowledges with {@link Protocol#V2_ACK} and the number of frames it holds in
+ * order, which frees the window. If no acknowledgement arrives in time, sending resumes from the
+ * first unacknowledged frame; after too many retries the transfer is given up. A repeated
+ * acknowledgement asks for the same resume right away.
+ * </p>
+ * <p>
+ * Messages to one player go out in order: while a transfer is running, smaller messages queue
+ * behind it (and are sent whole when their turn comes). Frames are pumped once per tick and
+ * whenever an acknowledgement arrives.
+ * </p>
+ * <p>
+ * Frame size, window and timeout are the configured ones unless the player's connection has its
+ * own {@link Limits} (see ClientSession). A transfer keeps the frame size it started with.
+ * </p>
+ */
+final class ChunkedSender {
+
+    /**
+     * @param chunkBytes       payload bytes per frame; smaller messages are sent as they are
+     * @param window           unacknowledged frames allowed per player
+     * @param ackTimeoutMillis time without progress before frames are sent again
+     * @param maxRetries       resends of one transfer before it is dropped
+     */
+    record Options(int chunkBytes, int window, long ackTimeoutMillis, int maxRetries) {
+        static Options from(FileConfiguration config) {
+            return new Options(
+                    Math.max(1024, config.getInt("network.chunk-size-kb", 32) * 1024),
+                    Math.max(1, config.getInt("network.max-frames-in-flight", 8)),
+                    Math.max(1, config.getLong("network.ack-timeout-seconds", 5)) * 1000L,
+                    Math.max(0, config.getInt("network.max-retries", 3)));
+        }
+    }
+
+    /**
+     * Limits for one player's transfers.
+     */
+    record Limits(int chunkBytes, int window, long ackTimeoutMillis) {}
+
+    private static final class Transfer {
+        final int id;
+        final byte[] payload;
+        final int chunkBytes;
+        final int frames;
+        int acked;
+        int next;
+        int retries;
+        long lastProgress;
+
+        Transfer(int id, byte[] payload, int chunkBytes) {
+            this.id = id;
+            this.payload = payload;
+            this.chunkBytes = chunkBytes;
+            this.frames = payload.length <= chunkBytes ? 1 : (payload.length + chunkBytes - 1) / chunkBytes;
+        }
+    }
+
+    private final Options options;
+    private final Limits defaults;
+    private final Function<UUID, Limits> limits;
+    private final BiConsumer<Player, byte[]> output;
+    private final Logger logger;
+    private final Map<UUID, Deque<Transfer>> queues = new ConcurrentHashMap<>();
+    private final AtomicInteger transferIds = new AtomicInteger();
+
+    /**
+     * @param limits the player's own limits, or {@code null} for the configured ones
+     * @param output sends one plugin message as it is
+     */
+    ChunkedSender(Options options, Function<UUID, Limits> limits, BiConsumer<Player, byte[]> output, Logger logger) {
+        this.options = options;
+        this.defaults = new Limits(options.chunkBytes(), options.window(), options.ackTimeoutMillis());
+        this.limits = limits;
+        this.output = output;
+        this.logger = logger;
+    }
+
+    /**
+     * Sends a payload, directly if nothing is queued for the player and it fits in one frame,
+     * otherwise through the player's queue.
+     */
+    void send(Player player, byte[] payload) {
+        Deque<Transfer> queue = queues.computeIfAbsent(player.getUniqueId(), id -> new ArrayDeque<>());
+        int chunkBytes = limitsOf(player).chunkBytes();
+        synchronized (queue) {
+            if (queue.isEmpty() && payload.length <= chunkBytes) {
+                output.accept(player, payload);
+                return;
+            }
+            queue.add(new Transfer(transferIds.incrementAndGet() & Integer.MAX_VALUE, payload, chunkBytes));
+            pump(player, queue, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Handles an acknowledgement: the client holds the first {@code received} frames of the transfer.
+     */
+    void onAck(Player player, int transferId, int received) {
+        Deque<Transfer> queue = queues.get(player.getUniqueId());
+        if (queue == null) return;
+        synchronized (queue) {
+            Transfer head = queue.peek();
+            if (head == null || head.id != transferId) return;
+            long now = System.currentTimeMillis();
+            if (received > head.acked) {
+                head.acked = Math.min(received, head.frames);
+                head.next = Math.max(head.next, head.acked);
+                head.retries = 0;
+                head.lastProgress = now;
+            } else if (received == head.acked && head.next > head.acked) {
+                // The client is missing the next frame: resume from there
+                head.next = head.acked;
+                head.lastProgress = now;
+            }
+            pump(player, queue, now);
+        }
+    }
+
+    /**
+     * Sends what the windows allow and resends stalled transfers. Runs every tick.
+     */
+    void tick() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<UUID, Deque<Transfer>>> it = queues.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<UUID, Deque<Transfer>> entry = it.next();
+            Player player = Bukkit.getPlayer(entry.getKey());
+            Deque<Transfer> queue = entry.getValue();
+            if (player == null || !player.isOnline()) {
+                it.remove();
+                continue;
+            }
+            synchronized (queue) {
+                pump(player, queue, now);
+            }
+        }
+    }
+
+    /**
+     * Transfers (including queued messages) not yet completely acknowledged, for all players.
+     */
+    int pending() {
+        int pending = 0;
+        for (Deque<Transfer> queue : queues.values()) {
+            synchronized (queue) {
+                pending += queue.size();
+            }
+        }
+        return pending;
+    }
+
+    void remove(UUID playerId) {
+        queues.remove(playerId);
+    }
+
+    void clear() {
+        queues.clear();
+    }
+
+    private Limits limitsOf(Player player) {
+        Limits own = limits.apply(player.getUniqueId());
+        return own != null ? own : defaults;
+    }
+
+    private void pump(Player player, Deque<Transfer> queue, long now) {
+        Limits current = limitsOf(player);
+        while (!queue.isEmpty()) {
+            Transfer head = queue.peek();
+            if (head.frames == 1) {
+                output.accept(player, head.payload);
+                queue.poll();
+                continue;
+            }
+            if (head.acked >= head.frames) {
+                queue.poll();
+                continue;
+            }
+            if (head.next == 0) {
+                head.lastProgress = now;
+            } else if (now - head.lastProgress > current.ackTimeoutMillis()) {
+                if (++head.retries > options.maxRetries()) {
+                    logger.warning("Dropping a " + head.payload.length + " byte transfer to " + player.getName()
+                            + ": no acknowledgement after " + options.maxRetries() + " retries");
+                    queue.poll();
+                    continue;
+                }
+                head.next = head.acked;
+                head.lastProgress = now;
+            }
+
+            while (head.next < head.frames && head.next - head.acked < current.window()) {
+                output.accept(player, frame(head, head.next++));
+            }
+            return;
+        }
+    }
+
+    private byte[] frame(Transfer transfer, int sequence) {
+        int offset = sequence * transfer.chunkBytes;
+        int length = Math.min(transfer.chunkBytes, transfer.payload.length - offset);
+        PacketWriter out = PacketWriter.message(Protocol.V2_CHUNK, length + 24);
+        out.writeVarInt(transfer.id);
+        out.writeVarInt(sequence);
+        out.writeVarInt(transfer.frames);
+        out.writeVarInt(transfer.payload.length);
+        out.writeBytes(transfer.payload, offset, length);
+        return out.toByteArray();
+    }
+}
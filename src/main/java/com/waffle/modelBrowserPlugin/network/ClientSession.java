@@ -0,0 +1,145 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What one client negotiated in the handshake, and how fast its connection is.
+ * <p>
+ * The server pings the client every few seconds ({@link Protocol#V2_PING}) and keeps a smoothed
+ * round-trip time and its variation, as TCP does. The transfer limits follow the queueing delay,
+ * the part of a round trip above the fastest one seen: when it exceeds the target, data is piling
+ * up somewhere on the way, so the frame window and frame size are halved; while it stays well
+ * below, the window grows by one frame per ping and frames grow back to the configured size. A
+ * ping that goes unanswered until the next one counts as congestion too. Slow or congested
+ * connections thus get fewer, smaller frames at a time, and fast ones are not held to the
+ * defaults.
+ * </p>
+ */
+final class ClientSession {
+
+    private static final int MIN_CHUNK_BYTES = 4 * 1024;
+
+    /**
+     * @param pingIntervalMillis     time between pings
+     * @param queueDelayTargetMillis queueing delay above which the limits are lowered
+     * @param maxWindow              largest frame window the limits may grow to
+     */
+    record Options(long pingIntervalMillis, long queueDelayTargetMillis, int maxWindow) {
+        static Options from(FileConfiguration config) {
+            return new Options(
+                    Math.max(1, config.getLong("network.rtt.ping-interval-seconds", 5)) * 1000L,
+                    Math.max(1, config.getLong("network.rtt.queue-delay-target-ms", 100)),
+                    Math.max(1, config.getInt("network.rtt.max-frames-in-flight", 32)));
+        }
+    }
+
+    private final Player player;
+    private final int version;
+    private final int features;
+    private final ChunkedSender.Options defaults;
+    private final Options options;
+
+    private long pingNonce;
+    private long pingSentNanos;
+    private boolean pingOutstanding;
+    private long srttNanos = -1;
+    private long rttvarNanos;
+    private long minRttNanos = Long.MAX_VALUE;
+    private int chunkBytes;
+    private int window;
+
+    ClientSession(Player player, int version, int features, ChunkedSender.Options defaults, Options options) {
+        this.player = player;
+        this.version = version;
+        this.features = features;
+        this.defaults = defaults;
+        this.options = options;
+        this.chunkBytes = defaults.chunkBytes();
+        this.window = Math.min(defaults.window(), options.maxWindow());
+    }
+
+    Player player() {
+        return player;
+    }
+
+    int version() {
+        return version;
+    }
+
+    int features() {
+        return features;
+    }
+
+    boolean has(int feature) {
+        return (features & feature) != 0;
+    }
+
+    /**
+     * Starts a ping and returns its nonce. An earlier ping still unanswered counts as lost.
+     */
+    synchronized long ping(long nowNanos) {
+        if (pingOutstanding) {
+            backOff();
+        }
+        pingOutstanding = true;
+        pingSentNanos = nowNanos;
+        return ++pingNonce;
+    }
+
+    /**
+     * Records the answer to a ping and adapts the limits.
+     *
+     * @return {@code false} if it does not answer the latest ping
+     */
+    synchronized boolean pong(long nonce, long nowNanos) {
+        if (!pingOutstanding || nonce != pingNonce) return false;
+        pingOutstanding = false;
+
+        long sample = Math.max(0, nowNanos - pingSentNanos);
+        if (srttNanos < 0) {
+            srttNanos = sample;
+            rttvarNanos = sample / 2;
+        } else {
+            rttvarNanos = (3 * rttvarNanos + Math.abs(srttNanos - sample)) / 4;
+            srttNanos = (7 * srttNanos + sample) / 8;
+        }
+        minRttNanos = Math.min(minRttNanos, sample);
+
+        long queueing = sample - minRttNanos;
+        long target = TimeUnit.MILLISECONDS.toNanos(options.queueDelayTargetMillis());
+        if (queueing > target) {
+            backOff();
+        } else if (queueing < target / 2) {
+            window = Math.min(options.maxWindow(), window + 1);
+            chunkBytes = Math.min(defaults.chunkBytes(), chunkBytes * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Frame size, window and acknowledgement timeout for transfers to this client. The timeout
+     * never drops below the configured one, but grows for connections slow enough to need it.
+     */
+    synchronized ChunkedSender.Limits limits() {
+        long timeout = defaults.ackTimeoutMillis();
+        if (srttNanos >= 0) {
+            timeout = Math.max(timeout, 4 * TimeUnit.NANOSECONDS.toMillis(srttNanos + 4 * rttvarNanos));
+        }
+        return new ChunkedSender.Limits(chunkBytes, window, timeout);
+    }
+
+    /**
+     * The smoothed round-trip time, or -1 before the first answered ping.
+     */
+    synchronized long rttMillis() {
+        return srttNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(srttNanos);
+    }
+
+    private void backOff() {
+        window = Math.max(1, window / 2);
+        chunkBytes = Math.max(Math.min(MIN_CHUNK_BYTES, defaults.chunkBytes()), chunkBytes / 2);
+    }
+}
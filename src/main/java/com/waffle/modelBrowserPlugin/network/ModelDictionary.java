@@ -0,0 +1,105 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import com.waffle.modelBrowserPlugin.manager.ModelIndex;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The model ids of one index generation, numbered in index order.
+ * <p>
+ * A v2 client receives the dictionary once per generation ({@link #encoded()}); every later
+ * message of that generation refers to models by their ordinal. In the encoded form each id is
+ * front-coded against the previous one (length of the shared prefix, then the rest), which
+ * removes the repeated namespace and common name stems.
+ * </p>
+ * <p>
+ * The same ids also serve as the preset dictionary for compressed messages ({@link #preset()}).
+ * </p>
+ */
+final class ModelDictionary {
+
+    private static final int PRESET_BYTES = 32 * 1024;
+
+    private final long generation;
+    private final List<String> ids;
+    private final Map<String, Integer> ordinals;
+    private final byte[] encoded;
+    private volatile byte[] preset;
+
+    private ModelDictionary(long generation, List<String> ids) {
+        this.generation = generation;
+        this.ids = ids;
+        this.ordinals = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            ordinals.put(ids.get(i), i);
+        }
+        this.encoded = encode(generation, ids);
+    }
+
+    static ModelDictionary of(ModelIndex index) {
+        return new ModelDictionary(index.getGeneration(), index.getIds());
+    }
+
+    long generation() {
+        return generation;
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    /**
+     * Returns the ordinal of an id, or -1 if it is not part of this generation.
+     */
+    int ordinal(String id) {
+        Integer ordinal = ordinals.get(id);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * The {@link Protocol#V2_DICTIONARY} message for this generation, built once and shared.
+     */
+    byte[] encoded() {
+        return encoded;
+    }
+
+    /**
+     * The Deflate preset dictionary of this generation: the ids in ordinal order, each followed
+     * by a newline, as UTF-8, cut to the last 32 KiB (the Deflate window). Clients build the same
+     * bytes from the dictionary they hold.
+     */
+    byte[] preset() {
+        byte[] result = preset;
+        if (result == null) {
+            byte[] all = (String.join("\n", ids) + (ids.isEmpty() ? "" : "\n")).getBytes(StandardCharsets.UTF_8);
+            result = all.length <= PRESET_BYTES ? all : Arrays.copyOfRange(all, all.length - PRESET_BYTES, all.length);
+            preset = result;
+        }
+        return result;
+    }
+
+    private static byte[] encode(long generation, List<String> ids) {
+        PacketWriter out = PacketWriter.message(Protocol.V2_DICTIONARY, 16 + ids.size() * 12);
+        out.writeVarLong(generation);
+        out.writeVarInt(ids.size());
+
+        byte[] previous = new byte[0];
+        for (String id : ids) {
+            byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            int max = Math.min(previous.length, bytes.length);
+            while (shared < max && previous[shared] == bytes[shared]) {
+                shared++;
+            }
+            out.writeVarInt(shared);
+            out.writeVarInt(bytes.length - shared);
+            out.writeBytes(bytes, shared, bytes.length - shared);
+            previous = bytes;
+        }
+        return out.toByteArray();
+    }
+}
@@ -7,25 +7,59 @@ import com.github.retrooper.packetevents.wrapper.play.server.*;
 import com.github.retrooper.packetevents.protocol.item.ItemStack;
 import com.github.retrooper.packetevents.protocol.item.type.ItemTypes;
 import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+import com.waffle.modelBrowserPlugin.manager.ModelIndex;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextColor;
 import net.kyori.adventure.text.format.TextDecoration;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+import org.bukkit.scheduler.BukkitTask;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class PacketEventsCommunicator {
+public class PacketEventsCommunicator implements Listener, PluginMessageListener {
 
     private static final String CHANNEL = "modelbrowser:main";
+    /** Clientbound plugin message limit, less room for the packet header. */
+    private static final int MAX_MESSAGE_BYTES = 1_048_576 - 256;
     private int nextWindowId = 100;
 
+    // Protocol v2: dictionary generation each player has received, and the current dictionary
+    private final Map<UUID, Long> dictionaryGenerations = new ConcurrentHashMap<>();
+    private volatile ModelDictionary dictionary;
+    private ChunkedSender chunkedSender;
+    private BukkitTask chunkTask;
+    private CatalogSync catalogSync;
+    private final PayloadCache payloads = new PayloadCache();
+    private volatile PayloadCompressor compressor;
+    private RequestDispatcher dispatcher;
+    // Handshake results per player, and the pings that time their connections
+    private final Map<UUID, ClientSession> sessions = new ConcurrentHashMap<>();
+    private ClientSession.Options sessionOptions;
+    private BukkitTask pingTask;
+
+    /**
+     * Plugin message counters for {@code /modelbrowser network}. Compression bytes are before and
+     * after compression of the messages that were compressed.
+     */
+    public record NetworkStats(long compressed, long belowThreshold, long incompressible,
+                               long bytesIn, long bytesOut, int pendingFrames,
+                               int queuedRequests, long droppedRequests, long limitedRequests, long mergedSearches,
+                               int sessions, long averageRttMillis) {
+        public long bytesSaved() {
+            return bytesIn - bytesOut;
+        }
+    }
+
     // Container Type IDs for 1.14+
     private static final int CONTAINER_GENERIC_9X1 = 0;
     private static final int CONTAINER_GENERIC_9X2 = 1;
@@ -52,11 +86,219 @@ public class PacketEventsCommunicator {
     private static final int CONTAINER_STONECUTTER = 22;
 
     public void initialize() {
-        // Setup any packet listeners
+        ModelBrowserPlugin plugin = ModelBrowserPlugin.getInstance();
+        plugin.getServer().getPluginManager().registerEvents(this, plugin);
+
+        chunkedSender = new ChunkedSender(ChunkedSender.Options.from(plugin.getPluginConfig()),
+                this::chunkLimits, this::sendFrame, plugin.getLogger());
+        chunkTask = plugin.getServer().getScheduler().runTaskTimer(plugin, chunkedSender::tick, 1L, 1L);
+        plugin.getServer().getMessenger().registerIncomingPluginChannel(plugin, CHANNEL, this);
+
+        catalogSync = new CatalogSync(plugin.getPluginConfig().getInt("network.delta-history", 32));
+        plugin.getModelManager().addIndexListener(catalogSync);
+
+        if (plugin.getPluginConfig().getBoolean("network.compression.enabled", true)) {
+            compressor = PayloadCompressor.from(plugin.getPluginConfig());
+        }
+
+        dispatcher = new RequestDispatcher(CHANNEL, this, plugin, RequestDispatcher.Options.from(plugin.getPluginConfig()));
+        PacketEvents.getAPI().getEventManager().registerListener(dispatcher);
+
+        sessionOptions = ClientSession.Options.from(plugin.getPluginConfig());
+        long pingTicks = Math.max(1, sessionOptions.pingIntervalMillis() / 50);
+        pingTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::pingSessions, pingTicks, pingTicks);
     }
 
     public void shutdown() {
-        // Clean up
+        ModelBrowserPlugin plugin = ModelBrowserPlugin.getInstance();
+        plugin.getServer().getMessenger().unregisterIncomingPluginChannel(plugin);
+        if (dispatcher != null) {
+            PacketEvents.getAPI().getEventManager().unregisterListener(dispatcher);
+            dispatcher.close();
+            dispatcher = null;
+        }
+        if (chunkTask != null) {
+            chunkTask.cancel();
+            chunkTask = null;
+        }
+        if (pingTask != null) {
+            pingTask.cancel();
+            pingTask = null;
+        }
+        sessions.clear();
+        if (chunkedSender != null) {
+            chunkedSender.clear();
+        }
+        if (catalogSync != null) {
+            plugin.getModelManager().removeIndexListener(catalogSync);
+            catalogSync = null;
+        }
+        if (compressor != null) {
+            compressor.close();
+            compressor = null;
+        }
+        dictionaryGenerations.clear();
+        dictionary = null;
+        payloads.clear();
+    }
+
+    /**
+     * Compression counters, frames waiting to be sent or acknowledged, and client requests
+     * waiting for a worker; zero for features that are off.
+     */
+    public NetworkStats getNetworkStats() {
+        PayloadCompressor current = compressor;
+        PayloadCompressor.Stats s = current != null ? current.stats() : new PayloadCompressor.Stats(0, 0, 0, 0, 0);
+        int pending = chunkedSender != null ? chunkedSender.pending() : 0;
+        RequestDispatcher requests = dispatcher;
+        long rttSum = 0;
+        int measured = 0;
+        for (ClientSession session : sessions.values()) {
+            long rtt = session.rttMillis();
+            if (rtt >= 0) {
+                rttSum += rtt;
+                measured++;
+            }
+        }
+        return new NetworkStats(s.compressed(), s.belowThreshold(), s.incompressible(), s.bytesIn(), s.bytesOut(), pending,
+                requests != null ? requests.queued() : 0, requests != null ? requests.dropped() : 0,
+                requests != null ? requests.limited() : 0, requests != null ? requests.merged() : 0,
+                sessions.size(), measured > 0 ? rttSum / measured : -1);
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        dictionaryGenerations.remove(event.getPlayer().getUniqueId());
+        if (chunkedSender != null) {
+            chunkedSender.remove(event.getPlayer().getUniqueId());
+        }
+        if (dispatcher != null) {
+            dispatcher.remove(event.getPlayer().getUniqueId());
+        }
+        sessions.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Client messages are normally taken off the Netty thread by the {@link RequestDispatcher}
+     * before they get here; this passes on any that still arrive through Bukkit.
+     */
+    @Override
+    public void onPluginMessageReceived(String channel, Player player, byte[] message) {
+        RequestDispatcher requests = dispatcher;
+        if (CHANNEL.equals(channel) && requests != null) {
+            requests.dispatch(player, message);
+        }
+    }
+
+    /**
+     * Answers a handshake: settles on the lower protocol version and the features both sides
+     * support, and remembers them for the player. The client starts over, so its dictionary is
+     * sent again when next needed.
+     */
+    void handshake(Player player, int clientVersion, int clientFeatures) {
+        ModelBrowserPlugin plugin = ModelBrowserPlugin.getInstance();
+        int serverVersion = plugin.getPluginConfig().getBoolean("network.protocol-v2", true) ? Protocol.PROTOCOL_VERSION : 1;
+        int version = Math.max(1, Math.min(clientVersion, serverVersion));
+        int features = 0;
+        if (version >= 2) {
+            if (chunkedSender != null) features |= Protocol.FEATURE_CHUNKING;
+            if (compressor != null) features |= Protocol.FEATURE_COMPRESSION;
+            if (catalogSync != null) features |= Protocol.FEATURE_DELTA_SYNC;
+        }
+        ClientSession session = new ClientSession(player, version, features & clientFeatures,
+                ChunkedSender.Options.from(plugin.getPluginConfig()), sessionOptions);
+        sessions.put(player.getUniqueId(), session);
+        resetSession(player);
+
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf("pong");
+        out.writeInt(session.version());
+        out.writeInt(session.features());
+        sendPacket(player, out.toByteArray());
+    }
+
+    void onPong(Player player, long nonce) {
+        ClientSession session = sessions.get(player.getUniqueId());
+        if (session != null) {
+            session.pong(nonce, System.nanoTime());
+        }
+    }
+
+    /**
+     * Pings every v2 client that sent a handshake. Pings bypass the transfer queue, so a large
+     * transfer in progress does not count as round-trip time.
+     */
+    private void pingSessions() {
+        for (ClientSession session : sessions.values()) {
+            if (session.version() < 2 || !session.player().isOnline()) continue;
+            long nonce = session.ping(System.nanoTime());
+            sendFrame(session.player(), PacketWriter.message(Protocol.V2_PING, 12).writeVarLong(nonce).toByteArray());
+        }
+    }
+
+    private ChunkedSender.Limits chunkLimits(UUID playerId) {
+        ClientSession session = sessions.get(playerId);
+        return session != null ? session.limits() : null;
+    }
+
+    void acknowledge(Player player, int transferId, int received) {
+        if (chunkedSender != null) {
+            chunkedSender.onAck(player, transferId, received);
+        }
+    }
+
+    /**
+     * Restores a {@link Protocol#V2_COMPRESSED} message from the player, or returns {@code null}
+     * if compression is off.
+     */
+    byte[] decompress(Player player, PacketReader in, byte[] message) {
+        PayloadCompressor current = compressor;
+        return current != null ? current.decompress(in, message, presetFor(player)) : null;
+    }
+
+    /**
+     * Forgets which dictionary the player has, so the next v2 message sends it again.
+     */
+    public void resetSession(Player player) {
+        dictionaryGenerations.remove(player.getUniqueId());
+    }
+
+    /**
+     * Brings a v2 client's catalog (dictionary and categories) up to date. The client sends the
+     * epoch and generation it holds; it gets {@link Protocol#SYNC_UNCHANGED}, the delta steps
+     * since its generation, or a full snapshot (dictionary and category list) when the delta is
+     * not available or would not be smaller.
+     */
+    void sendCatalogSync(Player player, long clientEpoch, long clientGeneration) {
+        CatalogSync catalogSync = this.catalogSync;
+        if (catalogSync == null) return;
+        ModelIndex index = ModelBrowserPlugin.getInstance().getModelManager().getIndex();
+        ModelDictionary dict = currentDictionary(index);
+        long generation = index.getGeneration();
+
+        PacketWriter out = PacketWriter.message(Protocol.V2_SYNC, 32);
+        if (clientEpoch == catalogSync.epoch() && clientGeneration == generation) {
+            out.writeVarInt(Protocol.SYNC_UNCHANGED).writeVarLong(catalogSync.epoch()).writeVarLong(generation);
+            sendPacket(player, out.toByteArray());
+        } else {
+            List<byte[]> steps = clientEpoch == catalogSync.epoch() && clientGeneration < generation
+                    ? catalogSync.stepsBetween(clientGeneration, generation, dict.encoded().length)
+                    : null;
+            if (steps != null) {
+                out.writeVarInt(Protocol.SYNC_DELTA).writeVarLong(catalogSync.epoch()).writeVarLong(generation);
+                out.writeVarInt(steps.size());
+                for (byte[] step : steps) {
+                    out.writeBytes(step, 0, step.length);
+                }
+                sendPacket(player, out.toByteArray());
+            } else {
+                out.writeVarInt(Protocol.SYNC_FULL).writeVarLong(catalogSync.epoch()).writeVarLong(generation);
+                sendPacket(player, out.toByteArray());
+                sendPacket(player, dict.encoded());
+                sendPacket(player, payloads.get(index, "v2/category_list", i -> categoryListV2(dict, i.getCategories())));
+            }
+        }
+        dictionaryGenerations.put(player.getUniqueId(), generation);
     }
 
     // =============== GUI METHODS ===============
@@ -251,101 +493,281 @@ public class PacketEventsCommunicator {
     }
 
     public void sendModelList(Player player, List<String> models) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream out = new DataOutputStream(baos);
-
-            out.writeUTF("model_list");
-            out.writeInt(models.size());
-            for (String model : models) {
-                out.writeUTF(model);
-            }
+        if (usesV2(player)) {
+            sendPacket(player, modelListV2(syncDictionary(player, currentIndex()), models));
+        } else {
+            sendPacket(player, modelListV1(models));
+        }
+    }
 
-            sendPacket(player, baos.toByteArray());
-        } catch (IOException e) {
-            e.printStackTrace();
+    /**
+     * Sends every model of the current catalog. The message is encoded once per index generation
+     * and the same bytes go to every player.
+     */
+    public void sendModelList(Player player) {
+        ModelIndex index = currentIndex();
+        if (usesV2(player)) {
+            ModelDictionary dict = syncDictionary(player, index);
+            sendPacket(player, payloads.get(index, "v2/model_list", i -> modelListV2(dict, i.getIds())));
+        } else {
+            sendPacket(player, payloads.get(index, "v1/model_list", i -> modelListV1(i.getIds())));
         }
     }
 
     public void sendSearchResults(Player player, String query, List<String> results) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream out = new DataOutputStream(baos);
-
-            out.writeUTF("search_results");
-            out.writeUTF(query);
-            out.writeInt(results.size());
+        if (usesV2(player)) {
+            ModelDictionary dict = syncDictionary(player, currentIndex());
+            PacketWriter out = PacketWriter.pooledMessage(Protocol.V2_SEARCH_RESULTS);
+            out.writeVarLong(dict.generation());
+            out.writeString(query);
+            out.writeVarInt(results.size());
             for (String result : results) {
-                out.writeUTF(result);
+                out.writeId(dict, result);
             }
+            sendPacket(player, out.toByteArray());
+            return;
+        }
 
-            sendPacket(player, baos.toByteArray());
-        } catch (Exception e) {
-            e.printStackTrace();
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf("search_results");
+        out.writeUtf(query);
+        out.writeInt(results.size());
+        for (String result : results) {
+            out.writeUtf(result);
         }
+        sendPacket(player, out.toByteArray());
     }
 
     public void sendCategories(Player player, Map<String, List<String>> categories) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream out = new DataOutputStream(baos);
-
-            out.writeUTF("categories");
-            out.writeInt(categories.size());
-            for (Map.Entry<String, List<String>> entry : categories.entrySet()) {
-                out.writeUTF(entry.getKey());
-                out.writeInt(entry.getValue().size());
-                for (String model : entry.getValue()) {
-                    out.writeUTF(model);
-                }
-            }
+        if (usesV2(player)) {
+            sendPacket(player, categoryListV2(syncDictionary(player, currentIndex()), categories));
+        } else {
+            sendPacket(player, categoriesV1(categories));
+        }
+    }
 
-            sendPacket(player, baos.toByteArray());
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Sends the categories of the current catalog, encoded once per index generation like
+     * {@link #sendModelList(Player)}.
+     */
+    public void sendCategories(Player player) {
+        ModelIndex index = currentIndex();
+        if (usesV2(player)) {
+            ModelDictionary dict = syncDictionary(player, index);
+            sendPacket(player, payloads.get(index, "v2/category_list", i -> categoryListV2(dict, i.getCategories())));
+        } else {
+            sendPacket(player, payloads.get(index, "v1/categories", i -> categoriesV1(i.getCategories())));
         }
     }
 
     public void sendModelInfo(Player player, String modelId, Map<String, Object> info) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream out = new DataOutputStream(baos);
+        if (usesV2(player)) {
+            ModelDictionary dict = syncDictionary(player, currentIndex());
+            PacketWriter out = PacketWriter.pooledMessage(Protocol.V2_MODEL_INFO);
+            out.writeVarLong(dict.generation());
+            out.writeId(dict, modelId);
+            out.writeVarLong((Long) info.get("size"));
+            out.writeString((String) info.get("category"));
+            out.writeVarLong((Long) info.get("lastModified"));
+            sendPacket(player, out.toByteArray());
+            return;
+        }
+
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf("model_info");
+        out.writeUtf(modelId);
+        out.writeLong((Long) info.get("size"));
+        out.writeUtf((String) info.get("category"));
+        out.writeLong((Long) info.get("lastModified"));
+        sendPacket(player, out.toByteArray());
+    }
 
-            out.writeUTF("model_info");
-            out.writeUTF(modelId);
-            out.writeLong((Long) info.get("size"));
-            out.writeUTF((String) info.get("category"));
-            out.writeLong((Long) info.get("lastModified"));
+    public void sendCategoryModels(Player player, String category, List<String> models) {
+        if (usesV2(player)) {
+            ModelDictionary dict = syncDictionary(player, currentIndex());
+            PacketWriter out = PacketWriter.pooledMessage(Protocol.V2_CATEGORY_MODELS);
+            out.writeVarLong(dict.generation());
+            out.writeString(category);
+            out.writeVarInt(models.size());
+            for (String model : models) {
+                out.writeId(dict, model);
+            }
+            sendPacket(player, out.toByteArray());
+            return;
+        }
 
-            sendPacket(player, baos.toByteArray());
-        } catch (Exception e) {
-            e.printStackTrace();
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf("category_models");
+        out.writeUtf(category);
+        out.writeInt(models.size());
+        for (String model : models) {
+            out.writeUtf(model);
         }
+        sendPacket(player, out.toByteArray());
+    }
+
+    public void sendPong(Player player) {
+        sendPacket(player, "pong", new byte[0]);
+    }
+
+    /**
+     * Tells the client a request failed, with one of the {@code ERROR} codes of {@link Protocol}.
+     */
+    public void sendError(Player player, String code, String message) {
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf("error");
+        out.writeUtf(code);
+        out.writeUtf(message);
+        sendPacket(player, out.toByteArray());
     }
 
     public void sendNotification(Player player, String message) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream out = new DataOutputStream(baos);
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf("notification");
+        out.writeUtf(message);
+        sendPacket(player, out.toByteArray());
+    }
 
-            out.writeUTF("notification");
-            out.writeUTF(message);
+    /**
+     * Whether v2 is enabled and the player's client negotiated it in the handshake or, without
+     * one, announced it by registering {@link Protocol#CHANNEL_V2}.
+     */
+    private boolean usesV2(Player player) {
+        if (!ModelBrowserPlugin.getInstance().getPluginConfig().getBoolean("network.protocol-v2", true)) return false;
+        ClientSession session = sessions.get(player.getUniqueId());
+        return session != null ? session.version() >= 2 : player.getListeningPluginChannels().contains(Protocol.CHANNEL_V2);
+    }
 
-            sendPacket(player, baos.toByteArray());
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * Whether a v2 client takes the given {@code Protocol.FEATURE_}. Clients without a handshake
+     * get chunking and delta sync with v2, and compression if they registered
+     * {@link Protocol#CHANNEL_DEFLATE}.
+     */
+    private boolean supports(Player player, int feature) {
+        ClientSession session = sessions.get(player.getUniqueId());
+        if (session != null) return session.has(feature);
+        return feature != Protocol.FEATURE_COMPRESSION
+                || player.getListeningPluginChannels().contains(Protocol.CHANNEL_DEFLATE);
+    }
+
+    private static ModelIndex currentIndex() {
+        return ModelBrowserPlugin.getInstance().getModelManager().getIndex();
+    }
+
+    private static byte[] modelListV1(List<String> models) {
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf("model_list");
+        out.writeInt(models.size());
+        for (String model : models) {
+            out.writeUtf(model);
         }
+        return out.toByteArray();
     }
 
-    private void sendPacket(Player player, byte[] data) {
-        try {
-            PlayerManager playerManager = PacketEvents.getAPI().getPlayerManager();
-            ClientVersion clientVersion = playerManager.getClientVersion(player);
+    private static byte[] modelListV2(ModelDictionary dict, List<String> models) {
+        PacketWriter out = PacketWriter.pooledMessage(Protocol.V2_MODEL_LIST);
+        out.writeVarLong(dict.generation());
+        out.writeVarInt(models.size());
+        for (String model : models) {
+            out.writeId(dict, model);
+        }
+        return out.toByteArray();
+    }
 
-            if (clientVersion == null) {
-                clientVersion = ClientVersion.V_1_21_7;
+    private static byte[] categoriesV1(Map<String, List<String>> categories) {
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf("categories");
+        out.writeInt(categories.size());
+        for (Map.Entry<String, List<String>> entry : categories.entrySet()) {
+            out.writeUtf(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (String model : entry.getValue()) {
+                out.writeUtf(model);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] categoryListV2(ModelDictionary dict, Map<String, List<String>> categories) {
+        PacketWriter out = PacketWriter.pooledMessage(Protocol.V2_CATEGORY_LIST);
+        out.writeVarLong(dict.generation());
+        out.writeVarInt(categories.size());
+        for (Map.Entry<String, List<String>> entry : categories.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeVarInt(entry.getValue().size());
+            for (String model : entry.getValue()) {
+                out.writeId(dict, model);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the dictionary of the snapshot's generation, sending it to the player first if
+     * they have not received this generation yet.
+     */
+    private ModelDictionary syncDictionary(Player player, ModelIndex index) {
+        ModelDictionary dict = currentDictionary(index);
+        // Atomic per player, so a request answered on another worker cannot overtake the dictionary
+        dictionaryGenerations.compute(player.getUniqueId(), (id, sent) -> {
+            if (sent == null || sent != dict.generation()) {
+                sendPacket(player, dict.encoded());
             }
+            return dict.generation();
+        });
+        return dict;
+    }
 
+    /**
+     * The dictionary usable as the compression preset for the player: the current one, if the
+     * player has been sent it.
+     */
+    private ModelDictionary presetFor(Player player) {
+        ModelDictionary dict = dictionary;
+        if (dict == null) return null;
+        Long sent = dictionaryGenerations.get(player.getUniqueId());
+        return sent != null && sent == dict.generation() ? dict : null;
+    }
+
+    private ModelDictionary currentDictionary(ModelIndex index) {
+        ModelDictionary dict = dictionary;
+        if (dict == null || dict.generation() != index.getGeneration()) {
+            dict = ModelDictionary.of(index);
+            dictionary = dict;
+        }
+        return dict;
+    }
+
+    /**
+     * Sends a message to the player, compressed for v2 clients that negotiated compression: through
+     * the chunked sender (any size, in order) for v2 clients with chunking, otherwise as one plugin
+     * message if it fits.
+     */
+    private void sendPacket(Player player, byte[] data) {
+        if (usesV2(player)) {
+            PayloadCompressor current = compressor;
+            if (current != null && supports(player, Protocol.FEATURE_COMPRESSION)) {
+                // The dictionary message itself may be what gives the client the preset
+                boolean isDictionary = data.length > 1 && data[0] == (byte) Protocol.V2_MAGIC && data[1] == Protocol.V2_DICTIONARY;
+                data = current.compress(data, isDictionary ? null : presetFor(player));
+            }
+            if (chunkedSender != null && supports(player, Protocol.FEATURE_CHUNKING)) {
+                chunkedSender.send(player, data);
+                return;
+            }
+        }
+        if (data.length > MAX_MESSAGE_BYTES) {
+            // Sending it would disconnect the player
+            ModelBrowserPlugin.getInstance().getLogger().warning("Not sending a " + data.length + " byte message to "
+                    + player.getName() + ": too large for a client without chunked transfer");
+            return;
+        }
+        sendFrame(player, data);
+    }
+
+    private void sendFrame(Player player, byte[] data) {
+        try {
+            PlayerManager playerManager = PacketEvents.getAPI().getPlayerManager();
             WrapperPlayServerPluginMessage packet = new WrapperPlayServerPluginMessage(
                     CHANNEL,
                     data
@@ -359,17 +781,10 @@ public class PacketEventsCommunicator {
     }
 
     private void sendPacket(Player player, String subChannel, byte[] data) {
-        try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            DataOutputStream out = new DataOutputStream(baos);
-
-            out.writeUTF(subChannel);
-            out.write(data);
-
-            sendPacket(player, baos.toByteArray());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        PacketWriter out = PacketWriter.pooled();
+        out.writeUtf(subChannel);
+        out.writeBytes(data, 0, data.length);
+        sendPacket(player, out.toByteArray());
     }
 
     // =============== SIMPLE GUI METHOD ===============
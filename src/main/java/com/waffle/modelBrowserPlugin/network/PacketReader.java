@@ -0,0 +1,105 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads messages sent by the client, the counterpart of {@link PacketWriter}: v2 varints and
+ * strings, and v1 {@code writeUTF} strings and ints. Every read checks the remaining
+ * length, so a truncated or garbled message fails with an {@link IllegalArgumentException}
+ * instead of reading past the end.
+ */
+final class PacketReader {
+
+    private static final int MAX_STRING_BYTES = 32 * 1024;
+
+    private final byte[] data;
+    private int position;
+
+    PacketReader(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Whether the message starts with the v2 marker; if so, it is consumed.
+     */
+    boolean readMagic() {
+        if (data.length == 0 || (data[0] & 0xFF) != Protocol.V2_MAGIC) return false;
+        position = 1;
+        return true;
+    }
+
+    int readByte() {
+        if (position >= data.length) throw new IllegalArgumentException("Message truncated");
+        return data[position++] & 0xFF;
+    }
+
+    int readVarInt() {
+        long value = readVarLong();
+        if (value > Integer.MAX_VALUE) throw new IllegalArgumentException("Varint out of range");
+        return (int) value;
+    }
+
+    long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalArgumentException("Varint too long");
+    }
+
+    String readString() {
+        int length = readVarInt();
+        if (length > MAX_STRING_BYTES || length > remaining()) throw new IllegalArgumentException("Bad string length");
+        String value = new String(data, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Reads a big-endian int (v1 numbers).
+     */
+    int readInt() {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a string like {@link java.io.DataInputStream#readUTF}: an unsigned short byte length,
+     * then modified UTF-8.
+     */
+    String readUtf() {
+        int length = (readByte() << 8) | readByte();
+        if (length > remaining()) throw new IllegalArgumentException("Bad string length");
+        int end = position + length;
+        StringBuilder value = new StringBuilder(length);
+        while (position < end) {
+            int b = data[position++] & 0xFF;
+            if (b < 0x80) {
+                value.append((char) b);
+            } else if ((b & 0xE0) == 0xC0 && position < end) {
+                value.append((char) (((b & 0x1F) << 6) | continuation()));
+            } else if ((b & 0xF0) == 0xE0 && position + 1 < end) {
+                int second = continuation();
+                value.append((char) (((b & 0x0F) << 12) | (second << 6) | continuation()));
+            } else {
+                throw new IllegalArgumentException("Malformed string");
+            }
+        }
+        return value.toString();
+    }
+
+    int remaining() {
+        return data.length - position;
+    }
+
+    private int continuation() {
+        int b = data[position++] & 0xFF;
+        if ((b & 0xC0) != 0x80) throw new IllegalArgumentException("Malformed string");
+        return b & 0x3F;
+    }
+}
@@ -0,0 +1,182 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer for protocol v2 messages.
+ * <p>
+ * Counts, lengths and numbers are written as unsigned LEB128 varints (7 bits per byte, high bit
+ * set on all but the last byte), so the small values that make up most of a message take one
+ * byte instead of four or eight. Strings are a varint byte length followed by UTF-8.
+ * </p>
+ * <p>
+ * It also writes the fixed-width v1 format ({@link #writeUtf}, {@link #writeInt},
+ * {@link #writeLong}), byte for byte like {@link java.io.DataOutputStream}. Messages that are
+ * encoded per player are built in a reused per-thread writer ({@link #pooled()}), so sending them
+ * allocates only the final array.
+ * </p>
+ */
+final class PacketWriter {
+
+    /** Pooled writers that grew beyond this are replaced rather than kept around. */
+    private static final int MAX_POOLED_BYTES = 64 * 1024;
+    private static final ThreadLocal<PacketWriter> POOL = ThreadLocal.withInitial(() -> new PacketWriter(1024));
+
+    private byte[] buffer;
+    private int size;
+
+    PacketWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Starts a v2 message of the given type.
+     */
+    static PacketWriter message(int type, int initialCapacity) {
+        PacketWriter writer = new PacketWriter(initialCapacity);
+        writer.writeByte(Protocol.V2_MAGIC);
+        writer.writeByte(type);
+        return writer;
+    }
+
+    /**
+     * Returns this thread's reusable writer, emptied. Its content has to be taken out with
+     * {@link #toByteArray()} before the same thread encodes another message.
+     */
+    static PacketWriter pooled() {
+        PacketWriter writer = POOL.get();
+        if (writer.buffer.length > MAX_POOLED_BYTES) {
+            writer = new PacketWriter(1024);
+            POOL.set(writer);
+        }
+        writer.size = 0;
+        return writer;
+    }
+
+    /**
+     * Starts a v2 message of the given type in this thread's reusable writer.
+     */
+    static PacketWriter pooledMessage(int type) {
+        return pooled().writeByte(Protocol.V2_MAGIC).writeByte(type);
+    }
+
+    PacketWriter writeByte(int value) {
+        ensure(1);
+        buffer[size++] = (byte) value;
+        return this;
+    }
+
+    PacketWriter writeBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, size, length);
+        size += length;
+        return this;
+    }
+
+    /**
+     * Writes a non-negative int as a varint (1 to 5 bytes).
+     */
+    PacketWriter writeVarInt(int value) {
+        return writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a non-negative long as a varint (1 to 10 bytes).
+     */
+    PacketWriter writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[size++] = (byte) value;
+        return this;
+    }
+
+    PacketWriter writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        return writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes a string like {@link java.io.DataOutputStream#writeUTF}: an unsigned short byte
+     * length, then modified UTF-8. Used by v1 messages.
+     */
+    PacketWriter writeUtf(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            length += c >= 0x01 && c <= 0x7F ? 1 : c <= 0x7FF ? 2 : 3;
+        }
+        if (length > 0xFFFF) throw new IllegalArgumentException("String too long: " + length + " bytes");
+
+        ensure(2 + length);
+        buffer[size++] = (byte) (length >>> 8);
+        buffer[size++] = (byte) length;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x01 && c <= 0x7F) {
+                buffer[size++] = (byte) c;
+            } else if (c <= 0x7FF) {
+                buffer[size++] = (byte) (0xC0 | (c >> 6));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                buffer[size++] = (byte) (0xE0 | (c >> 12));
+                buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[size++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Writes a big-endian int (v1 counts).
+     */
+    PacketWriter writeInt(int value) {
+        ensure(4);
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a big-endian long (v1 sizes and timestamps).
+     */
+    PacketWriter writeLong(long value) {
+        ensure(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer[size++] = (byte) (value >>> shift);
+        }
+        return this;
+    }
+
+    /**
+     * Writes a model id as its dictionary ordinal + 1, or as 0 followed by the id itself when the
+     * dictionary does not know it (e.g. a model added after the dictionary was sent).
+     */
+    PacketWriter writeId(ModelDictionary dictionary, String id) {
+        int ordinal = dictionary.ordinal(id);
+        if (ordinal >= 0) {
+            return writeVarInt(ordinal + 1);
+        }
+        writeVarInt(0);
+        return writeString(id);
+    }
+
+    int size() {
+        return size;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size);
+    }
+
+    private void ensure(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import com.waffle.modelBrowserPlugin.manager.ModelIndex;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Plugin message payloads that are the same for every player (the full model list, the
+ * category list), encoded once per index generation.
+ * <p>
+ * When many players open the browser at once, they all get the same array instead of each
+ * encoding their own copy. The cached arrays are shared and must never be modified. A new
+ * generation replaces the whole cache; a caller still holding an older snapshot gets a freshly
+ * encoded payload that is not cached.
+ * </p>
+ */
+final class PayloadCache {
+
+    private record Generation(long generation, Map<String, byte[]> payloads) {}
+
+    private volatile Generation current = new Generation(-1, new ConcurrentHashMap<>());
+
+    /**
+     * Returns the payload stored under {@code key} for the snapshot's generation, encoding it
+     * with {@code encoder} on first use.
+     */
+    byte[] get(ModelIndex index, String key, Function<ModelIndex, byte[]> encoder) {
+        Generation generation = current;
+        if (generation.generation() != index.getGeneration()) {
+            synchronized (this) {
+                generation = current;
+                if (index.getGeneration() < generation.generation()) {
+                    return encoder.apply(index);
+                }
+                if (index.getGeneration() > generation.generation()) {
+                    generation = new Generation(index.getGeneration(), new ConcurrentHashMap<>());
+                    current = generation;
+                }
+            }
+        }
+        return generation.payloads().computeIfAbsent(key, k -> encoder.apply(index));
+    }
+
+    void clear() {
+        current = new Generation(-1, new ConcurrentHashMap<>());
+    }
+}
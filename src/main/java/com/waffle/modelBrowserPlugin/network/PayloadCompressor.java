@@ -0,0 +1,192 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflate compression of v2 messages for clients that registered {@link Protocol#CHANNEL_DEFLATE}.
+ * <p>
+ * A compressed message is {@link Protocol#V2_COMPRESSED}, the preset dictionary's generation + 1
+ * (0 for none), the original length, and a zlib stream of the original message. The preset
+ * dictionary is the model dictionary the client already holds ({@link ModelDictionary#preset()}),
+ * so the namespaces, prefixes and suffixes of model ids compress well even in short messages.
+ * </p>
+ * <p>
+ * Messages below the threshold are sent as they are, and so are messages that do not shrink by at
+ * least an eighth; both are counted, along with the bytes saved. {@link Deflater} and
+ * {@link Inflater} instances are pooled, since each holds native memory and is costly to create.
+ * Payloads shared between players (see {@link PayloadCache}) are compressed once per preset.
+ * </p>
+ */
+final class PayloadCompressor {
+
+    private static final int MAX_POOLED = 8;
+    private static final int MAX_INFLATED_BYTES = 1 << 20;
+
+    /**
+     * Compression counters. Bytes are before and after compression of the compressed messages.
+     */
+    record Stats(long compressed, long belowThreshold, long incompressible, long bytesIn, long bytesOut) {
+        long bytesSaved() {
+            return bytesIn - bytesOut;
+        }
+    }
+
+    private record Cached(long presetGeneration, byte[] compressed) {}
+
+    private final int threshold;
+    private final int level;
+    private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+    private final Map<byte[], Cached> cache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final LongAdder compressed = new LongAdder();
+    private final LongAdder belowThreshold = new LongAdder();
+    private final LongAdder incompressible = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    PayloadCompressor(int threshold, int level) {
+        this.threshold = Math.max(0, threshold);
+        this.level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+    static PayloadCompressor from(FileConfiguration config) {
+        return new PayloadCompressor(config.getInt("network.compression.threshold-bytes", 256),
+                config.getInt("network.compression.level", 6));
+    }
+
+    /**
+     * Returns the message compressed with the preset, or unchanged if that does not pay off.
+     *
+     * @param preset the dictionary the client holds, or {@code null} for none
+     */
+    byte[] compress(byte[] message, ModelDictionary preset) {
+        if (message.length < threshold) {
+            belowThreshold.increment();
+            return message;
+        }
+        long presetGeneration = preset != null ? preset.generation() + 1 : 0;
+        Cached cached = cache.get(message);
+        if (cached != null && cached.presetGeneration() == presetGeneration) {
+            return count(message, cached.compressed());
+        }
+
+        byte[] result = deflate(message, preset, presetGeneration);
+        cache.put(message, new Cached(presetGeneration, result));
+        return count(message, result);
+    }
+
+    /**
+     * Restores a {@link Protocol#V2_COMPRESSED} message (magic and type already read).
+     *
+     * @throws IllegalArgumentException if it is malformed or refers to another preset
+     */
+    byte[] decompress(PacketReader in, byte[] message, ModelDictionary preset) {
+        long presetGeneration = in.readVarLong();
+        int length = in.readVarInt();
+        if (length > MAX_INFLATED_BYTES) throw new IllegalArgumentException("Compressed message too large");
+        if (presetGeneration != 0 && (preset == null || preset.generation() + 1 != presetGeneration)) {
+            throw new IllegalArgumentException("Unknown preset dictionary");
+        }
+
+        Inflater inflater = inflaters.poll();
+        if (inflater == null) inflater = new Inflater();
+        try {
+            inflater.setInput(message, message.length - in.remaining(), in.remaining());
+            byte[] out = new byte[length];
+            int n = 0;
+            while (n < length) {
+                int read = inflater.inflate(out, n, length - n);
+                if (read == 0) {
+                    if (!inflater.needsDictionary()) break;
+                    if (preset == null) throw new IllegalArgumentException("Missing preset dictionary");
+                    inflater.setDictionary(preset.preset());
+                }
+                n += read;
+            }
+            if (n != length || !inflater.finished()) throw new IllegalArgumentException("Corrupt compressed message");
+            return out;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt compressed message", e);
+        } finally {
+            release(inflater);
+        }
+    }
+
+    Stats stats() {
+        return new Stats(compressed.sum(), belowThreshold.sum(), incompressible.sum(), bytesIn.sum(), bytesOut.sum());
+    }
+
+    void close() {
+        Deflater deflater;
+        while ((deflater = deflaters.poll()) != null) deflater.end();
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) inflater.end();
+        cache.clear();
+    }
+
+    private byte[] deflate(byte[] message, ModelDictionary preset, long presetGeneration) {
+        Deflater deflater = deflaters.poll();
+        if (deflater == null) deflater = new Deflater(level);
+        try {
+            if (preset != null) deflater.setDictionary(preset.preset());
+            deflater.setInput(message);
+            deflater.finish();
+
+            // Worth it only if it saves at least an eighth
+            int limit = message.length - message.length / 8;
+            PacketWriter header = PacketWriter.message(Protocol.V2_COMPRESSED, 24);
+            header.writeVarLong(presetGeneration);
+            header.writeVarInt(message.length);
+            byte[] buffer = new byte[limit];
+            int n = 0;
+            while (!deflater.finished() && n < buffer.length) {
+                n += deflater.deflate(buffer, n, buffer.length - n);
+            }
+            if (!deflater.finished() || header.size() + n >= limit) return message;
+            header.writeBytes(buffer, 0, n);
+            return header.toByteArray();
+        } finally {
+            release(deflater);
+        }
+    }
+
+    private byte[] count(byte[] message, byte[] result) {
+        if (result == message) {
+            incompressible.increment();
+        } else {
+            compressed.increment();
+            bytesIn.add(message.length);
+            bytesOut.add(result.length);
+        }
+        return result;
+    }
+
+    private void release(Deflater deflater) {
+        deflater.reset();
+        if (deflaters.size() < MAX_POOLED) {
+            deflaters.add(deflater);
+        } else {
+            deflater.end();
+        }
+    }
+
+    private void release(Inflater inflater) {
+        inflater.reset();
+        if (inflaters.size() < MAX_POOLED) {
+            inflaters.add(inflater);
+        } else {
+            inflater.end();
+        }
+    }
+}
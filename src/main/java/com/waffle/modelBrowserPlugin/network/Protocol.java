@@ -50,7 +50,11 @@ public class Protocol {
     /** Request detailed information about a specific model. */
     public static final String GET_MODEL_INFO = "get_model_info";
 
-    /** Test connection to the server. */
+    /**
+     * Test connection to the server. Followed by the client's protocol version and
+     * {@code FEATURE_} bits (two ints), it is the handshake: the {@link #PONG} then carries the
+     * negotiated version and features.
+     */
     public static final String PING = "ping";
 
     // Server -> Client responses
@@ -85,9 +89,96 @@ public class Protocol {
     /** General notification message to display to the player. */
     public static final String NOTIFICATION = "notification";
 
-    /** Response to a ping request. */
+    /** Response to a ping request; to a handshake, with the negotiated version and features. */
     public static final String PONG = "pong";
 
+    // Protocol v2 (binary, see PacketWriter and ModelDictionary)
+
+    /**
+     * Plugin channel a client registers to announce that it understands v2 messages.
+     * Clients that do not register it keep receiving v1 messages.
+     */
+    public static final String CHANNEL_V2 = "modelbrowser:v2";
+
+    /** Highest protocol version this server speaks; the handshake settles on the lower of both sides. */
+    public static final int PROTOCOL_VERSION = 2;
+
+    /** Handshake feature: chunked, acknowledged transfers ({@link #V2_CHUNK}, {@link #V2_ACK}). */
+    public static final int FEATURE_CHUNKING = 1;
+
+    /** Handshake feature: {@link #V2_COMPRESSED} messages. */
+    public static final int FEATURE_COMPRESSION = 2;
+
+    /** Handshake feature: catalog delta sync ({@link #V2_SYNC_REQUEST}, {@link #V2_SYNC}). */
+    public static final int FEATURE_DELTA_SYNC = 4;
+
+    /**
+     * Plugin channel a v2 client registers to accept {@link #V2_COMPRESSED} messages, for clients
+     * that do not send a handshake.
+     */
+    public static final String CHANNEL_DEFLATE = "modelbrowser:deflate";
+
+    /**
+     * First byte of every v2 message. A v1 message starts with the {@code writeUTF} length of
+     * its type name, whose first byte is always 0, so the two can be told apart.
+     */
+    public static final int V2_MAGIC = 0xB2;
+
+    /** The model ids of one index generation; later messages refer to models by ordinal. */
+    public static final int V2_DICTIONARY = 1;
+
+    /** Model ordinals of the full model list. */
+    public static final int V2_MODEL_LIST = 2;
+
+    /** Search query and the ordinals of the matching models. */
+    public static final int V2_SEARCH_RESULTS = 3;
+
+    /** Category names, each with the ordinals of its models. */
+    public static final int V2_CATEGORY_LIST = 4;
+
+    /** Details of one model, referred to by ordinal. */
+    public static final int V2_MODEL_INFO = 5;
+
+    /** One frame of a payload too large for a single plugin message, see ChunkedSender. */
+    public static final int V2_CHUNK = 6;
+
+    /** Client -> Server: transfer id and the number of its frames received in order. */
+    public static final int V2_ACK = 7;
+
+    /** Client -> Server: the catalog epoch and generation the client holds (0 and 0 for none). */
+    public static final int V2_SYNC_REQUEST = 8;
+
+    /**
+     * Answer to {@link #V2_SYNC_REQUEST}: mode, epoch and current generation, then for
+     * {@link #SYNC_DELTA} the steps to apply (see CatalogSync). {@link #SYNC_FULL} is followed by
+     * a dictionary and a category list message.
+     */
+    public static final int V2_SYNC = 9;
+
+    /** Sync mode: the client's catalog is current. */
+    public static final int SYNC_UNCHANGED = 0;
+
+    /** Sync mode: delta steps from the client's generation follow. */
+    public static final int SYNC_DELTA = 1;
+
+    /** Sync mode: a full snapshot follows. */
+    public static final int SYNC_FULL = 2;
+
+    /**
+     * A Deflate-compressed message, in either direction: preset generation + 1 (0 for none),
+     * original length, zlib data. See PayloadCompressor.
+     */
+    public static final int V2_COMPRESSED = 10;
+
+    /** The ordinals of the models in one category, answering {@link #GET_MODELS_BY_CATEGORY}. */
+    public static final int V2_CATEGORY_MODELS = 11;
+
+    /** Server -> Client: a nonce, to be echoed in a {@link #V2_PONG} right away (round-trip time). */
+    public static final int V2_PING = 12;
+
+    /** Client -> Server: the nonce of the {@link #V2_PING} being answered. */
+    public static final int V2_PONG = 13;
+
     // Error messages
 
     /** General error message type. */
@@ -0,0 +1,303 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import com.github.retrooper.packetevents.event.PacketListenerAbstract;
+import com.github.retrooper.packetevents.event.PacketReceiveEvent;
+import com.github.retrooper.packetevents.protocol.packettype.PacketType;
+import com.github.retrooper.packetevents.wrapper.play.client.WrapperPlayClientPluginMessage;
+import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+import com.waffle.modelBrowserPlugin.manager.ModelIndex;
+import com.waffle.modelBrowserPlugin.util.RateLimiter;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Answers client requests on the {@code modelbrowser:main} channel without the main thread.
+ * <p>
+ * Incoming plugin messages are taken from the Netty thread before Bukkit sees them and decoded
+ * there. Transfer acknowledgements are handled right away; everything else is a read of the
+ * immutable model index and runs on a small worker pool. Interactive requests (search, model
+ * info, one category, ping) are queued ahead of bulk ones (the full model list, all categories,
+ * catalog sync), so a player typing a search is not stuck behind a crowd that just joined and
+ * asked for the whole catalog. Within a priority, requests run in arrival order. When the queue
+ * is full, new requests are dropped and counted.
+ * </p>
+ * <p>
+ * Each player also has a request budget (a token bucket); requests beyond it are dropped. Searches
+ * go through the player's {@link SearchSession}: keystrokes that arrive while a search is queued or
+ * running merge into the one that runs next, and a search over budget is answered, with the latest
+ * query, as soon as the budget allows instead of being dropped. Every search that runs takes a token.
+ * </p>
+ * <p>
+ * Requests are v1 messages (a {@code writeUTF} type name, then its arguments); v2 clients use
+ * the same requests and get v2 answers. Like acknowledgements, answers to the server's pings are
+ * handled on the Netty thread.
+ * </p>
+ */
+final class RequestDispatcher extends PacketListenerAbstract {
+
+    enum Priority { INTERACTIVE, BULK }
+
+    private static final int MAX_TRACKED_PLAYERS = 10_000;
+
+    /**
+     * @param threads   worker threads answering requests
+     * @param maxQueued requests allowed to wait; more are dropped
+     * @param perMinute sustained requests per player and minute, 0 for no limit
+     * @param burst     requests a player may send at once
+     */
+    record Options(int threads, int maxQueued, int perMinute, int burst) {
+        static Options from(FileConfiguration config) {
+            return new Options(
+                    Math.max(1, config.getInt("network.dispatcher.threads", 2)),
+                    Math.max(1, config.getInt("network.dispatcher.max-queued", 256)),
+                    Math.max(0, config.getInt("network.dispatcher.requests-per-minute", 300)),
+                    Math.max(1, config.getInt("network.dispatcher.burst", 30)));
+        }
+    }
+
+    private record Task(Priority priority, long sequence, Player player, Runnable work, Logger logger)
+            implements Runnable, Comparable<Task> {
+        @Override
+        public int compareTo(Task other) {
+            int byPriority = priority.compareTo(other.priority);
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+
+        @Override
+        public void run() {
+            if (!player.isOnline()) return;
+            try {
+                work.run();
+            } catch (RuntimeException e) {
+                logger.warning("Request from " + player.getName() + " failed: " + e);
+            }
+        }
+    }
+
+    private final String channel;
+    private final PacketEventsCommunicator communicator;
+    private final ModelBrowserPlugin plugin;
+    private final Options options;
+    private final Logger logger;
+    private final ThreadPoolExecutor executor;
+    private final RateLimiter<UUID> budget;
+    private final Map<UUID, SearchSession> searches = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+
+    RequestDispatcher(String channel, PacketEventsCommunicator communicator, ModelBrowserPlugin plugin, Options options) {
+        this.channel = channel;
+        this.communicator = communicator;
+        this.plugin = plugin;
+        this.options = options;
+        this.logger = plugin.getLogger();
+        this.budget = options.perMinute() > 0
+                ? new RateLimiter<>(options.perMinute(), options.burst(), MAX_TRACKED_PLAYERS)
+                : null;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(options.threads(), options.threads(), 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ModelBrowser-requests-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public void onPacketReceive(PacketReceiveEvent event) {
+        if (event.getPacketType() != PacketType.Play.Client.PLUGIN_MESSAGE) return;
+        WrapperPlayClientPluginMessage packet = new WrapperPlayClientPluginMessage(event);
+        if (!channel.equals(packet.getChannelName())) return;
+
+        // Handled here; the main thread never sees it
+        event.setCancelled(true);
+        Player player = event.getPlayer();
+        if (player != null) {
+            dispatch(player, packet.getData());
+        }
+    }
+
+    /**
+     * Decodes one message from the player and answers it, or queues the answer.
+     */
+    void dispatch(Player player, byte[] message) {
+        try {
+            dispatch(player, message, true);
+        } catch (IllegalArgumentException e) {
+            logger.fine("Malformed message from " + player.getName() + ": " + e.getMessage());
+        }
+    }
+
+    int queued() {
+        return executor.getQueue().size();
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+
+    /** Requests dropped, or searches held back, because the player was over budget. */
+    long limited() {
+        return limited.sum();
+    }
+
+    /** Search queries replaced by a newer one before they were answered. */
+    long merged() {
+        return merged.sum();
+    }
+
+    void remove(UUID playerId) {
+        searches.remove(playerId);
+    }
+
+    void close() {
+        executor.shutdownNow();
+        searches.clear();
+    }
+
+    private void dispatch(Player player, byte[] message, boolean allowCompressed) {
+        PacketReader in = new PacketReader(message);
+        if (in.readMagic()) {
+            int type = in.readByte();
+            if (type == Protocol.V2_ACK) {
+                communicator.acknowledge(player, in.readVarInt(), in.readVarInt());
+            } else if (type == Protocol.V2_PONG) {
+                // Timed here, so queueing for a worker does not count as round-trip time
+                communicator.onPong(player, in.readVarLong());
+            } else if (type == Protocol.V2_SYNC_REQUEST) {
+                long epoch = in.readVarLong();
+                long generation = in.readVarLong();
+                request(player, Priority.BULK, () -> communicator.sendCatalogSync(player, epoch, generation));
+            } else if (type == Protocol.V2_COMPRESSED && allowCompressed) {
+                byte[] inner = communicator.decompress(player, in, message);
+                if (inner != null) dispatch(player, inner, false);
+            }
+            return;
+        }
+
+        String type = in.readUtf();
+        switch (type) {
+            case Protocol.REQUEST_MODELS -> request(player, Priority.BULK, () -> communicator.sendModelList(player));
+            case Protocol.GET_CATEGORIES -> request(player, Priority.BULK, () -> communicator.sendCategories(player));
+            case Protocol.SEARCH_MODELS -> search(player, in.readUtf());
+            case Protocol.GET_MODELS_BY_CATEGORY -> {
+                String category = in.readUtf();
+                request(player, Priority.INTERACTIVE, () -> communicator.sendCategoryModels(player, category,
+                        plugin.getModelManager().getIndex().getCategories().getOrDefault(category, List.of())));
+            }
+            case Protocol.GET_MODEL_INFO -> {
+                String modelId = in.readUtf();
+                request(player, Priority.INTERACTIVE, () -> {
+                    Map<String, Object> info = plugin.getModelManager().getModelInfo(modelId);
+                    if (Boolean.TRUE.equals(info.get("exists"))) {
+                        communicator.sendModelInfo(player, modelId, info);
+                    } else {
+                        communicator.sendError(player, Protocol.ERROR_MODEL_NOT_FOUND, modelId);
+                    }
+                });
+            }
+            case Protocol.PING -> {
+                if (in.remaining() >= 8) {
+                    int version = in.readInt();
+                    int features = in.readInt();
+                    request(player, Priority.INTERACTIVE, () -> communicator.handshake(player, version, features));
+                } else {
+                    request(player, Priority.INTERACTIVE, () -> communicator.sendPong(player));
+                }
+            }
+            case Protocol.UPLOAD_MODEL -> request(player, Priority.INTERACTIVE, () -> communicator.sendError(player,
+                    Protocol.ERROR, "Uploads are not accepted over plugin messages; use the web importer"));
+            default -> logger.fine("Unknown request '" + type + "' from " + player.getName());
+        }
+    }
+
+    /**
+     * Queues a request if the player has budget left, otherwise drops it.
+     */
+    private void request(Player player, Priority priority, Runnable work) {
+        if (budget != null && budget.tryAcquire(player.getUniqueId()) > 0) {
+            limited.increment();
+            logger.fine("Dropping a request from " + player.getName() + ": over budget");
+            return;
+        }
+        submit(player, priority, work);
+    }
+
+    private void search(Player player, String query) {
+        SearchSession session = searches.computeIfAbsent(player.getUniqueId(), id -> new SearchSession());
+        if (session.offer(query)) {
+            scheduleSearch(player, session);
+        } else {
+            merged.increment();
+        }
+    }
+
+    /**
+     * Queues the session's search once the player's budget allows it. Queries arriving until then
+     * merge into it.
+     */
+    private void scheduleSearch(Player player, SearchSession session) {
+        if (!player.isOnline() || executor.isShutdown()) return;
+        long wait = budget != null ? budget.tryAcquire(player.getUniqueId()) : 0;
+        if (wait > 0) {
+            limited.increment();
+            long ticks = TimeUnit.NANOSECONDS.toMillis(wait) / 50 + 1;
+            plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, () -> scheduleSearch(player, session), ticks);
+            return;
+        }
+        if (!submit(player, Priority.INTERACTIVE, () -> runSearch(player, session))) {
+            session.abandon();
+        }
+    }
+
+    private void runSearch(Player player, SearchSession session) {
+        SearchSession.Query query = session.take();
+        if (query == null) {
+            session.complete(null, -1, null);
+            return;
+        }
+        ModelIndex index = plugin.getModelManager().getIndex();
+        List<String> results = session.search(query, index);
+        if (results != null) {
+            communicator.sendSearchResults(player, query.text(), results);
+        } else {
+            merged.increment();
+        }
+        // A newer query arrived meanwhile; it pays for its own search, and later ones merge into it
+        if (session.complete(query, index.getGeneration(), results)) {
+            scheduleSearch(player, session);
+        }
+    }
+
+    private boolean submit(Player player, Priority priority, Runnable work) {
+        if (executor.getQueue().size() >= options.maxQueued()) {
+            dropped.increment();
+            logger.fine("Request queue full, dropping a request from " + player.getName());
+            return false;
+        }
+        try {
+            executor.execute(new Task(priority, sequence.getAndIncrement(), player, work, logger));
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            dropped.increment();
+            return false;
+        }
+    }
+}
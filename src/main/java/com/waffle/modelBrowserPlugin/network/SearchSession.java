@@ -0,0 +1,107 @@
+package com.waffle.modelBrowserPlugin.network;
+
+import com.waffle.modelBrowserPlugin.manager.ModelIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The search state of one player, for clients that send a query on every keystroke.
+ * <p>
+ * At most one search per player is queued or running. Queries that arrive meanwhile replace the
+ * waiting one, so only the latest is answered, and a search that is overtaken stops early and
+ * sends nothing. When a query extends the previous one on the same index generation, it is run
+ * against the previous results instead of the whole catalog: a model containing the longer text
+ * also contains the shorter one, so the results are the same.
+ * </p>
+ */
+final class SearchSession {
+
+    /** Candidates checked between looks at whether a newer query arrived. */
+    private static final int CHECK_INTERVAL = 1024;
+
+    record Query(String text, long version) {}
+
+    private String pending;
+    private volatile long version;
+    private boolean scheduled;
+
+    private String lastQuery;
+    private long lastGeneration = -1;
+    private List<String> lastResults = List.of();
+
+    /**
+     * Records the latest query.
+     *
+     * @return {@code true} if the caller has to schedule a search, {@code false} if one is
+     *         already queued or running and will pick this query up
+     */
+    synchronized boolean offer(String query) {
+        pending = query;
+        version++;
+        if (scheduled) return false;
+        scheduled = true;
+        return true;
+    }
+
+    /**
+     * Takes the latest query for a search, or {@code null} if there is none.
+     */
+    synchronized Query take() {
+        if (pending == null) return null;
+        Query query = new Query(pending, version);
+        pending = null;
+        return query;
+    }
+
+    /**
+     * Finishes a search. Its results, unless it was overtaken, become the base for narrowing.
+     *
+     * @param results the results, or {@code null} if the search was overtaken
+     * @return {@code true} if a newer query is waiting and has to be scheduled
+     */
+    synchronized boolean complete(Query query, long generation, List<String> results) {
+        if (results != null) {
+            lastQuery = query.text().toLowerCase(Locale.ROOT);
+            lastGeneration = generation;
+            lastResults = results;
+        }
+        if (pending != null) return true;
+        scheduled = false;
+        return false;
+    }
+
+    /**
+     * Forgets the scheduled search, when it could not be queued.
+     */
+    synchronized void abandon() {
+        pending = null;
+        scheduled = false;
+    }
+
+    /**
+     * Runs the query against the index, narrowing the previous results where possible.
+     *
+     * @return the matching ids in index order, or {@code null} if a newer query arrived meanwhile
+     */
+    List<String> search(Query query, ModelIndex index) {
+        String text = query.text().toLowerCase(Locale.ROOT);
+        List<String> candidates;
+        synchronized (this) {
+            candidates = lastQuery != null && lastGeneration == index.getGeneration() && text.contains(lastQuery)
+                    ? lastResults
+                    : index.getIds();
+        }
+
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (i % CHECK_INTERVAL == 0 && version != query.version()) return null;
+            String id = candidates.get(i);
+            if (id.toLowerCase(Locale.ROOT).contains(text)) {
+                results.add(id);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,446 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed deduplication of models/ and textures/ files.
+ * <p>
+ * Textures are compared byte for byte, model JSON is compared in canonical form (sorted keys,
+ * no whitespace, namespaced references), so two files that only differ in key order or
+ * formatting count as equal. For each group of equal files one canonical copy is kept, every
+ * reference in items/, models/ and blockstates/ JSON is rewritten to point at it, and the other
+ * copies are deleted. Hashes are kept in a {@link FileHashCache}, so after the first run only new or
+ * changed files are read.
+ * </p>
+ * <p>
+ * Duplicates are only removed when the pack itself references them: an unreferenced file may
+ * be a vanilla override and is left alone. So is a file that other asset JSON (atlases, fonts,
+ * equipment, particles, ...) may name, since those references are not rewritten. Textures with
+ * a {@code .mcmeta} are never touched,
+ * and textures are only merged within the same top folder ({@code item/}, {@code block/}, ...)
+ * so the canonical copy is always in an atlas the duplicate was in. items/ definitions are
+ * never deduplicated since their file name is the model id.
+ * </p>
+ * <p>
+ * Files that came from {@code imports/} and were deleted or rewritten are recorded in
+ * {@link SettledImports} so the next local import does not copy them back.
+ * </p>
+ */
+public final class AssetDeduplicator {
+
+    private static final Gson COMPACT_GSON = new GsonBuilder().disableHtmlEscaping().create();
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+    private static final int MAX_PASSES = 3;
+    /** Folders whose JSON references are understood and rewritten. */
+    private static final List<String> SCANNED_FOLDERS = List.of("items", "models", "textures", "blockstates");
+
+    /**
+     * Files with identical content.
+     *
+     * @param hash       content hash (SHA-256 of the bytes, or of the canonical JSON for models)
+     * @param canonical  pack-relative path of the copy that is kept
+     * @param duplicates pack-relative paths of the copies that are (or would be) removed
+     * @param size       size of one duplicate in bytes
+     */
+    public record DuplicateGroup(String hash, String canonical, List<String> duplicates, long size) {
+        public long reclaimableBytes() {
+            return size * duplicates.size();
+        }
+    }
+
+    /**
+     * Outcome of one deduplication run.
+     *
+     * @param groups         duplicate groups found
+     * @param filesScanned   number of models/ and textures/ files hashed (or looked up)
+     * @param bytesScanned   their total size
+     * @param rewrittenFiles JSON files whose references were (or would be) pointed at canonical copies
+     * @param applied        {@code false} for analysis-only runs
+     */
+    public record Report(
+            List<DuplicateGroup> groups,
+            int filesScanned,
+            long bytesScanned,
+            List<String> rewrittenFiles,
+            boolean applied
+    ) {
+        public int duplicateFiles() {
+            int count = 0;
+            for (DuplicateGroup group : groups) {
+                count += group.duplicates().size();
+            }
+            return count;
+        }
+
+        public long reclaimableBytes() {
+            long bytes = 0;
+            for (DuplicateGroup group : groups) {
+                bytes += group.reclaimableBytes();
+            }
+            return bytes;
+        }
+
+        /**
+         * Pack-relative paths that were rewritten or deleted, for {@code ModelManager.applyDelta}.
+         * Empty when nothing was applied.
+         */
+        public List<String> changedPaths() {
+            if (!applied) return List.of();
+            List<String> paths = new ArrayList<>(rewrittenFiles);
+            for (DuplicateGroup group : groups) {
+                paths.addAll(group.duplicates());
+            }
+            return paths;
+        }
+
+        public static Report empty() {
+            return new Report(List.of(), 0, 0L, List.of(), false);
+        }
+    }
+
+    private record Asset(String path, String groupKey, String hash, long size) {}
+
+    private final ModelBrowserPlugin plugin;
+    private final FileHashCache hashes;
+    private final SettledImports settled;
+
+    public AssetDeduplicator(ModelBrowserPlugin plugin, SettledImports settled) {
+        this.plugin = plugin;
+        this.hashes = FileHashCache.load(plugin.getDataFolder().toPath().resolve("cache").resolve("asset-hashes.json"));
+        this.settled = settled;
+    }
+
+    /**
+     * Deduplicates the pack.
+     *
+     * @param candidates pack-relative paths that may be removed as duplicates (e.g. the files an
+     *                   import just wrote), or {@code null} to consider every file in the pack.
+     *                   Canonical copies are picked from the whole pack either way, preferring
+     *                   files that are not candidates.
+     * @param apply      {@code false} to only report what would change
+     * @return the report
+     * @throws IOException if the pack cannot be walked or a file cannot be rewritten
+     */
+    public synchronized Report deduplicate(Collection<String> candidates, boolean apply) throws IOException {
+        Report report = pass(candidates, apply);
+        // Merging textures can make models identical, so applied runs repeat on what they rewrote.
+        for (int i = 1; i < MAX_PASSES && report.applied(); i++) {
+            Set<String> next = new HashSet<>(report.rewrittenFiles());
+            if (candidates != null) next.addAll(candidates);
+            Report more = pass(candidates == null ? null : next, true);
+            if (!more.applied()) break;
+
+            List<DuplicateGroup> groups = new ArrayList<>(report.groups());
+            groups.addAll(more.groups());
+            Set<String> rewritten = new TreeSet<>(report.rewrittenFiles());
+            rewritten.addAll(more.rewrittenFiles());
+            for (DuplicateGroup group : more.groups()) {
+                rewritten.removeAll(group.duplicates());
+            }
+            report = new Report(List.copyOf(groups), report.filesScanned(), report.bytesScanned(),
+                    List.copyOf(rewritten), true);
+        }
+        return report;
+    }
+
+    private Report pass(Collection<String> candidates, boolean apply) throws IOException {
+        Path packRoot = plugin.getModelManager().getResourcePackRoot();
+        Set<String> candidateSet = candidates != null ? new HashSet<>(candidates) : null;
+        if (candidateSet != null && candidateSet.isEmpty()) return Report.empty();
+
+        List<Asset> assets = new ArrayList<>();
+        List<String> jsonFiles = new ArrayList<>();
+        List<String> otherJson = new ArrayList<>();
+        scan(packRoot, assets, jsonFiles, otherJson);
+
+        long bytesScanned = 0;
+        Map<String, List<Asset>> byContent = new HashMap<>();
+        for (Asset asset : assets) {
+            bytesScanned += asset.size();
+            byContent.computeIfAbsent(asset.groupKey(), key -> new ArrayList<>()).add(asset);
+        }
+
+        // Canonical copy per group: prefer files already in the pack, then the shortest path.
+        Map<String, Asset> canonicalByDuplicate = new LinkedHashMap<>();
+        for (List<Asset> group : byContent.values()) {
+            if (group.size() < 2) continue;
+            group.sort(Comparator.<Asset, Boolean>comparing(a -> isCandidate(candidateSet, a.path()))
+                    .thenComparingInt(a -> a.path().length())
+                    .thenComparing(Asset::path));
+            Asset canonical = group.get(0);
+            for (int i = 1; i < group.size(); i++) {
+                if (isCandidate(candidateSet, group.get(i).path())) {
+                    canonicalByDuplicate.put(group.get(i).path(), canonical);
+                }
+            }
+        }
+        if (canonicalByDuplicate.isEmpty()) {
+            hashes.save();
+            return new Report(List.of(), assets.size(), bytesScanned, List.of(), false);
+        }
+
+        // Only now read every JSON for references; most imports never get here.
+        Map<String, Set<String>> referencesByFile = new LinkedHashMap<>();
+        Set<String> referenced = new HashSet<>();
+        for (String json : jsonFiles) {
+            JsonElement tree = readJson(packRoot.resolve(json));
+            if (tree == null) continue;
+            Set<String> refs = new HashSet<>();
+            ModelDependencyResolver.collectReferences(tree, refs);
+            referencesByFile.put(json, refs);
+            referenced.addAll(refs);
+        }
+        Set<String> namedElsewhere = new HashSet<>();
+        for (String json : otherJson) {
+            JsonElement tree = readJson(packRoot.resolve(json));
+            if (tree != null) collectLocations(tree, namedElsewhere);
+        }
+
+        Map<String, String> rewrites = new HashMap<>();
+        Map<String, DuplicateGroup> groups = new TreeMap<>();
+        Set<String> removed = new HashSet<>();
+        for (Map.Entry<String, Asset> entry : canonicalByDuplicate.entrySet()) {
+            String duplicate = entry.getKey();
+            Asset canonical = entry.getValue();
+            String key = ModelDependencyResolver.referenceKey(duplicate);
+            if (key == null || !referenced.contains(key)) continue;
+            if (isNamedElsewhere(key, namedElsewhere)) {
+                plugin.getLogger().fine("Keeping duplicate " + duplicate + ": other asset JSON may reference it");
+                continue;
+            }
+
+            rewrites.put(key, ModelDependencyResolver.referenceKey(canonical.path()));
+            removed.add(duplicate);
+            groups.merge(canonical.path(),
+                    new DuplicateGroup(canonical.hash(), canonical.path(), List.of(duplicate), canonical.size()),
+                    (a, b) -> {
+                        List<String> merged = new ArrayList<>(a.duplicates());
+                        merged.addAll(b.duplicates());
+                        return new DuplicateGroup(a.hash(), a.canonical(), List.copyOf(merged), a.size());
+                    });
+        }
+
+        List<String> rewritten = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> file : referencesByFile.entrySet()) {
+            if (removed.contains(file.getKey())) continue;
+            for (String ref : file.getValue()) {
+                if (rewrites.containsKey(ref)) {
+                    rewritten.add(file.getKey());
+                    break;
+                }
+            }
+        }
+
+        if (apply && !removed.isEmpty()) {
+            for (String json : rewritten) {
+                rewriteFile(packRoot.resolve(json), rewrites);
+            }
+            for (String duplicate : removed) {
+                Files.deleteIfExists(packRoot.resolve(duplicate));
+            }
+            settled.remember(rewritten);
+            settled.remember(removed);
+            plugin.getLogger().info("Deduplicated " + removed.size() + " file(s), rewrote "
+                    + rewritten.size() + " reference file(s)");
+        }
+        hashes.save();
+
+        return new Report(List.copyOf(groups.values()), assets.size(), bytesScanned, List.copyOf(rewritten),
+                apply && !removed.isEmpty());
+    }
+
+    private static boolean isCandidate(Set<String> candidates, String path) {
+        return candidates == null || candidates.contains(path);
+    }
+
+    /**
+     * Collects hashable assets, every items/, models/ and blockstates/ JSON under assets/*, and
+     * the JSON of other asset folders (except lang/), whose references are not rewritten.
+     */
+    private void scan(Path packRoot, List<Asset> assets, List<String> jsonFiles, List<String> otherJson) throws IOException {
+        Path assetsDir = packRoot.resolve("assets");
+        if (!Files.isDirectory(assetsDir)) return;
+
+        Set<String> cacheKeys = new HashSet<>();
+        try (DirectoryStream<Path> namespaces = Files.newDirectoryStream(assetsDir, Files::isDirectory)) {
+            for (Path namespaceDir : namespaces) {
+                collectOtherJson(packRoot, namespaceDir, otherJson);
+                for (String folder : SCANNED_FOLDERS) {
+                    Path dir = namespaceDir.resolve(folder);
+                    if (!Files.isDirectory(dir)) continue;
+
+                    Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                            String name = file.getFileName().toString();
+                            if (!attrs.isRegularFile() || name.startsWith(".")) return FileVisitResult.CONTINUE;
+
+                            String relative = PackCopyEngine.relativePath(packRoot, file);
+                            if (folder.equals("textures")) {
+                                if (name.endsWith(".png") && !Files.exists(file.resolveSibling(name + ".mcmeta"))) {
+                                    String key = "raw:" + relative;
+                                    cacheKeys.add(key);
+                                    String hash = hashes.get(key, file, attrs, PackCopyEngine::sha256);
+                                    assets.add(new Asset(relative, "texture|" + textureFolder(dir, file) + "|" + hash,
+                                            hash, attrs.size()));
+                                }
+                            } else if (name.endsWith(".json")) {
+                                jsonFiles.add(relative);
+                                if (folder.equals("models")) {
+                                    String key = "canonical:" + relative;
+                                    cacheKeys.add(key);
+                                    String hash = hashes.get(key, file, attrs, AssetDeduplicator::canonicalHash);
+                                    if (!hash.isEmpty()) {
+                                        assets.add(new Asset(relative, "model|" + hash, hash, attrs.size()));
+                                    }
+                                }
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+                }
+            }
+        }
+        hashes.retainAll(cacheKeys);
+    }
+
+    private static void collectOtherJson(Path packRoot, Path namespaceDir, List<String> out) throws IOException {
+        try (DirectoryStream<Path> folders = Files.newDirectoryStream(namespaceDir, Files::isDirectory)) {
+            for (Path dir : folders) {
+                String folder = dir.getFileName().toString();
+                if (SCANNED_FOLDERS.contains(folder) || folder.equals("lang")) continue;
+                try (Stream<Path> files = Files.walk(dir)) {
+                    files.filter(file -> file.getFileName().toString().endsWith(".json") && Files.isRegularFile(file))
+                            .forEach(file -> out.add(PackCopyEngine.relativePath(packRoot, file)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds every string value of the tree as a namespaced location without extension.
+     */
+    private static void collectLocations(JsonElement element, Set<String> out) {
+        if (element.isJsonObject()) {
+            for (JsonElement child : element.getAsJsonObject().asMap().values()) {
+                collectLocations(child, out);
+            }
+        } else if (element.isJsonArray()) {
+            for (JsonElement child : element.getAsJsonArray()) {
+                collectLocations(child, out);
+            }
+        } else if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+            String[] loc = ModelDependencyResolver.splitLocation(element.getAsString());
+            String path = loc[1].endsWith(".png") || loc[1].endsWith(".json")
+                    ? loc[1].substring(0, loc[1].lastIndexOf('.')) : loc[1];
+            out.add(loc[0] + ":" + path);
+        }
+    }
+
+    /**
+     * Whether a location in {@code locations} may point at the file: equipment and particle
+     * definitions name textures by a shorter path inside an implied folder, so every trailing
+     * part of the path counts.
+     */
+    private static boolean isNamedElsewhere(String referenceKey, Set<String> locations) {
+        if (locations.isEmpty()) return false;
+        String[] loc = ModelDependencyResolver.splitLocation(referenceKey.substring(referenceKey.indexOf('|') + 1));
+        String path = loc[1];
+        while (true) {
+            if (locations.contains(loc[0] + ":" + path)) return true;
+            int slash = path.indexOf('/');
+            if (slash < 0) return false;
+            path = path.substring(slash + 1);
+        }
+    }
+
+    private static String textureFolder(Path texturesDir, Path file) {
+        Path relative = texturesDir.relativize(file);
+        return relative.getNameCount() > 1 ? relative.getName(0).toString() : "";
+    }
+
+    /**
+     * SHA-256 of the JSON with sorted keys and no whitespace; empty if the file is not valid JSON.
+     */
+    static String canonicalHash(Path file) throws IOException {
+        JsonElement tree = readJson(file);
+        if (tree == null) return "";
+        ModelDependencyResolver.normalizeReferences(tree);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] canonical = COMPACT_GSON.toJson(canonicalize(tree)).getBytes(StandardCharsets.UTF_8);
+        return HexFormat.of().formatHex(digest.digest(canonical));
+    }
+
+    private static JsonElement canonicalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            JsonObject sorted = new JsonObject();
+            for (Map.Entry<String, JsonElement> entry : new TreeMap<>(element.getAsJsonObject().asMap()).entrySet()) {
+                sorted.add(entry.getKey(), canonicalize(entry.getValue()));
+            }
+            return sorted;
+        }
+        if (element.isJsonArray()) {
+            JsonArray array = new JsonArray();
+            for (JsonElement child : element.getAsJsonArray()) {
+                array.add(canonicalize(child));
+            }
+            return array;
+        }
+        return element;
+    }
+
+    private static JsonElement readJson(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void rewriteFile(Path file, Map<String, String> rewrites) throws IOException {
+        JsonElement tree = readJson(file);
+        if (tree == null || !ModelDependencyResolver.rewriteReferences(tree, rewrites)) return;
+
+        Path temp = file.resolveSibling("." + file.getFileName() + ".part");
+        Files.writeString(temp, PRETTY_GSON.toJson(tree), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,195 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.waffle.modelBrowserPlugin.manager.ModelIndex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Server-Sent Events feed of catalog changes ({@code GET /api/events}).
+ * <p>
+ * Every connection first gets a {@code hello} event with the current generation. Each index
+ * generation published afterwards becomes one {@code delta} event with the ids that were added,
+ * removed or changed; the event id is the generation. A delta is serialized once and the same
+ * bytes are queued for every connection.
+ * </p>
+ * <p>
+ * Each connection has a small bounded queue. A client that does not keep up and lets it fill is
+ * not buffered further: its queue is dropped and it gets a single {@code resync} event with the
+ * current generation instead, after which it should reload the catalog ({@link CatalogHandler}).
+ * Idle connections get a comment line every few seconds, which also notices closed clients.
+ * </p>
+ */
+final class CatalogEventStream implements HttpHandler, BiConsumer<ModelIndex, ModelIndex> {
+
+    private static final long HEARTBEAT_MILLIS = 15_000;
+
+    /** Queue markers; compared by identity. */
+    private static final byte[] RESYNC = new byte[0];
+    private static final byte[] CLOSE = new byte[0];
+
+    private static final class Subscriber {
+        final BlockingQueue<byte[]> queue;
+
+        Subscriber(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * Queues an event, or replaces everything queued with a resync when full.
+         */
+        void offer(byte[] event) {
+            if (queue.offer(event)) return;
+            synchronized (this) {
+                if (queue.offer(event)) return;
+                queue.clear();
+                queue.offer(RESYNC);
+            }
+        }
+    }
+
+    private final Supplier<ModelIndex> index;
+    private final int bufferSize;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+
+    /**
+     * @param bufferSize events queued per connection before it is told to resync
+     */
+    CatalogEventStream(Supplier<ModelIndex> index, int bufferSize) {
+        this.index = index;
+        this.bufferSize = Math.max(2, bufferSize);
+    }
+
+    /**
+     * Index listener: publishes the difference between two generations.
+     */
+    @Override
+    public void accept(ModelIndex previous, ModelIndex current) {
+        if (subscribers.isEmpty()) return;
+        byte[] event = frame("delta", current.getGeneration(), delta(previous, current));
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event);
+        }
+    }
+
+    /**
+     * Ends every open stream.
+     */
+    void close() {
+        closed = true;
+        for (Subscriber subscriber : subscribers) {
+            synchronized (subscriber) {
+                subscriber.queue.clear();
+                subscriber.queue.offer(CLOSE);
+            }
+        }
+    }
+
+    int connections() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Headers headers = exchange.getResponseHeaders();
+            headers.add("Access-Control-Allow-Origin", "*");
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                headers.add("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (closed) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            headers.add("Content-Type", "text/event-stream; charset=utf-8");
+            headers.add("Cache-Control", "no-cache");
+            headers.add("X-Accel-Buffering", "no");
+            exchange.sendResponseHeaders(200, 0);
+
+            Subscriber subscriber = new Subscriber(bufferSize);
+            subscribers.add(subscriber);
+            try (OutputStream out = exchange.getResponseBody()) {
+                // Subscribed before reading the generation, so no delta after it can be missed
+                ModelIndex snapshot = index.get();
+                JsonObject hello = new JsonObject();
+                hello.addProperty("generation", snapshot.getGeneration());
+                hello.addProperty("models", snapshot.size());
+                out.write(frame("hello", snapshot.getGeneration(), hello));
+                out.flush();
+                stream(subscriber, out);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private void stream(Subscriber subscriber, OutputStream out) throws IOException, InterruptedException {
+        byte[] heartbeat = ":\n\n".getBytes(StandardCharsets.UTF_8);
+        while (true) {
+            byte[] event = subscriber.queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+            if (event == CLOSE) return;
+            if (event == null) {
+                out.write(heartbeat);
+            } else if (event == RESYNC) {
+                ModelIndex snapshot = index.get();
+                JsonObject resync = new JsonObject();
+                resync.addProperty("generation", snapshot.getGeneration());
+                out.write(frame("resync", snapshot.getGeneration(), resync));
+            } else {
+                out.write(event);
+            }
+            // Send whatever piled up in one flush
+            if (subscriber.queue.isEmpty()) out.flush();
+        }
+    }
+
+    private static JsonObject delta(ModelIndex previous, ModelIndex current) {
+        JsonArray added = new JsonArray();
+        JsonArray removed = new JsonArray();
+        JsonArray changed = new JsonArray();
+        for (ModelIndex.ModelEntry entry : current.getEntries()) {
+            ModelIndex.ModelEntry old = previous.get(entry.id());
+            if (old == null) {
+                added.add(entry.id());
+            } else if (!Objects.equals(old, entry)) {
+                changed.add(entry.id());
+            }
+        }
+        for (String id : previous.getIds()) {
+            if (!current.contains(id)) removed.add(id);
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty("generation", current.getGeneration());
+        json.addProperty("previous", previous.getGeneration());
+        json.add("added", added);
+        json.add("removed", removed);
+        json.add("changed", changed);
+        return json;
+    }
+
+    private static byte[] frame(String event, long id, JsonObject data) {
+        return ("id: " + id + "\nevent: " + event + "\ndata: " + JsonUtil.minify(data) + "\n\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
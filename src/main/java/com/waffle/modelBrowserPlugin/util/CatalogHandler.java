@@ -0,0 +1,258 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.waffle.modelBrowserPlugin.manager.ModelIndex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Read-only JSON view of the model index.
+ * <p>
+ * Endpoints (GET):
+ * <ul>
+ *   <li>{@code /api/models?page=&size=&category=} - paginated list</li>
+ *   <li>{@code /api/search?q=&page=&size=} - models whose id contains {@code q}</li>
+ *   <li>{@code /api/models/<namespace:name>} - one model with its dependencies</li>
+ *   <li>{@code /api/categories} - model ids per category</li>
+ * </ul>
+ * A response only changes when the index publishes a new generation, so every body is
+ * serialized (and gzipped) once per generation and then served from memory. The generation is
+ * the {@code ETag}; pollers that send it back get a {@code 304} until the catalog changes.
+ * </p>
+ */
+final class CatalogHandler implements HttpHandler {
+
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    /** Distinct responses kept per generation; searches could otherwise grow it without bound. */
+    private static final int MAX_CACHED_RESPONSES = 256;
+    /** Bodies smaller than this are not worth compressing. */
+    private static final int MIN_GZIP_BYTES = 1024;
+    /** Generations restart at 0 with the server, so the ETag also names this run. */
+    private static final String RUN_ID = Long.toString(System.currentTimeMillis(), 36);
+
+    private record Body(int status, byte[] json, byte[] gzip) {}
+
+    private record Cache(long generation, Map<String, Body> bodies) {}
+
+    private final Supplier<ModelIndex> index;
+    private volatile Cache cache = new Cache(-1, new ConcurrentHashMap<>());
+
+    CatalogHandler(Supplier<ModelIndex> index) {
+        this.index = index;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Headers headers = exchange.getResponseHeaders();
+            headers.add("Access-Control-Allow-Origin", "*");
+            headers.add("Access-Control-Allow-Methods", "OPTIONS, GET, HEAD");
+            headers.add("Access-Control-Allow-Headers", "If-None-Match");
+            headers.add("Access-Control-Expose-Headers", "ETag");
+
+            String method = exchange.getRequestMethod();
+            if ("OPTIONS".equalsIgnoreCase(method)) {
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+            boolean head = "HEAD".equalsIgnoreCase(method);
+            if (!head && !"GET".equalsIgnoreCase(method)) {
+                headers.add("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            ModelIndex snapshot = index.get();
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String key = path + "?" + new TreeMap<>(query);
+
+            Body body = bodiesFor(snapshot).computeIfAbsent(key, k -> render(snapshot, path, query));
+            boolean gzip = body.gzip() != null && acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            String etag = "\"" + RUN_ID + "-" + snapshot.getGeneration() + (gzip ? "-gz" : "") + "\"";
+
+            headers.add("Content-Type", "application/json; charset=utf-8");
+            headers.add("Cache-Control", "no-cache");
+            headers.add("Vary", "Accept-Encoding");
+            if (body.status() == 200) {
+                headers.add("ETag", etag);
+                String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+                if (ifNoneMatch != null && ifNoneMatch.contains(etag)) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+            }
+
+            byte[] bytes = gzip ? body.gzip() : body.json();
+            if (gzip) headers.add("Content-Encoding", "gzip");
+            if (head) {
+                headers.add("Content-Length", Integer.toString(bytes.length));
+                exchange.sendResponseHeaders(body.status(), -1);
+                return;
+            }
+            exchange.sendResponseHeaders(body.status(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Returns the response cache of the snapshot's generation, starting a new one when it changed.
+     */
+    private Map<String, Body> bodiesFor(ModelIndex snapshot) {
+        Cache current = cache;
+        if (current.generation() != snapshot.getGeneration()) {
+            current = new Cache(snapshot.getGeneration(), new ConcurrentHashMap<>());
+            cache = current;
+        }
+        if (current.bodies().size() >= MAX_CACHED_RESPONSES) {
+            current.bodies().clear();
+        }
+        return current.bodies();
+    }
+
+    private static Body render(ModelIndex snapshot, String path, Map<String, String> query) {
+        String route = path.replaceAll("/+$", "");
+        JsonObject json = new JsonObject();
+        json.addProperty("generation", snapshot.getGeneration());
+        int status = 200;
+
+        if (route.equals("/api/models")) {
+            String category = query.get("category");
+            List<ModelIndex.ModelEntry> models = new ArrayList<>();
+            for (ModelIndex.ModelEntry entry : snapshot.getEntries()) {
+                if (category == null || category.equals(entry.category())) models.add(entry);
+            }
+            page(json, models, query);
+        } else if (route.equals("/api/search")) {
+            String q = query.getOrDefault("q", "").toLowerCase(Locale.ROOT);
+            List<ModelIndex.ModelEntry> models = new ArrayList<>();
+            for (ModelIndex.ModelEntry entry : snapshot.getEntries()) {
+                if (entry.id().toLowerCase(Locale.ROOT).contains(q)) models.add(entry);
+            }
+            json.addProperty("query", q);
+            page(json, models, query);
+        } else if (route.startsWith("/api/models/")) {
+            String id = route.substring("/api/models/".length());
+            if (id.indexOf(':') < 0) id = "minecraft:" + id;
+            ModelIndex.ModelEntry entry = snapshot.get(id);
+            if (entry != null) {
+                JsonObject model = summary(entry);
+                JsonArray dependencies = new JsonArray();
+                entry.dependencies().forEach(dependencies::add);
+                model.add("dependencies", dependencies);
+                json.add("model", model);
+            } else {
+                status = 404;
+                json.addProperty("error", "Unknown model: " + id);
+            }
+        } else if (route.equals("/api/categories")) {
+            JsonObject categories = new JsonObject();
+            new TreeMap<>(snapshot.getCategories()).forEach((name, ids) -> {
+                JsonArray list = new JsonArray();
+                ids.forEach(list::add);
+                categories.add(name, list);
+            });
+            json.add("categories", categories);
+        } else {
+            status = 404;
+            json.addProperty("error", "Unknown endpoint");
+        }
+
+        byte[] bytes = JsonUtil.minify(json).getBytes(StandardCharsets.UTF_8);
+        return new Body(status, bytes, bytes.length >= MIN_GZIP_BYTES ? gzip(bytes) : null);
+    }
+
+    private static void page(JsonObject json, List<ModelIndex.ModelEntry> models, Map<String, String> query) {
+        int size = Math.max(1, Math.min(MAX_PAGE_SIZE, parseInt(query.get("size"), DEFAULT_PAGE_SIZE)));
+        int pages = Math.max(1, (models.size() + size - 1) / size);
+        int page = Math.max(1, parseInt(query.get("page"), 1));
+
+        JsonArray list = new JsonArray();
+        int from = (page - 1) * size;
+        for (int i = from; i < Math.min(models.size(), from + size); i++) {
+            list.add(summary(models.get(i)));
+        }
+
+        json.addProperty("total", models.size());
+        json.addProperty("page", page);
+        json.addProperty("pageSize", size);
+        json.addProperty("pages", pages);
+        json.add("models", list);
+    }
+
+    private static JsonObject summary(ModelIndex.ModelEntry entry) {
+        JsonObject model = new JsonObject();
+        model.addProperty("id", entry.id());
+        model.addProperty("namespace", entry.namespace());
+        model.addProperty("name", entry.name());
+        model.addProperty("category", entry.category());
+        model.addProperty("size", entry.size());
+        model.addProperty("lastModified", entry.lastModified());
+        model.addProperty("itemPath", entry.itemPath());
+        return model;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory streams do not fail
+        }
+        return out.toByteArray();
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+            return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return query;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            if (name.equals("page") || name.equals("size") || name.equals("q") || name.equals("category")) {
+                query.put(name, value);
+            }
+        }
+        return query;
+    }
+
+    private static int parseInt(String value, int fallback) {
+        if (value == null) return fallback;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
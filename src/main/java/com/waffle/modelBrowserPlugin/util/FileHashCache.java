@@ -0,0 +1,115 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persistent cache of content hashes keyed by file and validated by size and mtime.
+ * <p>
+ * Jobs that look at every file in the pack (dedupe, optimizers, the zip builder) use this to
+ * avoid re-reading files that did not change since the last run. A cached value is only
+ * returned while the file still has the size and modification time it had when hashed.
+ * Keys are free-form so one file can have several hashes (e.g. {@code raw:} and
+ * {@code canonical:} variants). Safe for concurrent use.
+ * </p>
+ */
+public final class FileHashCache {
+
+    private static final Gson GSON = new Gson();
+
+    /** Hash function applied on a cache miss. */
+    @FunctionalInterface
+    public interface Hasher {
+        String hash(Path file) throws IOException;
+    }
+
+    private record Entry(long size, long modified, String hash) {}
+
+    private final Path file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean dirty;
+
+    private FileHashCache(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Loads the cache from disk; a missing or corrupt file gives an empty cache.
+     */
+    public static FileHashCache load(Path file) {
+        FileHashCache cache = new FileHashCache(file);
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                Map<String, Entry> stored = GSON.fromJson(reader, new TypeToken<Map<String, Entry>>() {}.getType());
+                if (stored != null) cache.entries.putAll(stored);
+            } catch (IOException | JsonParseException e) {
+                // Start from scratch; everything gets re-hashed once.
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the cached hash for {@code key} if {@code path} is unchanged, hashing it otherwise.
+     */
+    public String get(String key, Path path, Hasher hasher) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return get(key, path, attrs, hasher);
+    }
+
+    /**
+     * Same as {@link #get(String, Path, Hasher)} with attributes the caller already has.
+     */
+    public String get(String key, Path path, BasicFileAttributes attrs, Hasher hasher) throws IOException {
+        long size = attrs.size();
+        long modified = attrs.lastModifiedTime().toMillis();
+
+        Entry cached = entries.get(key);
+        if (cached != null && cached.size() == size && cached.modified() == modified) {
+            return cached.hash();
+        }
+
+        String hash = hasher.hash(path);
+        entries.put(key, new Entry(size, modified, hash));
+        dirty = true;
+        return hash;
+    }
+
+    /**
+     * Drops entries whose key is not in {@code keys}, e.g. for files that were deleted.
+     */
+    public void retainAll(Set<String> keys) {
+        if (entries.keySet().retainAll(keys)) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the cache to disk if anything changed since it was loaded or last saved.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+        dirty = false;
+
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(new TreeMap<>(entries), writer);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
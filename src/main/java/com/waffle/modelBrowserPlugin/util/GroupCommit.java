@@ -0,0 +1,153 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Flushes files to stable storage for many concurrent writers at once.
+ * <p>
+ * Writers hand the files they need durable to {@link #sync(Collection)} and block. A single
+ * flusher thread takes everything queued so far, fsyncs each distinct file once and wakes all
+ * of those writers together. While it flushes, new requests pile up and go out in the next
+ * round, so under load one fsync pass serves many imports instead of one fsync per file.
+ * </p>
+ * <p>
+ * Directories can be synced too (to persist renames); platforms that cannot open a directory
+ * for syncing simply skip it.
+ * </p>
+ */
+public final class GroupCommit implements AutoCloseable {
+
+    private record Request(Set<Path> paths, CompletableFuture<Void> done) {}
+
+    private static final Request SHUTDOWN = new Request(Set.of(), new CompletableFuture<>());
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    /** Guards {@link #closed} together with enqueueing, so no request lands behind the shutdown. */
+    private final Object lock = new Object();
+    private boolean closed;
+
+    public GroupCommit(String threadName) {
+        this.flusher = new Thread(this::run, threadName);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Blocks until every given file or directory has been flushed to disk.
+     *
+     * @throws IOException if one of them could not be flushed
+     */
+    public void sync(Collection<Path> paths) throws IOException {
+        if (paths.isEmpty()) return;
+
+        Request request = new Request(new LinkedHashSet<>(paths), new CompletableFuture<>());
+        synchronized (lock) {
+            if (closed) throw new IOException("Group commit is closed");
+            queue.add(request);
+        }
+        try {
+            request.done().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for fsync", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("fsync failed", e.getCause());
+        }
+    }
+
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            queue.drainTo(batch);
+
+            boolean shutdown = batch.remove(SHUTDOWN);
+            flush(batch);
+            batch.clear();
+            if (shutdown) break;
+        }
+
+        // Anyone still waiting gets an answer instead of hanging; nothing can be queued after this
+        synchronized (lock) {
+            closed = true;
+        }
+        List<Request> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        rest.forEach(request -> request.done().completeExceptionally(new IOException("Group commit is closed")));
+    }
+
+    private static void flush(List<Request> batch) {
+        Set<Path> unique = new LinkedHashSet<>();
+        batch.forEach(request -> unique.addAll(request.paths()));
+
+        Map<Path, IOException> failures = new HashMap<>();
+        for (Path path : unique) {
+            try {
+                force(path);
+            } catch (IOException e) {
+                failures.put(path, e);
+            }
+        }
+
+        for (Request request : batch) {
+            IOException failure = null;
+            for (Path path : request.paths()) {
+                failure = failures.get(path);
+                if (failure != null) break;
+            }
+            if (failure != null) {
+                request.done().completeExceptionally(failure);
+            } else {
+                request.done().complete(null);
+            }
+        }
+    }
+
+    private static void force(Path path) throws IOException {
+        boolean directory = Files.isDirectory(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows cannot open directories as channels; renames are durable enough there
+            if (!directory) throw e;
+        }
+    }
+
+    /**
+     * Flushes what is already queued, then stops the flusher thread.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            queue.add(SHUTDOWN);
+        }
+        try {
+            flusher.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,399 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+/**
+ * Reads a web import request body as a stream.
+ * <p>
+ * The body is a flat JSON object with {@code id}, {@code modelJson} and {@code texturePngBase64}.
+ * The texture, by far the largest part, is never held in memory: its characters are decoded
+ * through a {@link Base64} stream straight into a temp file as they arrive. The other values are
+ * read into bounded strings, and unknown keys are skipped. The body, the model and the decoded
+ * texture each have a size limit, checked while reading, so an oversized upload is refused as
+ * soon as it crosses the limit rather than after it has been buffered.
+ * </p>
+ * <p>
+ * A small hand-written tokenizer is used instead of Gson's {@code JsonReader}: {@code JsonReader}
+ * can only return a string value as a whole, which is exactly the buffering this avoids.
+ * </p>
+ */
+final class ImportRequestReader {
+
+    private static final int MAX_KEY_CHARS = 256;
+    private static final int MAX_ID_CHARS = 256;
+
+    /**
+     * Size limits: body and decoded texture in bytes, model JSON in characters.
+     */
+    record Limits(long maxBodyBytes, long maxModelChars, long maxTextureBytes) {}
+
+    /**
+     * A parsed request. The texture lives in a temp file, which is deleted on {@link #close()}
+     * unless it was moved away first.
+     *
+     * @param texture      temp file with the decoded texture, or {@code null} if the field was missing
+     * @param textureBytes decoded texture size
+     */
+    record ImportRequest(String id, String modelJson, Path texture, long textureBytes) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            if (texture != null) Files.deleteIfExists(texture);
+        }
+    }
+
+    /**
+     * Thrown for requests that must be refused with the given HTTP status.
+     */
+    static final class RejectedException extends IOException {
+        private final int status;
+        private final boolean fatal;
+
+        RejectedException(int status, String message) {
+            this(status, message, false);
+        }
+
+        RejectedException(int status, String message, boolean fatal) {
+            super(message);
+            this.status = status;
+            this.fatal = fatal;
+        }
+
+        int status() {
+            return status;
+        }
+
+        /**
+         * Whether the rest of the body cannot be read either (as opposed to one bad object).
+         */
+        boolean fatal() {
+            return fatal;
+        }
+    }
+
+    private final Reader reader;
+    private final Path tempDir;
+    private final Limits limits;
+    private int peeked = -2;
+    private int last = -1;
+
+    private ImportRequestReader(InputStream body, Path tempDir, Limits limits) {
+        this.reader = new BufferedReader(new InputStreamReader(
+                new LimitedInputStream(body, limits.maxBodyBytes()), StandardCharsets.UTF_8), 16 * 1024);
+        this.tempDir = tempDir;
+        this.limits = limits;
+    }
+
+    /**
+     * Parses a request body holding a single object. Missing fields are {@code null} in the result.
+     *
+     * @param body    request body
+     * @param tempDir where the texture temp file is created
+     * @param limits  size limits
+     * @throws RejectedException for malformed, invalid or oversized requests
+     * @throws IOException       if the body cannot be read or the temp file cannot be written
+     */
+    static ImportRequest read(InputStream body, Path tempDir, Limits limits) throws IOException {
+        ImportRequest request = open(body, tempDir, limits).nextRequest();
+        if (request == null) throw malformed("empty body");
+        return request;
+    }
+
+    /**
+     * Opens a body holding any number of objects, separated by whitespace (NDJSON).
+     * The body limit applies to the whole stream, the model and texture limits to each object.
+     */
+    static ImportRequestReader open(InputStream body, Path tempDir, Limits limits) {
+        return new ImportRequestReader(body, tempDir, limits);
+    }
+
+    /**
+     * Reads the next object, or returns {@code null} at the end of the body.
+     *
+     * @throws RejectedException if this object is malformed or too large; unless it is
+     *                           {@linkplain RejectedException#fatal() fatal}, {@link #skipLine()}
+     *                           moves on to the next one
+     */
+    ImportRequest nextRequest() throws IOException {
+        int c = nextNonWhitespace();
+        if (c < 0) return null;
+        if (c != '{') throw malformed("expected '{'");
+        return readObject();
+    }
+
+    /**
+     * Skips the rest of the current line, after a rejected object in an NDJSON body.
+     */
+    void skipLine() throws IOException {
+        int c = last;
+        while (c != '\n' && c >= 0) {
+            c = next();
+        }
+    }
+
+    /**
+     * Reads the members of an object whose opening brace was already read.
+     */
+    private ImportRequest readObject() throws IOException {
+        String id = null;
+        String modelJson = null;
+        Path texture = null;
+        long textureBytes = 0;
+
+        try {
+            int c = nextNonWhitespace();
+            while (c != '}') {
+                if (c != '"') throw malformed("expected a key");
+                String key = readString(MAX_KEY_CHARS, "key");
+                expect(':');
+                switch (key) {
+                    case "id" -> {
+                        expect('"');
+                        id = readString(MAX_ID_CHARS, "id");
+                    }
+                    case "modelJson" -> {
+                        expect('"');
+                        modelJson = readString(limits.maxModelChars(), "modelJson");
+                    }
+                    case "texturePngBase64" -> {
+                        expect('"');
+                        if (texture != null) Files.deleteIfExists(texture);
+                        texture = StagedWriteSet.createUniqueFile(tempDir, ".upload-", ".part");
+                        textureBytes = decodeTexture(texture);
+                    }
+                    default -> skipValue();
+                }
+
+                c = nextNonWhitespace();
+                if (c == ',') {
+                    c = nextNonWhitespace();
+                } else if (c != '}') {
+                    throw malformed("expected ',' or '}'");
+                }
+            }
+            return new ImportRequest(id, modelJson, texture, textureBytes);
+        } catch (IOException | RuntimeException e) {
+            if (texture != null) Files.deleteIfExists(texture);
+            throw e;
+        }
+    }
+
+    /**
+     * Decodes the texture string (opening quote already read) into the file.
+     */
+    private long decodeTexture(Path file) throws IOException {
+        StringCharsInputStream chars = new StringCharsInputStream();
+        InputStream decoded = Base64.getDecoder().wrap(chars);
+        byte[] buffer = new byte[16 * 1024];
+        long total = 0;
+
+        try (OutputStream out = Files.newOutputStream(file)) {
+            while (true) {
+                int read;
+                try {
+                    read = decoded.read(buffer);
+                } catch (RejectedException e) {
+                    throw e;
+                } catch (IOException | IllegalArgumentException e) {
+                    throw new RejectedException(400, "Invalid base64 for texture");
+                }
+                if (read == -1) break;
+                total += read;
+                if (total > limits.maxTextureBytes()) {
+                    throw new RejectedException(413, "Texture too large");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+
+        // The decoder stops at padding; anything after it is invalid, as in Base64.Decoder.decode
+        if (chars.read() != -1) throw new RejectedException(400, "Invalid base64 for texture");
+        return total;
+    }
+
+    /**
+     * Exposes the characters of the current JSON string as bytes, ending at its closing quote.
+     */
+    private final class StringCharsInputStream extends InputStream {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            if (done) return -1;
+            int c = next();
+            if (c == '"') {
+                done = true;
+                return -1;
+            }
+            if (c == '\\') {
+                // Only the escaped slash can legitimately appear in base64 text
+                if (next() != '/') throw new RejectedException(400, "Invalid base64 for texture");
+                return '/';
+            }
+            if (c < 0) throw malformed("unterminated string");
+            if (c < 0x20 || c > 127) throw new RejectedException(400, "Invalid base64 for texture");
+            return c;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = 0;
+            while (count < len) {
+                int c = read();
+                if (c == -1) break;
+                b[off + count++] = (byte) c;
+            }
+            return count == 0 && len > 0 ? -1 : count;
+        }
+    }
+
+    /**
+     * Reads a string value (opening quote already read), unescaping it.
+     */
+    private String readString(long maxChars, String what) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            int c = next();
+            if (c < 0) throw malformed("unterminated string");
+            if (c == '"') return builder.toString();
+            if (c < 0x20) throw malformed("control character in string");
+            if (c == '\\') {
+                c = next();
+                switch (c) {
+                    case '"', '\\', '/' -> builder.append((char) c);
+                    case 'b' -> builder.append('\b');
+                    case 'f' -> builder.append('\f');
+                    case 'n' -> builder.append('\n');
+                    case 'r' -> builder.append('\r');
+                    case 't' -> builder.append('\t');
+                    case 'u' -> {
+                        char[] hex = new char[4];
+                        for (int i = 0; i < 4; i++) {
+                            int h = next();
+                            if (h < 0) throw malformed("unterminated string");
+                            hex[i] = (char) h;
+                        }
+                        try {
+                            builder.append((char) Integer.parseInt(new String(hex), 16));
+                        } catch (NumberFormatException e) {
+                            throw malformed("bad unicode escape");
+                        }
+                    }
+                    default -> throw malformed("bad escape");
+                }
+            } else {
+                builder.append((char) c);
+            }
+            if (builder.length() > maxChars) {
+                throw new RejectedException(413, what + " too large");
+            }
+        }
+    }
+
+    /**
+     * Skips any JSON value without keeping it.
+     */
+    private void skipValue() throws IOException {
+        int c = nextNonWhitespace();
+        if (c == '"') {
+            skipString();
+            return;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 1;
+            while (depth > 0) {
+                c = next();
+                if (c < 0) throw malformed("unterminated value");
+                if (c == '"') skipString();
+                else if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') depth--;
+            }
+            return;
+        }
+        // Number, true, false or null: runs until a delimiter
+        if (c < 0 || c == ',' || c == '}') throw malformed("expected a value");
+        while (true) {
+            c = next();
+            if (c < 0 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                peeked = c;
+                return;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int c = next();
+            if (c < 0) throw malformed("unterminated string");
+            if (c == '"') return;
+            if (c == '\\') next();
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextNonWhitespace() != expected) throw malformed("expected '" + expected + "'");
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        int c;
+        do {
+            c = next();
+        } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+        return c;
+    }
+
+    private int next() throws IOException {
+        if (peeked != -2) {
+            last = peeked;
+            peeked = -2;
+            return last;
+        }
+        last = reader.read();
+        return last;
+    }
+
+    private static RejectedException malformed(String detail) {
+        return new RejectedException(400, "Malformed JSON: " + detail);
+    }
+
+    /**
+     * Fails the request once more than the allowed number of bytes has been read.
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) count(read);
+            return read;
+        }
+
+        private void count(long read) throws RejectedException {
+            count += read;
+            if (count > limit) throw new RejectedException(413, "Request body too large", true);
+        }
+    }
+}
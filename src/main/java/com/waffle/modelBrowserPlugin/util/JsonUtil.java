@@ -2,6 +2,7 @@ package com.waffle.modelBrowserPlugin.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
@@ -20,7 +21,7 @@ import com.google.gson.JsonParser;
  */
 public class JsonUtil {
     private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
-    private static final Gson COMPACT_GSON = new Gson();
+    private static final Gson COMPACT_GSON = new GsonBuilder().disableHtmlEscaping().create();
 
     /**
      * Private constructor to prevent instantiation of this utility class.
@@ -58,8 +59,8 @@ public class JsonUtil {
      * Converts a JSON string into a minified/compact version.
      * <p>
      * This method removes all unnecessary whitespace from a JSON string to
-     * reduce its size. If the input is not valid JSON, the original string
-     * is returned unchanged.
+     * reduce its size. Objects, arrays and primitives are all supported. If the
+     * input is not valid JSON, the original string is returned unchanged.
      * </p>
      *
      * @param json the JSON string to minify (may be pretty-printed or already compact)
@@ -68,13 +69,27 @@ public class JsonUtil {
      */
     public static String minify(String json) {
         try {
-            JsonObject jsonObject = JsonParser.parseString(json).getAsJsonObject();
-            return COMPACT_GSON.toJson(jsonObject);
+            return minify(JsonParser.parseString(json));
         } catch (Exception e) {
             return json;
         }
     }
 
+    /**
+     * Serializes an already parsed JSON tree without any extra whitespace.
+     * <p>
+     * Works for any JSON value, not only objects. Characters such as {@code <}, {@code >}
+     * and {@code =} are written as-is instead of as unicode escapes, which keeps
+     * the output as small as possible.
+     * </p>
+     *
+     * @param element the JSON tree to serialize
+     * @return the compact JSON string
+     */
+    public static String minify(JsonElement element) {
+        return COMPACT_GSON.toJson(element);
+    }
+
     /**
      * Validates whether a string contains valid JSON syntax.
      * <p>
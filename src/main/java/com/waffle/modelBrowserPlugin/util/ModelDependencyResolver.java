@@ -0,0 +1,268 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+/**
+ * Resolves which pack files an items/ definition depends on.
+ * <p>
+ * Starting from an items/ JSON, every {@code "model"} reference is followed into
+ * models/, then through {@code "parent"} chains and {@code "textures"} entries. Files
+ * that exist in the pack are reported as dependencies; referenced models and textures that
+ * do not (vanilla ones, or files not added yet) are reported separately as missing.
+ * All paths are pack-relative and use {@code /} as separator, e.g.
+ * {@code assets/minecraft/models/item/waffle_shield.json}.
+ * </p>
+ */
+public final class ModelDependencyResolver {
+
+    private ModelDependencyResolver() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * The files a definition or model needs.
+     *
+     * @param files   pack-relative paths that exist in the pack, in discovery order
+     * @param missing pack-relative paths that are referenced but not in the pack
+     */
+    public record Resolved(Set<String> files, Set<String> missing) {
+        public static final Resolved EMPTY = new Resolved(Set.of(), Set.of());
+    }
+
+    /**
+     * Returns the pack-relative items/ path for a namespaced model id.
+     */
+    public static String itemPath(String modelId) {
+        String[] loc = splitLocation(modelId);
+        return "assets/" + loc[0] + "/items/" + loc[1] + ".json";
+    }
+
+    /**
+     * Returns the pack-relative models/ path for a model reference like {@code minecraft:item/foo}.
+     */
+    public static String modelPath(String reference) {
+        String[] loc = splitLocation(reference);
+        return "assets/" + loc[0] + "/models/" + loc[1] + ".json";
+    }
+
+    /**
+     * Returns the pack-relative textures/ path for a texture reference like {@code minecraft:item/foo}.
+     */
+    public static String texturePath(String reference) {
+        String[] loc = splitLocation(reference);
+        return "assets/" + loc[0] + "/textures/" + loc[1] + ".png";
+    }
+
+    /**
+     * Splits a resource location into namespace and path, defaulting to {@code minecraft}.
+     */
+    public static String[] splitLocation(String location) {
+        int colon = location.indexOf(':');
+        if (colon < 0) {
+            return new String[]{"minecraft", location};
+        }
+        return new String[]{location.substring(0, colon), location.substring(colon + 1)};
+    }
+
+    /**
+     * Converts a models/ or textures/ file path into a reference key: the resource location used
+     * to reference it, prefixed with its kind so model and texture locations never collide
+     * (e.g. {@code model|minecraft:item/foo}). Returns {@code null} for other files.
+     */
+    public static String referenceKey(String packPath) {
+        int nsEnd = packPath.indexOf('/', "assets/".length());
+        if (!packPath.startsWith("assets/") || nsEnd < 0) return null;
+        String namespace = packPath.substring("assets/".length(), nsEnd);
+        String rest = packPath.substring(nsEnd + 1);
+
+        if (rest.startsWith("models/") && rest.endsWith(".json")) {
+            return "model|" + namespace + ":" + rest.substring("models/".length(), rest.length() - 5);
+        }
+        if (rest.startsWith("textures/") && rest.endsWith(".png")) {
+            return "texture|" + namespace + ":" + rest.substring("textures/".length(), rest.length() - 4);
+        }
+        return null;
+    }
+
+    /**
+     * Rewrites {@code model}/{@code parent} and texture references in place.
+     *
+     * @param element  parsed items/ or models/ JSON
+     * @param rewrites old reference key to new reference key, see {@link #referenceKey(String)}
+     * @return whether anything changed
+     */
+    public static boolean rewriteReferences(JsonElement element, Map<String, String> rewrites) {
+        return visitReferences(element, null, rewrites::get);
+    }
+
+    /**
+     * Adds the reference key of every {@code model}/{@code parent} and texture reference
+     * in the given JSON to {@code out}, using the same rules as {@link #rewriteReferences}.
+     */
+    public static void collectReferences(JsonElement element, Set<String> out) {
+        visitReferences(element, null, key -> {
+            out.add(key);
+            return null;
+        });
+    }
+
+    /**
+     * Spells every reference out with its namespace ({@code item/foo} becomes
+     * {@code minecraft:item/foo}), so equivalent JSON compares equal.
+     */
+    public static void normalizeReferences(JsonElement element) {
+        visitReferences(element, null, key -> key);
+    }
+
+    /**
+     * Walks every reference in the tree; a non-null result of {@code visitor} replaces it.
+     */
+    private static boolean visitReferences(JsonElement element, String parentKey, UnaryOperator<String> visitor) {
+        boolean changed = false;
+
+        if (element.isJsonObject()) {
+            JsonObject obj = element.getAsJsonObject();
+            for (Map.Entry<String, JsonElement> entry : obj.entrySet()) {
+                String key = entry.getKey();
+                JsonElement value = entry.getValue();
+                if (value.isJsonPrimitive() && value.getAsJsonPrimitive().isString()) {
+                    String kind = key.equals("model") || key.equals("parent") ? "model|"
+                            : "textures".equals(parentKey) ? "texture|" : null;
+                    if (kind == null || value.getAsString().startsWith("#")) continue;
+
+                    String[] loc = splitLocation(value.getAsString());
+                    String replacement = visitor.apply(kind + loc[0] + ":" + loc[1]);
+                    if (replacement != null) {
+                        entry.setValue(new JsonPrimitive(replacement.substring(kind.length())));
+                        changed = true;
+                    }
+                } else {
+                    changed |= visitReferences(value, key, visitor);
+                }
+            }
+        } else if (element.isJsonArray()) {
+            for (JsonElement child : element.getAsJsonArray()) {
+                changed |= visitReferences(child, parentKey, visitor);
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Collects every model and texture file the given items/ definition needs.
+     *
+     * @param packRoot   root folder of the resource pack
+     * @param itemJson   parsed items/ definition
+     * @param modelCache cache of already resolved models/ files (path to transitive dependencies),
+     *                   shared across calls so common parents are only read once
+     * @return the dependencies, and the referenced files that are not in the pack
+     */
+    public static Resolved resolve(Path packRoot, JsonObject itemJson, Map<String, Resolved> modelCache) {
+        Set<String> modelRefs = new LinkedHashSet<>();
+        collectModelReferences(itemJson, modelRefs);
+
+        Set<String> dependencies = new LinkedHashSet<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String ref : modelRefs) {
+            Resolved model = resolveModel(packRoot, modelPath(ref), modelCache, new HashSet<>());
+            dependencies.addAll(model.files());
+            missing.addAll(model.missing());
+        }
+        return new Resolved(dependencies, missing);
+    }
+
+    /**
+     * Collects every string-valued {@code "model"} property anywhere in the items/ tree.
+     */
+    private static void collectModelReferences(JsonElement element, Set<String> out) {
+        if (element == null) return;
+
+        if (element.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+                JsonElement value = entry.getValue();
+                if (entry.getKey().equals("model") && value.isJsonPrimitive()) {
+                    out.add(value.getAsString());
+                } else {
+                    collectModelReferences(value, out);
+                }
+            }
+        } else if (element.isJsonArray()) {
+            for (JsonElement child : element.getAsJsonArray()) {
+                collectModelReferences(child, out);
+            }
+        }
+    }
+
+    private static Resolved resolveModel(Path packRoot, String modelPath,
+                                         Map<String, Resolved> modelCache, Set<String> visiting) {
+        Resolved cached = modelCache.get(modelPath);
+        if (cached != null) return cached;
+        if (!visiting.add(modelPath)) return Resolved.EMPTY; // parent cycle
+
+        Set<String> dependencies = new LinkedHashSet<>();
+        Set<String> missing = new LinkedHashSet<>();
+        Path file = packRoot.resolve(modelPath);
+        if (Files.isRegularFile(file)) {
+            dependencies.add(modelPath);
+            JsonObject model = readObject(file);
+            if (model != null) {
+                if (model.has("parent") && model.get("parent").isJsonPrimitive()) {
+                    String parentPath = modelPath(model.get("parent").getAsString());
+                    Resolved parent = resolveModel(packRoot, parentPath, modelCache, visiting);
+                    dependencies.addAll(parent.files());
+                    missing.addAll(parent.missing());
+                }
+                if (model.has("textures") && model.get("textures").isJsonObject()) {
+                    for (Map.Entry<String, JsonElement> texture : model.getAsJsonObject("textures").entrySet()) {
+                        if (!texture.getValue().isJsonPrimitive()) continue;
+                        String ref = texture.getValue().getAsString();
+                        if (ref.startsWith("#")) continue; // texture variable, not a file
+                        if (!addIfExists(packRoot, texturePath(ref), dependencies)) {
+                            missing.add(texturePath(ref));
+                        }
+                        addIfExists(packRoot, texturePath(ref) + ".mcmeta", dependencies);
+                    }
+                }
+            }
+        } else {
+            missing.add(modelPath);
+        }
+
+        Resolved result = new Resolved(Collections.unmodifiableSet(dependencies), Collections.unmodifiableSet(missing));
+        modelCache.put(modelPath, result);
+        return result;
+    }
+
+    private static boolean addIfExists(Path packRoot, String packPath, Set<String> out) {
+        if (Files.isRegularFile(packRoot.resolve(packPath))) {
+            out.add(packPath);
+            return true;
+        }
+        return false;
+    }
+
+    private static JsonObject readObject(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            JsonElement element = JsonParser.parseReader(reader);
+            return element.isJsonObject() ? element.getAsJsonObject() : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+}
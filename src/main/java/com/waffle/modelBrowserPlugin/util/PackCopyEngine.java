@@ -0,0 +1,326 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+/**
+ * Change-aware, parallel file synchronisation used by {@link ResourcePackImporter}.
+ * <p>
+ * Every source file is compared with its target by size and modification time (targets
+ * get the source's mtime after a copy, so an unchanged file costs two {@code stat} calls).
+ * When only the mtime differs, an optional SHA-256 comparison avoids recopying files that
+ * were merely touched. Changed files are copied in parallel with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} into a
+ * hidden temp file and moved into place, so readers never see a half-written file.
+ * </p>
+ * <p>
+ * The set of files seen on the previous run is kept in a small JSON state file; files that
+ * disappeared from the source since then are reported as removed. They are left in the
+ * target because other tools may still rely on them.
+ * </p>
+ */
+public final class PackCopyEngine {
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private PackCopyEngine() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Copy settings.
+     *
+     * @param compareHashes hash files whose size matches but mtime differs before recopying them
+     * @param threads       number of copy threads, {@code 0} for one per CPU core (max 8)
+     */
+    public record Options(boolean compareHashes, int threads) {
+        public static Options defaults() {
+            return new Options(true, 0);
+        }
+
+        int effectiveThreads() {
+            return threads > 0 ? threads : Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    /**
+     * What a sync run did. All paths are relative to the target root and use {@code /}.
+     *
+     * @param added       files that did not exist in the target
+     * @param changed     files whose content differed and were overwritten
+     * @param removed     files present on the previous run but gone from the source
+     * @param unchanged   number of files skipped because they were identical
+     * @param bytesCopied total bytes written
+     * @param failed      files that could not be copied, with the error message
+     */
+    public record Manifest(
+            List<String> added,
+            List<String> changed,
+            List<String> removed,
+            int unchanged,
+            long bytesCopied,
+            Map<String, String> failed
+    ) {
+        public int copiedFiles() {
+            return added.size() + changed.size();
+        }
+
+        /**
+         * Returns every added or changed path.
+         */
+        public List<String> touched() {
+            List<String> touched = new ArrayList<>(added);
+            touched.addAll(changed);
+            return touched;
+        }
+
+        /**
+         * Combines two manifests, e.g. from a folder sync and a zip import.
+         */
+        public Manifest merge(Manifest other) {
+            Set<String> mergedAdded = new TreeSet<>(added);
+            mergedAdded.addAll(other.added);
+            Set<String> mergedChanged = new TreeSet<>(changed);
+            mergedChanged.addAll(other.changed);
+            mergedChanged.removeAll(mergedAdded);
+            Set<String> mergedRemoved = new TreeSet<>(removed);
+            mergedRemoved.addAll(other.removed);
+            Map<String, String> mergedFailed = new TreeMap<>(failed);
+            mergedFailed.putAll(other.failed);
+            return new Manifest(List.copyOf(mergedAdded), List.copyOf(mergedChanged), List.copyOf(mergedRemoved),
+                    unchanged + other.unchanged, bytesCopied + other.bytesCopied, Map.copyOf(mergedFailed));
+        }
+
+        public static Manifest empty() {
+            return new Manifest(List.of(), List.of(), List.of(), 0, 0L, Map.of());
+        }
+    }
+
+    private record SourceFile(String relative, Path source, long size, FileTime lastModified) {}
+
+    private enum Outcome {
+        ADDED,
+        CHANGED,
+        UNCHANGED
+    }
+
+    /**
+     * Mirrors the files under {@code sourceRoot} that match {@code filter} into {@code targetRoot},
+     * keeping relative paths.
+     *
+     * @param sourceRoot folder to copy from
+     * @param targetRoot folder to copy into
+     * @param stateFile  where the list of previously seen files is kept (created if missing)
+     * @param options    copy settings
+     * @param filter     decides which source files take part, given the relative path and attributes
+     * @return the manifest of this run
+     * @throws IOException if the source tree cannot be walked; per-file failures end up in the manifest
+     */
+    public static Manifest sync(Path sourceRoot, Path targetRoot, Path stateFile, Options options,
+                                BiPredicate<String, BasicFileAttributes> filter) throws IOException {
+        List<SourceFile> sources = walk(sourceRoot, filter);
+        Map<String, Long> previous = readState(stateFile);
+
+        Set<String> added = new ConcurrentSkipListSet<>();
+        Set<String> changed = new ConcurrentSkipListSet<>();
+        Map<String, String> failed = new ConcurrentHashMap<>();
+        AtomicInteger unchanged = new AtomicInteger();
+        AtomicLong bytesCopied = new AtomicLong();
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(options.effectiveThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "ModelBrowser-copy-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(sources.size());
+            for (SourceFile file : sources) {
+                futures.add(pool.submit(() -> {
+                    try {
+                        Outcome outcome = syncFile(file, targetRoot.resolve(file.relative()), options);
+                        switch (outcome) {
+                            case ADDED -> added.add(file.relative());
+                            case CHANGED -> changed.add(file.relative());
+                            case UNCHANGED -> unchanged.incrementAndGet();
+                        }
+                        if (outcome != Outcome.UNCHANGED) {
+                            bytesCopied.addAndGet(file.size());
+                        }
+                    } catch (IOException e) {
+                        failed.put(file.relative(), e.getClass().getSimpleName() + ": " + e.getMessage());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Copy interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Copy task failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, Long> current = new TreeMap<>();
+        for (SourceFile file : sources) {
+            current.put(file.relative(), file.size());
+        }
+        List<String> removed = new ArrayList<>();
+        for (String path : previous.keySet()) {
+            if (!current.containsKey(path)) removed.add(path);
+        }
+        Collections.sort(removed);
+        writeState(stateFile, current);
+
+        return new Manifest(List.copyOf(added), List.copyOf(changed), List.copyOf(removed),
+                unchanged.get(), bytesCopied.get(), Map.copyOf(failed));
+    }
+
+    private static List<SourceFile> walk(Path sourceRoot, BiPredicate<String, BasicFileAttributes> filter) throws IOException {
+        List<SourceFile> files = new ArrayList<>();
+        if (!Files.isDirectory(sourceRoot)) return files;
+
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!attrs.isRegularFile()) return FileVisitResult.CONTINUE;
+                String relative = relativePath(sourceRoot, file);
+                if (filter.test(relative, attrs)) {
+                    files.add(new SourceFile(relative, file, attrs.size(), attrs.lastModifiedTime()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private static Outcome syncFile(SourceFile file, Path target, Options options) throws IOException {
+        BasicFileAttributes targetAttrs;
+        try {
+            targetAttrs = Files.readAttributes(target, BasicFileAttributes.class);
+        } catch (IOException e) {
+            copy(file, target);
+            return Outcome.ADDED;
+        }
+
+        if (targetAttrs.size() == file.size()) {
+            if (targetAttrs.lastModifiedTime().equals(file.lastModified())) {
+                return Outcome.UNCHANGED;
+            }
+            if (options.compareHashes() && sha256(file.source()).equals(sha256(target))) {
+                // Same bytes, only touched: adopt the source mtime so the next run is stat-only.
+                Files.setLastModifiedTime(target, file.lastModified());
+                return Outcome.UNCHANGED;
+            }
+        }
+
+        copy(file, target);
+        return Outcome.CHANGED;
+    }
+
+    private static void copy(SourceFile file, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + ".part");
+
+        try (FileChannel in = FileChannel.open(file.source(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.setLastModifiedTime(temp, file.lastModified());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the hex SHA-256 of a file, read through a direct buffer.
+     */
+    public static String sha256(Path file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static String relativePath(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static Map<String, Long> readState(Path stateFile) {
+        if (stateFile == null || !Files.isRegularFile(stateFile)) return Map.of();
+        try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+            Map<String, Long> state = GSON.fromJson(reader, new TypeToken<Map<String, Long>>() {}.getType());
+            return state != null ? state : Map.of();
+        } catch (IOException | JsonParseException e) {
+            return Map.of(); // Corrupt state only costs us the "removed" report.
+        }
+    }
+
+    private static void writeState(Path stateFile, Map<String, Long> state) throws IOException {
+        if (stateFile == null) return;
+        Files.createDirectories(stateFile.getParent());
+        try (Writer writer = Files.newBufferedWriter(stateFile, StandardCharsets.UTF_8)) {
+            GSON.toJson(state, writer);
+        }
+    }
+}
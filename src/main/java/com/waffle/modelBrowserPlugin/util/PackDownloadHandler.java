@@ -0,0 +1,250 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Serves the built pack zip ({@link PackZipBuilder}) over HTTP.
+ * <p>
+ * The archive's SHA-1 doubles as its ETag, so clients that already have the current pack get
+ * a {@code 304}. Single byte ranges are honored for resumed downloads. The body is sent with
+ * {@link FileChannel#transferTo}, straight from the file channel into the response. Each request
+ * keeps its own channel open, so rebuilding the pack (an atomic replace) never corrupts a
+ * download in progress. The concurrent-download cap is enforced by the {@link ThrottledHandler}
+ * wrapping this handler.
+ * </p>
+ */
+final class PackDownloadHandler implements HttpHandler {
+
+    /** Largest slice handed to a single {@code transferTo} call. */
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    /** The zip a hash was taken from; a rebuild changes its file key, size or mtime. */
+    private record Snapshot(Object fileKey, long size, long modified, String sha1) {
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size() && modified == attrs.lastModifiedTime().toMillis()
+                    && (fileKey == null || fileKey.equals(attrs.fileKey()));
+        }
+    }
+
+    private record Range(long start, long length) {}
+
+    private record OpenZip(FileChannel channel, BasicFileAttributes attrs) {}
+
+    private final Supplier<Path> zipFile;
+    private volatile Snapshot snapshot;
+
+    PackDownloadHandler(Supplier<Path> zipFile) {
+        this.zipFile = zipFile;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            drain(exchange);
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equalsIgnoreCase(method);
+            if (!head && !"GET".equalsIgnoreCase(method)) {
+                exchange.getResponseHeaders().add("Allow", "GET, HEAD");
+                sendStatus(exchange, 405);
+                return;
+            }
+
+            Path zip = zipFile.get();
+            OpenZip open;
+            try {
+                open = open(zip);
+            } catch (NoSuchFileException e) {
+                sendStatus(exchange, 404);
+                return;
+            }
+
+            try (FileChannel channel = open.channel()) {
+                long size = channel.size();
+                String etag = "\"" + sha1(zip, open) + "\"";
+
+                Headers headers = exchange.getResponseHeaders();
+                headers.add("Access-Control-Allow-Origin", "*");
+                headers.add("Content-Type", "application/zip");
+                headers.add("Accept-Ranges", "bytes");
+                headers.add("ETag", etag);
+                headers.add("Cache-Control", "no-cache");
+
+                if (matchesAny(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                    sendStatus(exchange, 304);
+                    return;
+                }
+
+                Range range = new Range(0, size);
+                int status = 200;
+                String rangeHeader = exchange.getRequestHeaders().getFirst("Range");
+                String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+                if (rangeHeader != null && (ifRange == null || ifRange.trim().equals(etag))) {
+                    Range requested = parseRange(rangeHeader, size);
+                    if (requested == null) {
+                        headers.add("Content-Range", "bytes */" + size);
+                        sendStatus(exchange, 416);
+                        return;
+                    }
+                    if (requested.length() != size) {
+                        range = requested;
+                        status = 206;
+                        headers.add("Content-Range", "bytes " + range.start() + "-"
+                                + (range.start() + range.length() - 1) + "/" + size);
+                    }
+                }
+
+                if (head) {
+                    headers.add("Content-Length", Long.toString(range.length()));
+                    exchange.sendResponseHeaders(status, -1);
+                    return;
+                }
+
+                exchange.sendResponseHeaders(status, range.length());
+                try (OutputStream body = exchange.getResponseBody()) {
+                    transfer(channel, range, Channels.newChannel(body));
+                }
+            }
+        }
+    }
+
+    private static void transfer(FileChannel channel, Range range, WritableByteChannel target) throws IOException {
+        long position = range.start();
+        long end = range.start() + range.length();
+        while (position < end) {
+            long sent = channel.transferTo(position, Math.min(TRANSFER_CHUNK, end - position), target);
+            if (sent <= 0) throw new IOException("Pack zip shrank during download");
+            position += sent;
+        }
+    }
+
+    /**
+     * Opens the zip together with attributes that are known to describe the opened file,
+     * retrying if a rebuild replaces it in between.
+     */
+    private static OpenZip open(Path zip) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            BasicFileAttributes before = Files.readAttributes(zip, BasicFileAttributes.class);
+            FileChannel channel = FileChannel.open(zip, StandardOpenOption.READ);
+            BasicFileAttributes after = Files.readAttributes(zip, BasicFileAttributes.class);
+            boolean stable = before.size() == after.size() && channel.size() == after.size()
+                    && before.lastModifiedTime().equals(after.lastModifiedTime())
+                    && (after.fileKey() == null || after.fileKey().equals(before.fileKey()));
+            if (stable || attempt == 2) return new OpenZip(channel, after);
+            channel.close();
+        }
+    }
+
+    /**
+     * Returns the SHA-1 of the zip, preferring the {@code .sha1} file written by the builder
+     * when it is at least as new as the zip. Hashes the open channel otherwise.
+     */
+    private String sha1(Path zip, OpenZip open) throws IOException {
+        BasicFileAttributes attrs = open.attrs();
+        Snapshot current = snapshot;
+        if (current != null && current.matches(attrs)) return current.sha1();
+
+        String hash = null;
+        Path sidecar = zip.resolveSibling(zip.getFileName() + ".sha1");
+        try {
+            if (Files.getLastModifiedTime(sidecar).compareTo(attrs.lastModifiedTime()) >= 0) {
+                String text = Files.readString(sidecar, StandardCharsets.UTF_8).trim();
+                if (text.length() == 40) hash = text;
+            }
+        } catch (NoSuchFileException e) {
+            // Zip not built by PackZipBuilder, hash it below.
+        }
+        if (hash == null) hash = hash(open.channel());
+
+        snapshot = new Snapshot(attrs.fileKey(), attrs.size(), attrs.lastModifiedTime().toMillis(), hash);
+        return hash;
+    }
+
+    private static String hash(FileChannel channel) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long position = 0;
+            int read;
+            while ((read = channel.read(buffer.clear(), position)) != -1) {
+                digest.update(buffer.array(), 0, read);
+                position += read;
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    private static boolean matchesAny(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Parses a single {@code bytes=} range. Multi-range requests are answered with the whole
+     * file, which the spec allows.
+     *
+     * @return the range, the whole file if the header is ignored, or {@code null} if unsatisfiable
+     */
+    private static Range parseRange(String header, long size) {
+        Range whole = new Range(0, size);
+        String value = header.trim();
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) return whole;
+        value = value.substring(6).trim();
+        int dash = value.indexOf('-');
+        if (dash < 0) return whole;
+
+        try {
+            String first = value.substring(0, dash).trim();
+            String last = value.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                if (last.isEmpty()) return whole;
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) return null;
+                long length = Math.min(suffix, size);
+                return new Range(size - length, length);
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || end < start) return null;
+            return new Range(start, end - start + 1);
+        } catch (NumberFormatException e) {
+            return whole;
+        }
+    }
+
+    private static void drain(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private static void sendStatus(HttpExchange exchange, int code) throws IOException {
+        exchange.sendResponseHeaders(code, -1);
+    }
+}
@@ -0,0 +1,428 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds a size-optimized copy of the resource pack in a separate output folder.
+ * <p>
+ * Every JSON and {@code .mcmeta} file is minified. In models/ the keys the client never reads
+ * (Blockbench's {@code credit}, {@code groups}, {@code texture_size}, element names and colors,
+ * ...) are dropped, and short {@code parent} chains inside the pack can optionally be inlined so
+ * the client resolves fewer files. Files the client does not load at all (editor projects,
+ * images in other formats, OS junk) are left out; everything else is copied unchanged.
+ * The source pack is never modified.
+ * </p>
+ * <p>
+ * Runs are incremental: for each output file the size and mtime of the inputs it was built
+ * from (the file itself plus any inlined parents) are kept in a state file, and only outputs
+ * whose inputs changed are rebuilt. Outputs whose source disappeared are deleted; when a rebuild
+ * fails, the previous output is kept.
+ * </p>
+ */
+public final class PackOptimizer {
+
+    private static final Gson GSON = new Gson();
+
+    /** Model keys the client ignores. */
+    private static final Set<String> IGNORED_MODEL_KEYS = Set.of("credit", "groups", "texture_size", "__comment", "visible_box");
+    /** Element keys the client ignores. */
+    private static final Set<String> IGNORED_ELEMENT_KEYS = Set.of("name", "color", "__comment");
+    /** Extensions the client loads from a pack; other files are left out of the output. */
+    private static final Set<String> PACK_EXTENSIONS = Set.of(
+            "json", "mcmeta", "png", "ogg", "txt", "fsh", "vsh", "glsl", "ttf", "otf", "hex", "zip", "bin", "properties");
+
+    private PackOptimizer() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Optimization settings.
+     *
+     * @param dropIgnoredKeys remove model keys the client ignores
+     * @param inlineParents   merge parent models that live in the pack into their children
+     * @param maxInlineDepth  how many parent levels to inline at most
+     * @param threads         number of worker threads, {@code 0} for one per CPU core (max 8)
+     */
+    public record Options(boolean dropIgnoredKeys, boolean inlineParents, int maxInlineDepth, int threads) {
+        public static Options defaults() {
+            return new Options(true, false, 2, 0);
+        }
+
+        int effectiveThreads() {
+            return threads > 0 ? threads : Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        }
+
+        /**
+         * Everything that changes the output; a different fingerprint forces a full rebuild.
+         */
+        String fingerprint() {
+            return dropIgnoredKeys + "/" + inlineParents + "/" + maxInlineDepth;
+        }
+    }
+
+    /**
+     * What an optimization run did.
+     *
+     * @param inputFiles     files in the source pack
+     * @param outputFiles    files in the output folder
+     * @param rebuilt        outputs written this run
+     * @param reused         outputs kept from the previous run
+     * @param removed        stale outputs deleted
+     * @param inputBytes     total size of the source pack
+     * @param outputBytes    total size of the output folder
+     * @param droppedKeys    ignored keys removed from rebuilt models
+     * @param inlinedParents parent models merged into rebuilt models
+     * @param failed         files that could not be processed, with the error message
+     */
+    public record Report(
+            int inputFiles,
+            int outputFiles,
+            int rebuilt,
+            int reused,
+            int removed,
+            long inputBytes,
+            long outputBytes,
+            int droppedKeys,
+            int inlinedParents,
+            Map<String, String> failed
+    ) {
+        public long savedBytes() {
+            return inputBytes - outputBytes;
+        }
+
+        public int savedFiles() {
+            return inputFiles - outputFiles;
+        }
+    }
+
+    private record Stamp(long size, long modified) {}
+
+    /** State of one output file: the inputs it was built from and its size. */
+    private record Built(Map<String, Stamp> inputs, long size) {}
+
+    private record State(String fingerprint, Map<String, Built> outputs) {}
+
+    private record Outcome(Built built, int droppedKeys, int inlinedParents) {}
+
+    /**
+     * Optimizes the plugin's resource pack into the configured output folder
+     * ({@code optimize.output-path}) using the {@code optimize.*} settings.
+     */
+    public static Report optimize(ModelBrowserPlugin plugin) throws IOException {
+        FileConfiguration config = plugin.getConfig();
+        Options options = new Options(
+                config.getBoolean("optimize.drop-ignored-keys", true),
+                config.getBoolean("optimize.inline-parents", false),
+                config.getInt("optimize.max-inline-depth", 2),
+                config.getInt("optimize.threads", 0));
+        Path stateFile = plugin.getDataFolder().toPath().resolve("cache").resolve("optimize-state.json");
+        return optimize(plugin.getModelManager().getResourcePackRoot(), outputRoot(plugin), stateFile, options);
+    }
+
+    /**
+     * Returns the folder the optimized pack is written to.
+     */
+    public static Path outputRoot(ModelBrowserPlugin plugin) {
+        return plugin.getDataFolder().toPath().resolve(plugin.getConfig().getString("optimize.output-path", "build/pack"));
+    }
+
+    /**
+     * Writes the optimized pack to {@code outputRoot}.
+     *
+     * @param packRoot   source pack
+     * @param outputRoot output folder, owned by the optimizer (stale files in it are deleted)
+     * @param stateFile  where the incremental state is kept
+     * @param options    optimization settings
+     * @return the report
+     * @throws IOException if the pack cannot be walked; per-file failures end up in the report
+     */
+    public static Report optimize(Path packRoot, Path outputRoot, Path stateFile, Options options) throws IOException {
+        Map<String, Stamp> stamps = walk(packRoot);
+        State previous = readState(stateFile);
+        Map<String, Built> old = previous != null && options.fingerprint().equals(previous.fingerprint())
+                ? previous.outputs() : Map.of();
+
+        Map<String, Built> outputs = new ConcurrentHashMap<>();
+        Map<String, String> failed = new ConcurrentHashMap<>();
+        AtomicInteger rebuilt = new AtomicInteger();
+        AtomicInteger droppedKeys = new AtomicInteger();
+        AtomicInteger inlined = new AtomicInteger();
+        int reused = 0;
+        long inputBytes = 0;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(options.effectiveThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "ModelBrowser-optimize-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<String, Stamp> file : stamps.entrySet()) {
+                String path = file.getKey();
+                inputBytes += file.getValue().size();
+                if (!isPackFile(path)) continue;
+
+                Built built = old.get(path);
+                if (built != null && isCurrent(built, stamps, outputRoot.resolve(path))) {
+                    outputs.put(path, built);
+                    reused++;
+                    continue;
+                }
+
+                futures.add(pool.submit(() -> {
+                    try {
+                        Outcome outcome = build(packRoot, outputRoot, path, stamps, options);
+                        outputs.put(path, outcome.built());
+                        droppedKeys.addAndGet(outcome.droppedKeys());
+                        inlined.addAndGet(outcome.inlinedParents());
+                        rebuilt.incrementAndGet();
+                    } catch (IOException e) {
+                        failed.put(path, e.getClass().getSimpleName() + ": " + e.getMessage());
+                        Built kept = kept(previous, old, path);
+                        if (kept != null) {
+                            outputs.put(path, kept);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Pack optimization interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Pack optimization task failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Only outputs whose source is gone; a failed rebuild keeps the previous output
+        int removed = 0;
+        for (String path : previous != null ? previous.outputs().keySet() : Set.<String>of()) {
+            if (!outputs.containsKey(path) && !failed.containsKey(path)
+                    && Files.deleteIfExists(outputRoot.resolve(path))) {
+                removed++;
+            }
+        }
+
+        long outputBytes = 0;
+        for (Built built : outputs.values()) {
+            outputBytes += built.size();
+        }
+        writeState(stateFile, new State(options.fingerprint(), new TreeMap<>(outputs)));
+
+        return new Report(stamps.size(), outputs.size(), rebuilt.get(), reused, removed,
+                inputBytes, outputBytes, droppedKeys.get(), inlined.get(), Map.copyOf(failed));
+    }
+
+    /**
+     * Whether a file ends up in the optimized pack.
+     */
+    static boolean isPackFile(String path) {
+        if (path.equals("pack.mcmeta") || path.equals("pack.png")) return true;
+        if (!path.startsWith("assets/")) return false;
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') && PACK_EXTENSIONS.contains(path.substring(dot + 1));
+    }
+
+    /**
+     * The previous state of an output whose rebuild failed, so it stays tracked. When it was built
+     * with other settings, it is kept but marked out of date so the next run rebuilds it.
+     */
+    private static Built kept(State previous, Map<String, Built> old, String path) {
+        Built built = old.get(path);
+        if (built != null || previous == null) return built;
+        Built stale = previous.outputs().get(path);
+        return stale != null ? new Built(Map.of(path, new Stamp(-1, -1)), stale.size()) : null;
+    }
+
+    private static boolean isCurrent(Built built, Map<String, Stamp> stamps, Path output) {
+        for (Map.Entry<String, Stamp> input : built.inputs().entrySet()) {
+            if (!input.getValue().equals(stamps.get(input.getKey()))) return false;
+        }
+        try {
+            return Files.size(output) == built.size();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Outcome build(Path packRoot, Path outputRoot, String path,
+                                 Map<String, Stamp> stamps, Options options) throws IOException {
+        Path source = packRoot.resolve(path);
+        Path target = outputRoot.resolve(path);
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + ".part");
+
+        Map<String, Stamp> inputs = new HashMap<>();
+        inputs.put(path, stamps.get(path));
+        int dropped = 0;
+        int inlined = 0;
+
+        JsonElement tree = path.endsWith(".json") || path.endsWith(".mcmeta") ? readJson(source) : null;
+        if (tree != null) {
+            if (tree.isJsonObject() && isModel(path)) {
+                JsonObject model = tree.getAsJsonObject();
+                if (options.inlineParents()) {
+                    for (int depth = 0; depth < options.maxInlineDepth(); depth++) {
+                        String parentPath = parentPath(model);
+                        Stamp parentStamp = parentPath != null ? stamps.get(parentPath) : null;
+                        if (parentStamp == null || parentPath.equals(path)) break;
+
+                        JsonElement parent = readJson(packRoot.resolve(parentPath));
+                        if (parent == null || !parent.isJsonObject()) break;
+                        model = mergeParent(parent.getAsJsonObject(), model);
+                        inputs.put(parentPath, parentStamp);
+                        inlined++;
+                    }
+                }
+                if (options.dropIgnoredKeys()) {
+                    dropped = dropIgnoredKeys(model);
+                }
+                tree = model;
+            }
+            Files.writeString(temp, JsonUtil.minify(tree), StandardCharsets.UTF_8);
+        } else {
+            Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        long size = Files.size(temp);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new Outcome(new Built(inputs, size), dropped, inlined);
+    }
+
+    private static boolean isModel(String path) {
+        // assets/<namespace>/models/...
+        int nsEnd = path.indexOf('/', "assets/".length());
+        return nsEnd > 0 && path.startsWith("models/", nsEnd + 1);
+    }
+
+    private static String parentPath(JsonObject model) {
+        JsonElement parent = model.get("parent");
+        if (parent == null || !parent.isJsonPrimitive()) return null;
+        return ModelDependencyResolver.modelPath(parent.getAsString());
+    }
+
+    /**
+     * Merges a parent model into its child the way the client resolves them: textures and display
+     * transforms are merged per key with the child winning, every other key of the child replaces
+     * the parent's, and the result points at the parent's parent.
+     */
+    static JsonObject mergeParent(JsonObject parent, JsonObject child) {
+        JsonObject merged = new JsonObject();
+        for (Map.Entry<String, JsonElement> entry : parent.entrySet()) {
+            merged.add(entry.getKey(), entry.getValue().deepCopy());
+        }
+
+        for (Map.Entry<String, JsonElement> entry : child.entrySet()) {
+            String key = entry.getKey();
+            if (key.equals("parent")) continue;
+
+            JsonElement inherited = merged.get(key);
+            if ((key.equals("textures") || key.equals("display"))
+                    && inherited != null && inherited.isJsonObject() && entry.getValue().isJsonObject()) {
+                JsonObject combined = inherited.getAsJsonObject();
+                for (Map.Entry<String, JsonElement> own : entry.getValue().getAsJsonObject().entrySet()) {
+                    combined.add(own.getKey(), own.getValue().deepCopy());
+                }
+            } else {
+                merged.add(key, entry.getValue().deepCopy());
+            }
+        }
+        return merged;
+    }
+
+    private static int dropIgnoredKeys(JsonObject model) {
+        int dropped = 0;
+        for (String key : IGNORED_MODEL_KEYS) {
+            if (model.remove(key) != null) dropped++;
+        }
+        JsonElement elements = model.get("elements");
+        if (elements != null && elements.isJsonArray()) {
+            for (JsonElement element : elements.getAsJsonArray()) {
+                if (!element.isJsonObject()) continue;
+                for (String key : IGNORED_ELEMENT_KEYS) {
+                    if (element.getAsJsonObject().remove(key) != null) dropped++;
+                }
+            }
+        }
+        return dropped;
+    }
+
+    private static Map<String, Stamp> walk(Path packRoot) throws IOException {
+        Map<String, Stamp> stamps = new TreeMap<>();
+        if (!Files.isDirectory(packRoot)) return stamps;
+
+        Files.walkFileTree(packRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !file.getFileName().toString().startsWith(".")) {
+                    stamps.put(PackCopyEngine.relativePath(packRoot, file),
+                            new Stamp(attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return stamps;
+    }
+
+    private static JsonElement readJson(Path file) {
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return JsonParser.parseReader(reader);
+        } catch (IOException | RuntimeException e) {
+            return null; // Copied as-is; the client reports broken JSON itself.
+        }
+    }
+
+    private static State readState(Path stateFile) {
+        if (!Files.isRegularFile(stateFile)) return null;
+        try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+            State state = GSON.fromJson(reader, new TypeToken<State>() {}.getType());
+            return state != null && state.outputs() != null ? state : null;
+        } catch (IOException | JsonParseException e) {
+            return null; // Full rebuild.
+        }
+    }
+
+    private static void writeState(Path stateFile, State state) throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(state, writer);
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,460 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Builds the distributable resource-pack zip and its SHA-1.
+ * <p>
+ * The archive is deterministic: entries are sorted by path, every entry has the same fixed
+ * timestamp and no extra fields, so the same pack content always gives the same bytes and the
+ * same hash. Entries are deflated in parallel (and stored when deflating does not help) while
+ * a single writer streams them to disk in order, hashing every byte on the way.
+ * </p>
+ * <p>
+ * Next to the zip an index records, per entry, the source file's size and mtime plus where its
+ * compressed bytes sit in the archive. On the next build unchanged files are not compressed
+ * again: their bytes are copied straight out of the previous zip. If nothing changed at all,
+ * the previous archive is kept as-is.
+ * </p>
+ */
+public final class PackZipBuilder {
+
+    private static final Gson GSON = new Gson();
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL = 0x06054b50;
+    /** 1980-01-01 00:00:00 in MS-DOS format, the earliest a zip can express. */
+    private static final int DOS_TIME = 0;
+    private static final int DOS_DATE = (1 << 5) | 1;
+    /** Bit 11: file names are UTF-8. */
+    private static final int FLAG_UTF8 = 0x0800;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    /** The command and the rollout can both build; they must not write the same zip at once. */
+    private static final Object BUILD_LOCK = new Object();
+
+    private PackZipBuilder() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Build settings.
+     *
+     * @param compressionLevel deflate level (0-9)
+     * @param threads          number of compression threads, {@code 0} for one per CPU core (max 8)
+     */
+    public record Options(int compressionLevel, int threads) {
+        public static Options defaults() {
+            return new Options(Deflater.BEST_COMPRESSION, 0);
+        }
+
+        int effectiveThreads() {
+            return threads > 0 ? threads : Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        }
+    }
+
+    /**
+     * Outcome of a build.
+     *
+     * @param zip        the archive
+     * @param sha1       hex SHA-1 of the archive, as expected by {@code resource-pack-sha1}
+     * @param size       archive size in bytes
+     * @param entries    number of entries
+     * @param compressed entries compressed during this build
+     * @param reused     entries copied from the previous archive
+     * @param unchanged  {@code true} if the previous archive was kept without rewriting it
+     * @param millis     build time
+     */
+    public record Result(Path zip, String sha1, long size, int entries, int compressed, int reused,
+                         boolean unchanged, long millis) {}
+
+    private record SourceFile(String path, Path file, long size, long modified) {}
+
+    /** Where an entry's data lives in an archive, keyed by the source it came from. */
+    private record IndexEntry(long size, long modified, long crc, int method, long compressedSize, long dataOffset) {}
+
+    private record Index(long zipSize, long zipModified, String sha1, int level, Map<String, IndexEntry> entries) {}
+
+    private record EntryData(long crc, int method, byte[] data) {}
+
+    private record Pending(SourceFile source, IndexEntry reuse, Future<EntryData> data) {}
+
+    private record CentralEntry(byte[] name, long crc, int method, long compressedSize, long size, long headerOffset) {}
+
+    /**
+     * Builds the pack zip for the plugin using the {@code pack-build.*} settings. When
+     * {@code pack-build.use-optimized} is on, the optimized copy is refreshed first and zipped
+     * instead of the raw pack.
+     */
+    public static Result build(ModelBrowserPlugin plugin) throws IOException {
+        synchronized (BUILD_LOCK) {
+            return buildLocked(plugin);
+        }
+    }
+
+    private static Result buildLocked(ModelBrowserPlugin plugin) throws IOException {
+        FileConfiguration config = plugin.getConfig();
+        Path source = plugin.getModelManager().getResourcePackRoot();
+        if (config.getBoolean("pack-build.use-optimized", true)) {
+            PackOptimizer.Report report = PackOptimizer.optimize(plugin);
+            report.failed().forEach((path, error) -> plugin.getLogger().warning("Optimize failed for " + path + ": " + error));
+            source = PackOptimizer.outputRoot(plugin);
+        }
+
+        Options options = new Options(
+                config.getInt("pack-build.compression-level", Deflater.BEST_COMPRESSION),
+                config.getInt("optimize.threads", 0));
+        Path indexFile = plugin.getDataFolder().toPath().resolve("cache").resolve("pack-zip-index.json");
+        Result result = build(source, zipPath(plugin), indexFile, options);
+        plugin.getLogger().info("Built " + result.zip().getFileName() + " (" + result.size() + " bytes, "
+                + result.compressed() + " compressed, " + result.reused() + " reused) in " + result.millis()
+                + " ms, SHA-1 " + result.sha1());
+        return result;
+    }
+
+    /**
+     * Returns where the plugin's pack zip is written ({@code pack-build.output}).
+     */
+    public static Path zipPath(ModelBrowserPlugin plugin) {
+        return plugin.getDataFolder().toPath().resolve(plugin.getConfig().getString("pack-build.output", "build/pack.zip"));
+    }
+
+    /**
+     * Zips {@code sourceRoot} into {@code zipFile}, reusing entries from the previous build.
+     *
+     * @param sourceRoot pack folder to zip
+     * @param zipFile    archive to (re)write; its SHA-1 is also written to {@code <zip>.sha1}
+     * @param indexFile  entry index of the previous build (created if missing)
+     * @param options    build settings
+     * @return the result, including the archive's SHA-1
+     * @throws IOException if a file cannot be read or the archive cannot be written
+     */
+    public static Result build(Path sourceRoot, Path zipFile, Path indexFile, Options options) throws IOException {
+        long start = System.nanoTime();
+        List<SourceFile> sources = walk(sourceRoot);
+        Index previous = readIndex(indexFile, zipFile, options.compressionLevel());
+
+        if (previous != null && isUnchanged(previous, sources)) {
+            return new Result(zipFile, previous.sha1(), previous.zipSize(), sources.size(), 0, sources.size(),
+                    true, (System.nanoTime() - start) / 1_000_000);
+        }
+
+        Files.createDirectories(zipFile.toAbsolutePath().getParent());
+        Path temp = zipFile.resolveSibling("." + zipFile.getFileName() + ".part");
+        MessageDigest sha1 = sha1();
+        Map<String, IndexEntry> index = new TreeMap<>();
+        int compressed = 0;
+        int reused = 0;
+        long size;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(options.effectiveThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "ModelBrowser-zip-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel oldZip = previous != null ? FileChannel.open(zipFile, StandardOpenOption.READ) : null;
+             ZipWriter out = new ZipWriter(new DigestOutputStream(Files.newOutputStream(temp,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING), sha1))) {
+            // Compression runs ahead of the writer, bounded so memory stays flat on big packs.
+            int window = options.effectiveThreads() * 4;
+            Deque<Pending> pending = new ArrayDeque<>();
+            List<CentralEntry> central = new ArrayList<>(sources.size());
+
+            for (SourceFile source : sources) {
+                IndexEntry old = previous != null ? previous.entries().get(source.path()) : null;
+                if (old != null && old.size() == source.size() && old.modified() == source.modified()) {
+                    pending.add(new Pending(source, old, null));
+                } else {
+                    pending.add(new Pending(source, null, pool.submit(() -> compress(source, options.compressionLevel()))));
+                }
+                if (pending.size() >= window) {
+                    if (write(out, pending.poll(), oldZip, central, index)) reused++; else compressed++;
+                }
+            }
+            while (!pending.isEmpty()) {
+                if (write(out, pending.poll(), oldZip, central, index)) reused++; else compressed++;
+            }
+
+            out.writeCentralDirectory(central);
+            size = out.position();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Files.move(temp, zipFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        String hash = HexFormat.of().formatHex(sha1.digest());
+        Files.writeString(zipFile.resolveSibling(zipFile.getFileName() + ".sha1"), hash, StandardCharsets.UTF_8);
+        writeIndex(indexFile, new Index(size, Files.getLastModifiedTime(zipFile).toMillis(), hash,
+                options.compressionLevel(), index));
+
+        return new Result(zipFile, hash, size, sources.size(), compressed, reused, false,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Writes one entry; returns whether its data was reused from the previous archive.
+     */
+    private static boolean write(ZipWriter out, Pending pending, FileChannel oldZip,
+                                 List<CentralEntry> central, Map<String, IndexEntry> index) throws IOException {
+        SourceFile source = pending.source();
+        byte[] name = source.path().getBytes(StandardCharsets.UTF_8);
+        long headerOffset = out.position();
+
+        long crc;
+        int method;
+        long compressedSize;
+        if (pending.reuse() != null) {
+            IndexEntry old = pending.reuse();
+            crc = old.crc();
+            method = old.method();
+            compressedSize = old.compressedSize();
+            out.writeLocalHeader(name, crc, method, compressedSize, source.size());
+            out.copyFrom(oldZip, old.dataOffset(), compressedSize);
+        } else {
+            EntryData data = await(pending.data());
+            crc = data.crc();
+            method = data.method();
+            compressedSize = data.data().length;
+            out.writeLocalHeader(name, crc, method, compressedSize, source.size());
+            out.write(data.data());
+        }
+
+        long dataOffset = headerOffset + 30 + name.length;
+        central.add(new CentralEntry(name, crc, method, compressedSize, source.size(), headerOffset));
+        index.put(source.path(), new IndexEntry(source.size(), source.modified(), crc, method, compressedSize, dataOffset));
+        return pending.reuse() != null;
+    }
+
+    private static EntryData await(Future<EntryData> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Pack build interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            throw new IOException("Compression task failed", e.getCause());
+        }
+    }
+
+    private static EntryData compress(SourceFile source, int level) throws IOException {
+        byte[] bytes = Files.readAllBytes(source.file());
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+                // Already-compressed data (PNG, OGG) will not shrink; stop early and store it.
+                if (out.size() >= bytes.length) {
+                    return new EntryData(crc.getValue(), STORED, bytes);
+                }
+            }
+            return new EntryData(crc.getValue(), DEFLATED, out.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean isUnchanged(Index previous, List<SourceFile> sources) {
+        if (previous.entries().size() != sources.size()) return false;
+        for (SourceFile source : sources) {
+            IndexEntry old = previous.entries().get(source.path());
+            if (old == null || old.size() != source.size() || old.modified() != source.modified()) return false;
+        }
+        return true;
+    }
+
+    private static List<SourceFile> walk(Path sourceRoot) throws IOException {
+        List<SourceFile> files = new ArrayList<>();
+        if (!Files.isDirectory(sourceRoot)) {
+            throw new IOException("Pack folder not found: " + sourceRoot);
+        }
+
+        Files.walkFileTree(sourceRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String relative = PackCopyEngine.relativePath(sourceRoot, file);
+                if (attrs.isRegularFile() && !file.getFileName().toString().startsWith(".")
+                        && PackOptimizer.isPackFile(relative)) {
+                    files.add(new SourceFile(relative, file, attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        files.sort((a, b) -> a.path().compareTo(b.path()));
+        return files;
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    /**
+     * Reads the previous index; it is only trusted if the archive it describes is still untouched.
+     */
+    private static Index readIndex(Path indexFile, Path zipFile, int level) {
+        if (!Files.isRegularFile(indexFile) || !Files.isRegularFile(zipFile)) return null;
+        try (Reader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            Index index = GSON.fromJson(reader, Index.class);
+            if (index == null || index.entries() == null || index.level() != level) return null;
+            if (Files.size(zipFile) != index.zipSize()
+                    || Files.getLastModifiedTime(zipFile).toMillis() != index.zipModified()) return null;
+            return index;
+        } catch (IOException | JsonParseException e) {
+            return null; // Full rebuild.
+        }
+    }
+
+    private static void writeIndex(Path indexFile, Index index) throws IOException {
+        Files.createDirectories(indexFile.getParent());
+        Path temp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(index, writer);
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Minimal little-endian zip writer that tracks its position. No zip64: packs stay far below
+     * 4 GiB and 65535 entries, and exceeding either fails the build instead of producing a bad file.
+     */
+    private static final class ZipWriter implements AutoCloseable {
+        private final OutputStream out;
+        private final ByteBuffer scratch = ByteBuffer.allocate(46).order(ByteOrder.LITTLE_ENDIAN);
+        private final byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+        private long position;
+
+        ZipWriter(OutputStream out) {
+            this.out = new BufferedOutputStream(out, COPY_BUFFER_SIZE);
+        }
+
+        long position() {
+            return position;
+        }
+
+        void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            position += bytes.length;
+        }
+
+        void copyFrom(FileChannel channel, long offset, long length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(copyBuffer);
+            long remaining = length;
+            long at = offset;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(copyBuffer.length, remaining));
+                int read = channel.read(buffer, at);
+                if (read < 0) throw new IOException("Previous pack zip is truncated");
+                out.write(copyBuffer, 0, read);
+                at += read;
+                remaining -= read;
+            }
+            position += length;
+        }
+
+        void writeLocalHeader(byte[] name, long crc, int method, long compressedSize, long size) throws IOException {
+            checkLimits(compressedSize, size);
+            scratch.clear();
+            scratch.putInt(LOCAL_HEADER).putShort((short) 20).putShort((short) FLAG_UTF8).putShort((short) method)
+                    .putShort((short) DOS_TIME).putShort((short) DOS_DATE).putInt((int) crc)
+                    .putInt((int) compressedSize).putInt((int) size)
+                    .putShort((short) name.length).putShort((short) 0);
+            flushScratch();
+            write(name);
+        }
+
+        void writeCentralDirectory(List<CentralEntry> entries) throws IOException {
+            if (entries.size() > 0xFFFF) throw new IOException("Too many entries for a zip without zip64");
+            long start = position;
+            for (CentralEntry entry : entries) {
+                scratch.clear();
+                scratch.putInt(CENTRAL_HEADER).putShort((short) 20).putShort((short) 20)
+                        .putShort((short) FLAG_UTF8).putShort((short) entry.method())
+                        .putShort((short) DOS_TIME).putShort((short) DOS_DATE).putInt((int) entry.crc())
+                        .putInt((int) entry.compressedSize()).putInt((int) entry.size())
+                        .putShort((short) entry.name().length).putShort((short) 0).putShort((short) 0)
+                        .putShort((short) 0).putShort((short) 0).putInt(0).putInt((int) entry.headerOffset());
+                flushScratch();
+                write(entry.name());
+            }
+            long length = position - start;
+            checkLimits(start, length);
+
+            scratch.clear();
+            scratch.putInt(END_OF_CENTRAL).putShort((short) 0).putShort((short) 0)
+                    .putShort((short) entries.size()).putShort((short) entries.size())
+                    .putInt((int) length).putInt((int) start).putShort((short) 0);
+            flushScratch();
+        }
+
+        private void checkLimits(long a, long b) throws IOException {
+            if (a > 0xFFFFFFFFL || b > 0xFFFFFFFFL || position > 0xFFFFFFFFL) {
+                throw new IOException("Pack is too large for a zip without zip64");
+            }
+        }
+
+        private void flushScratch() throws IOException {
+            out.write(scratch.array(), 0, scratch.position());
+            position += scratch.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
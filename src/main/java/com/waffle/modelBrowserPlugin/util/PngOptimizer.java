@@ -0,0 +1,774 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Lossless PNG recompression for pack textures, in pure Java.
+ * <p>
+ * Each image is decoded to 8-bit RGBA and re-encoded in the smallest representation that keeps
+ * every pixel (alpha included) exactly as it was: indexed with a trimmed {@code tRNS} when it
+ * has at most 256 colors, grayscale (at the lowest exact bit depth) when every pixel is gray,
+ * otherwise RGB or RGBA. Each candidate is filtered both without filters and with per-row
+ * adaptive filters, deflated at level 9, and the smallest wins. Ancillary chunks (text, gamma,
+ * color profiles, timestamps) are dropped; the client ignores them. Files only get replaced
+ * when the result is smaller. Interlaced and 16-bit images are left alone.
+ * </p>
+ * <p>
+ * The content hash of every file that has been optimized (or turned out to be optimal already)
+ * is remembered, so a file is never processed twice, even if it is moved or re-imported. The
+ * hash of each original is mapped to its optimized copy, which is kept in the cache, so when the
+ * same original bytes come back (a zip re-extract, the same upload again) the stored result is
+ * used without decoding.
+ * </p>
+ */
+public final class PngOptimizer {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final Gson GSON = new Gson();
+    private static final long MAX_PIXELS = 16L * 1024 * 1024;
+
+    public enum Status {
+        OPTIMIZED,
+        ALREADY_OPTIMAL,
+        CACHED,
+        UNSUPPORTED,
+        FAILED
+    }
+
+    /**
+     * What happened to one file. Sizes are equal unless the file was optimized.
+     */
+    public record FileResult(String path, long sizeBefore, long sizeAfter, Status status) {}
+
+    /**
+     * Outcome of one optimization run.
+     *
+     * @param files per-file results, sorted by path
+     */
+    public record Report(List<FileResult> files) {
+        public long bytesBefore() {
+            long total = 0;
+            for (FileResult file : files) total += file.sizeBefore();
+            return total;
+        }
+
+        public long bytesAfter() {
+            long total = 0;
+            for (FileResult file : files) total += file.sizeAfter();
+            return total;
+        }
+
+        public long savedBytes() {
+            return bytesBefore() - bytesAfter();
+        }
+
+        public int count(Status status) {
+            int count = 0;
+            for (FileResult file : files) {
+                if (file.status() == status) count++;
+            }
+            return count;
+        }
+
+        /**
+         * Pack-relative paths of files that were rewritten.
+         */
+        public List<String> optimizedPaths() {
+            List<String> paths = new ArrayList<>();
+            for (FileResult file : files) {
+                if (file.status() == Status.OPTIMIZED) paths.add(file.path());
+            }
+            return paths;
+        }
+
+        public static Report empty() {
+            return new Report(List.of());
+        }
+    }
+
+    /** Decoded image: 8-bit ARGB pixels. */
+    private record Image(int width, int height, int[] argb) {}
+
+    /** One encoding of an image, ready to be written. */
+    private record Encoded(int colorType, int bitDepth, byte[] palette, byte[] transparency, byte[] idat) {
+        int fileSize() {
+            int size = SIGNATURE.length + 12 + 13 + 12 + idat.length + 12;
+            if (palette != null) size += 12 + palette.length;
+            if (transparency != null) size += 12 + transparency.length;
+            return size;
+        }
+    }
+
+    private final ModelBrowserPlugin plugin;
+    private final SettledImports settled;
+    private final FileHashCache hashes;
+    private final Path doneFile;
+    private final Set<String> done = ConcurrentHashMap.newKeySet();
+    private final Path optimizedFile;
+    private final Path optimizedDir;
+    /** Hash of an original to the hash of its optimized copy in {@link #optimizedDir}. */
+    private final Map<String, String> optimizedHashes = new ConcurrentHashMap<>();
+
+    public PngOptimizer(ModelBrowserPlugin plugin, SettledImports settled) {
+        this.plugin = plugin;
+        this.settled = settled;
+        Path cacheDir = plugin.getDataFolder().toPath().resolve("cache");
+        this.hashes = FileHashCache.load(cacheDir.resolve("png-hashes.json"));
+        this.doneFile = cacheDir.resolve("png-optimized.json");
+        this.optimizedFile = cacheDir.resolve("png-originals.json");
+        this.optimizedDir = cacheDir.resolve("png");
+        loadDone();
+    }
+
+    /**
+     * Optimizes the given PNG files in parallel. Paths that are not {@code .png} are ignored.
+     *
+     * @param packPaths pack-relative paths, or {@code null} for every texture in the pack
+     * @param threads   number of worker threads, {@code 0} for one per CPU core (max 8)
+     * @param apply     {@code false} to only measure what would be saved
+     * @return per-file results
+     * @throws IOException if the pack cannot be walked
+     */
+    public synchronized Report optimize(Collection<String> packPaths, int threads, boolean apply) throws IOException {
+        Path packRoot = plugin.getModelManager().getResourcePackRoot();
+        List<String> files = packPaths != null ? new ArrayList<>(packPaths) : listTextures(packRoot);
+        files.removeIf(path -> !path.endsWith(".png"));
+        if (files.isEmpty()) return Report.empty();
+
+        Map<String, FileResult> results = new ConcurrentHashMap<>();
+        Map<String, String> currentHashes = new ConcurrentHashMap<>();
+        int poolSize = threads > 0 ? threads : Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadIds = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "ModelBrowser-png-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(files.size());
+            for (String path : files) {
+                futures.add(pool.submit(() -> {
+                    results.put(path, optimizeFile(packRoot, path, apply, currentHashes));
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("PNG optimization interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("PNG optimization task failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        if (packPaths == null) {
+            // Whole-pack run: forget files that no longer exist.
+            Set<String> keys = new HashSet<>();
+            for (String path : files) keys.add("raw:" + path);
+            hashes.retainAll(keys);
+            done.retainAll(currentHashes.values());
+            optimizedHashes.values().retainAll(done);
+            pruneOptimized();
+        }
+        hashes.save();
+        saveDone();
+
+        Report report = new Report(List.copyOf(new TreeMap<>(results).values()));
+        if (apply) {
+            settled.remember(report.optimizedPaths());
+        }
+        return report;
+    }
+
+    private FileResult optimizeFile(Path packRoot, String path, boolean apply, Map<String, String> currentHashes) {
+        Path file = packRoot.resolve(path);
+        long before;
+        try {
+            before = Files.size(file);
+            String hash = hashes.get("raw:" + path, file, PackCopyEngine::sha256);
+            currentHashes.put(path, hash);
+            if (done.contains(hash)) {
+                return new FileResult(path, before, before, Status.CACHED);
+            }
+
+            // The same original was optimized before; take the stored result
+            String knownHash = optimizedHashes.get(hash);
+            Path known = knownHash != null ? optimizedDir.resolve(knownHash + ".png") : null;
+            if (known != null && Files.isRegularFile(known)) {
+                long after = Files.size(known);
+                if (apply) {
+                    Path temp = file.resolveSibling("." + file.getFileName() + ".part");
+                    Files.copy(known, temp, StandardCopyOption.REPLACE_EXISTING);
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    currentHashes.put(path, knownHash);
+                }
+                return new FileResult(path, before, after, Status.OPTIMIZED);
+            }
+
+            byte[] original = Files.readAllBytes(file);
+            byte[] optimized = recompress(original);
+            if (optimized == null) {
+                done.add(hash);
+                return new FileResult(path, before, before, Status.UNSUPPORTED);
+            }
+            if (optimized.length >= original.length) {
+                done.add(hash);
+                return new FileResult(path, before, before, Status.ALREADY_OPTIMAL);
+            }
+
+            String newHash = sha256(optimized);
+            storeOptimized(newHash, optimized);
+            done.add(newHash);
+            optimizedHashes.put(hash, newHash);
+            if (apply) {
+                Path temp = file.resolveSibling("." + file.getFileName() + ".part");
+                Files.write(temp, optimized);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                currentHashes.put(path, newHash);
+            }
+            return new FileResult(path, before, optimized.length, Status.OPTIMIZED);
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().warning("Could not optimize " + path + ": " + e.getMessage());
+            return new FileResult(path, 0L, 0L, Status.FAILED);
+        }
+    }
+
+    private static List<String> listTextures(Path packRoot) throws IOException {
+        List<String> files = new ArrayList<>();
+        Path assets = packRoot.resolve("assets");
+        if (!Files.isDirectory(assets)) return files;
+
+        Files.walkFileTree(assets, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String name = file.getFileName().toString();
+                if (attrs.isRegularFile() && name.endsWith(".png") && !name.startsWith(".")) {
+                    files.add(PackCopyEngine.relativePath(packRoot, file));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Returns the smallest lossless re-encoding of a PNG, or {@code null} if it cannot be handled.
+     */
+    static byte[] recompress(byte[] png) {
+        Image image;
+        try {
+            image = decode(png);
+        } catch (DataFormatException | RuntimeException e) {
+            return null;
+        }
+        if (image == null) return null;
+
+        Encoded best = null;
+        for (Encoded candidate : encodeCandidates(image)) {
+            if (best == null || candidate.fileSize() < best.fileSize()) best = candidate;
+        }
+        return write(image, best);
+    }
+
+    // ---- decoding ----
+
+    private static Image decode(byte[] png) throws DataFormatException {
+        if (png.length < SIGNATURE.length || !Arrays.equals(Arrays.copyOf(png, SIGNATURE.length), SIGNATURE)) {
+            return null;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(png);
+        in.position(SIGNATURE.length);
+        int width = 0, height = 0, bitDepth = 0, colorType = -1;
+        byte[] palette = null, transparency = null;
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+
+        while (in.remaining() >= 12) {
+            int length = in.getInt();
+            if (length < 0 || length > in.remaining() - 8) return null;
+            byte[] type = new byte[4];
+            in.get(type);
+            byte[] data = new byte[length];
+            in.get(data);
+            in.getInt(); // CRC; a corrupt file fails to inflate or decode anyway
+
+            String name = new String(type, StandardCharsets.US_ASCII);
+            switch (name) {
+                case "IHDR" -> {
+                    ByteBuffer header = ByteBuffer.wrap(data);
+                    width = header.getInt();
+                    height = header.getInt();
+                    bitDepth = data[8];
+                    colorType = data[9];
+                    if (data[10] != 0 || data[11] != 0 || data[12] != 0) return null; // interlaced or unknown method
+                }
+                case "PLTE" -> palette = data;
+                case "tRNS" -> transparency = data;
+                case "IDAT" -> idat.writeBytes(data);
+                case "IEND" -> {
+                    return toImage(width, height, bitDepth, colorType, palette, transparency, inflate(idat.toByteArray()));
+                }
+                default -> {
+                    // Unknown critical chunks (uppercase first letter) change how the image decodes.
+                    if (Character.isUpperCase(name.charAt(0))) return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static byte[] inflate(byte[] data) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[64 * 1024];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static Image toImage(int width, int height, int bitDepth, int colorType,
+                                 byte[] palette, byte[] transparency, byte[] raw) {
+        if (width <= 0 || height <= 0 || (long) width * height > MAX_PIXELS || bitDepth > 8) return null;
+        int channels = switch (colorType) {
+            case 0, 3 -> 1;
+            case 2 -> 3;
+            case 4 -> 2;
+            case 6 -> 4;
+            default -> -1;
+        };
+        if (channels < 0 || (colorType == 3 && palette == null)) return null;
+        if (bitDepth < 8 && colorType != 0 && colorType != 3) return null;
+
+        int bitsPerPixel = channels * bitDepth;
+        int rowBytes = (width * bitsPerPixel + 7) / 8;
+        int bpp = Math.max(1, bitsPerPixel / 8);
+        if ((long) raw.length < (long) height * (rowBytes + 1)) return null;
+        byte[] pixels = unfilter(raw, rowBytes, height, bpp);
+        if (pixels == null) return null;
+
+        int maxGray = (1 << bitDepth) - 1;
+        int transparentGray = colorType == 0 && transparency != null && transparency.length >= 2
+                ? ((transparency[0] & 0xFF) << 8 | (transparency[1] & 0xFF)) : -1;
+        int transparentRgb = colorType == 2 && transparency != null && transparency.length >= 6
+                ? ((transparency[1] & 0xFF) << 16 | (transparency[3] & 0xFF) << 8 | (transparency[5] & 0xFF)) : -1;
+
+        int[] argb = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            int row = y * rowBytes;
+            for (int x = 0; x < width; x++) {
+                int color;
+                switch (colorType) {
+                    case 0 -> {
+                        int value = sample(pixels, row, x, bitDepth);
+                        int gray = value * 255 / maxGray;
+                        int alpha = value == transparentGray ? 0 : 255;
+                        color = alpha << 24 | gray << 16 | gray << 8 | gray;
+                    }
+                    case 3 -> {
+                        int index = sample(pixels, row, x, bitDepth);
+                        if (index * 3 + 2 >= palette.length) return null;
+                        int alpha = transparency != null && index < transparency.length ? transparency[index] & 0xFF : 255;
+                        color = alpha << 24 | (palette[index * 3] & 0xFF) << 16
+                                | (palette[index * 3 + 1] & 0xFF) << 8 | (palette[index * 3 + 2] & 0xFF);
+                    }
+                    case 2 -> {
+                        int p = row + x * 3;
+                        int rgb = (pixels[p] & 0xFF) << 16 | (pixels[p + 1] & 0xFF) << 8 | (pixels[p + 2] & 0xFF);
+                        color = (rgb == transparentRgb ? 0 : 0xFF000000) | rgb;
+                    }
+                    case 4 -> {
+                        int p = row + x * 2;
+                        int gray = pixels[p] & 0xFF;
+                        color = (pixels[p + 1] & 0xFF) << 24 | gray << 16 | gray << 8 | gray;
+                    }
+                    default -> {
+                        int p = row + x * 4;
+                        color = (pixels[p + 3] & 0xFF) << 24 | (pixels[p] & 0xFF) << 16
+                                | (pixels[p + 1] & 0xFF) << 8 | (pixels[p + 2] & 0xFF);
+                    }
+                }
+                argb[y * width + x] = color;
+            }
+        }
+        return new Image(width, height, argb);
+    }
+
+    private static int sample(byte[] pixels, int row, int x, int bitDepth) {
+        if (bitDepth == 8) return pixels[row + x] & 0xFF;
+        int bit = x * bitDepth;
+        int shift = 8 - bitDepth - (bit & 7);
+        return (pixels[row + (bit >> 3)] >> shift) & ((1 << bitDepth) - 1);
+    }
+
+    private static byte[] unfilter(byte[] raw, int rowBytes, int height, int bpp) {
+        byte[] out = new byte[rowBytes * height];
+        for (int y = 0; y < height; y++) {
+            int filter = raw[y * (rowBytes + 1)];
+            int src = y * (rowBytes + 1) + 1;
+            int dst = y * rowBytes;
+            for (int i = 0; i < rowBytes; i++) {
+                int a = i >= bpp ? out[dst + i - bpp] & 0xFF : 0;
+                int b = y > 0 ? out[dst - rowBytes + i] & 0xFF : 0;
+                int c = i >= bpp && y > 0 ? out[dst - rowBytes + i - bpp] & 0xFF : 0;
+                int value = raw[src + i] & 0xFF;
+                out[dst + i] = (byte) switch (filter) {
+                    case 0 -> value;
+                    case 1 -> value + a;
+                    case 2 -> value + b;
+                    case 3 -> value + ((a + b) >> 1);
+                    case 4 -> value + paeth(a, b, c);
+                    default -> throw new IllegalArgumentException("Unknown filter type " + filter);
+                };
+            }
+        }
+        return out;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a), pb = Math.abs(p - b), pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc) return a;
+        return pb <= pc ? b : c;
+    }
+
+    // ---- encoding ----
+
+    private static List<Encoded> encodeCandidates(Image image) {
+        int[] argb = image.argb();
+        boolean opaque = true, gray = true;
+        Map<Integer, Integer> colors = new HashMap<>();
+        for (int color : argb) {
+            int alpha = color >>> 24, r = color >> 16 & 0xFF, g = color >> 8 & 0xFF, b = color & 0xFF;
+            if (alpha != 255) opaque = false;
+            if (r != g || g != b) gray = false;
+            if (colors.size() <= 256) colors.putIfAbsent(color, colors.size());
+        }
+
+        List<Encoded> candidates = new ArrayList<>();
+        if (colors.size() <= 256) {
+            candidates.add(encodePalette(image, colors));
+        }
+        if (gray && opaque) {
+            candidates.add(encodeGray(image));
+        } else if (gray) {
+            candidates.add(encodeTrueColor(image, 4, 2));
+        }
+        if (!gray) {
+            candidates.add(opaque ? encodeTrueColor(image, 2, 3) : encodeTrueColor(image, 6, 4));
+        }
+        return candidates;
+    }
+
+    private static Encoded encodePalette(Image image, Map<Integer, Integer> colors) {
+        // Translucent entries first so tRNS can stop after the last one.
+        List<Integer> entries = new ArrayList<>(colors.keySet());
+        entries.sort((x, y) -> {
+            boolean xOpaque = x >>> 24 == 255, yOpaque = y >>> 24 == 255;
+            return xOpaque != yOpaque ? Boolean.compare(xOpaque, yOpaque) : Integer.compareUnsigned(x, y);
+        });
+        Map<Integer, Integer> index = new HashMap<>();
+        byte[] palette = new byte[entries.size() * 3];
+        int translucent = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            int color = entries.get(i);
+            index.put(color, i);
+            palette[i * 3] = (byte) (color >> 16);
+            palette[i * 3 + 1] = (byte) (color >> 8);
+            palette[i * 3 + 2] = (byte) color;
+            if (color >>> 24 != 255) translucent = i + 1;
+        }
+        byte[] transparency = null;
+        if (translucent > 0) {
+            transparency = new byte[translucent];
+            for (int i = 0; i < translucent; i++) transparency[i] = (byte) (entries.get(i) >>> 24);
+        }
+
+        int bitDepth = entries.size() <= 2 ? 1 : entries.size() <= 4 ? 2 : entries.size() <= 16 ? 4 : 8;
+        int[] values = new int[image.argb().length];
+        for (int i = 0; i < values.length; i++) values[i] = index.get(image.argb()[i]);
+        byte[] raw = pack(values, image.width(), image.height(), bitDepth);
+        return new Encoded(3, bitDepth, palette, transparency, compress(raw, image.height(), 1));
+    }
+
+    private static Encoded encodeGray(Image image) {
+        int[] values = new int[image.argb().length];
+        int bitDepth = 1;
+        for (int depth : new int[]{1, 2, 4, 8}) {
+            int step = 255 / ((1 << depth) - 1);
+            boolean exact = true;
+            for (int color : image.argb()) {
+                if ((color & 0xFF) % step != 0) {
+                    exact = false;
+                    break;
+                }
+            }
+            if (exact) {
+                bitDepth = depth;
+                break;
+            }
+        }
+        int step = 255 / ((1 << bitDepth) - 1);
+        for (int i = 0; i < values.length; i++) values[i] = (image.argb()[i] & 0xFF) / step;
+        byte[] raw = pack(values, image.width(), image.height(), bitDepth);
+        return new Encoded(0, bitDepth, null, null, compress(raw, image.height(), 1));
+    }
+
+    private static Encoded encodeTrueColor(Image image, int colorType, int channels) {
+        int width = image.width();
+        int rowBytes = width * channels;
+        byte[] raw = new byte[rowBytes * image.height()];
+        int p = 0;
+        for (int color : image.argb()) {
+            switch (colorType) {
+                case 4 -> {
+                    raw[p++] = (byte) color;
+                    raw[p++] = (byte) (color >>> 24);
+                }
+                case 2 -> {
+                    raw[p++] = (byte) (color >> 16);
+                    raw[p++] = (byte) (color >> 8);
+                    raw[p++] = (byte) color;
+                }
+                default -> {
+                    raw[p++] = (byte) (color >> 16);
+                    raw[p++] = (byte) (color >> 8);
+                    raw[p++] = (byte) color;
+                    raw[p++] = (byte) (color >>> 24);
+                }
+            }
+        }
+        return new Encoded(colorType, 8, null, null, compress(raw, image.height(), channels));
+    }
+
+    /**
+     * Packs one sample per pixel into rows of the given bit depth.
+     */
+    private static byte[] pack(int[] values, int width, int height, int bitDepth) {
+        int rowBytes = (width * bitDepth + 7) / 8;
+        byte[] raw = new byte[rowBytes * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int bit = x * bitDepth;
+                raw[y * rowBytes + (bit >> 3)] |= (byte) (values[y * width + x] << (8 - bitDepth - (bit & 7)));
+            }
+        }
+        return raw;
+    }
+
+    /**
+     * Filters and deflates the rows both unfiltered and adaptively filtered, returning the smaller.
+     */
+    private static byte[] compress(byte[] raw, int height, int bpp) {
+        int rowBytes = raw.length / height;
+        byte[] plain = deflate(filter(raw, rowBytes, height, bpp, false));
+        byte[] adaptive = deflate(filter(raw, rowBytes, height, bpp, true));
+        return adaptive.length < plain.length ? adaptive : plain;
+    }
+
+    private static byte[] filter(byte[] raw, int rowBytes, int height, int bpp, boolean adaptive) {
+        byte[] out = new byte[(rowBytes + 1) * height];
+        byte[] candidate = new byte[rowBytes];
+        for (int y = 0; y < height; y++) {
+            int row = y * rowBytes;
+            int dst = y * (rowBytes + 1);
+            if (!adaptive) {
+                System.arraycopy(raw, row, out, dst + 1, rowBytes);
+                continue;
+            }
+
+            long bestSum = Long.MAX_VALUE;
+            for (int type = 0; type <= 4; type++) {
+                long sum = 0;
+                for (int i = 0; i < rowBytes; i++) {
+                    int a = i >= bpp ? raw[row + i - bpp] & 0xFF : 0;
+                    int b = y > 0 ? raw[row - rowBytes + i] & 0xFF : 0;
+                    int c = i >= bpp && y > 0 ? raw[row - rowBytes + i - bpp] & 0xFF : 0;
+                    int value = raw[row + i] & 0xFF;
+                    byte filtered = (byte) switch (type) {
+                        case 0 -> value;
+                        case 1 -> value - a;
+                        case 2 -> value - b;
+                        case 3 -> value - ((a + b) >> 1);
+                        default -> value - paeth(a, b, c);
+                    };
+                    candidate[i] = filtered;
+                    sum += Math.abs((int) filtered);
+                }
+                if (sum < bestSum) {
+                    bestSum = sum;
+                    out[dst] = (byte) type;
+                    System.arraycopy(candidate, 0, out, dst + 1, rowBytes);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 2));
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int written = deflater.deflate(buffer);
+                out.write(buffer, 0, written);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] write(Image image, Encoded encoded) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(encoded.fileSize());
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(SIGNATURE);
+
+            ByteBuffer header = ByteBuffer.allocate(13);
+            header.putInt(image.width()).putInt(image.height())
+                    .put((byte) encoded.bitDepth()).put((byte) encoded.colorType())
+                    .put((byte) 0).put((byte) 0).put((byte) 0);
+            writeChunk(out, "IHDR", header.array());
+            if (encoded.palette() != null) writeChunk(out, "PLTE", encoded.palette());
+            if (encoded.transparency() != null) writeChunk(out, "tRNS", encoded.transparency());
+            writeChunk(out, "IDAT", encoded.idat());
+            writeChunk(out, "IEND", new byte[0]);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In-memory stream
+        }
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private void storeOptimized(String hash, byte[] optimized) throws IOException {
+        Path stored = optimizedDir.resolve(hash + ".png");
+        if (Files.exists(stored)) return;
+        Files.createDirectories(optimizedDir);
+        Path temp = Files.createTempFile(optimizedDir, ".", ".part");
+        Files.write(temp, optimized);
+        Files.move(temp, stored, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Deletes stored results no original maps to anymore.
+     */
+    private void pruneOptimized() throws IOException {
+        if (!Files.isDirectory(optimizedDir)) return;
+        Set<String> keep = new HashSet<>(optimizedHashes.values());
+        try (DirectoryStream<Path> stored = Files.newDirectoryStream(optimizedDir)) {
+            for (Path file : stored) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(".png") || !keep.contains(name.substring(0, name.length() - 4))) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+
+    private void loadDone() {
+        if (Files.isRegularFile(doneFile)) {
+            try (Reader reader = Files.newBufferedReader(doneFile, StandardCharsets.UTF_8)) {
+                Set<String> stored = GSON.fromJson(reader, new TypeToken<Set<String>>() {}.getType());
+                if (stored != null) done.addAll(stored);
+            } catch (IOException | JsonParseException e) {
+                // Files get checked once more; nothing is lost.
+            }
+        }
+        if (Files.isRegularFile(optimizedFile)) {
+            try (Reader reader = Files.newBufferedReader(optimizedFile, StandardCharsets.UTF_8)) {
+                Map<String, String> stored = GSON.fromJson(reader, new TypeToken<Map<String, String>>() {}.getType());
+                if (stored != null) optimizedHashes.putAll(stored);
+            } catch (IOException | JsonParseException e) {
+                // Returning originals get recompressed once more.
+            }
+        }
+    }
+
+    private void saveDone() throws IOException {
+        Files.createDirectories(doneFile.getParent());
+        Path temp = doneFile.resolveSibling(doneFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(new TreeSet<>(done), writer);
+        }
+        Files.move(temp, doneFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        Path originalsTemp = optimizedFile.resolveSibling(optimizedFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(originalsTemp, StandardCharsets.UTF_8)) {
+            GSON.toJson(new TreeMap<>(optimizedHashes), writer);
+        }
+        Files.move(originalsTemp, optimizedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,90 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket per client: a web client's address, or a player sending plugin messages.
+ * <p>
+ * Each client may send {@code burst} requests at once and then {@code perMinute} requests per
+ * minute. A bucket is a single {@link AtomicLong} holding the time at which it will be full again
+ * (the "theoretical arrival time" form of a token bucket), so taking a token is one
+ * compare-and-set and no lock is held on the request path.
+ * </p>
+ * <p>
+ * The table holds at most {@code maxClients} buckets. Buckets that have refilled completely carry
+ * no information and are swept out when the table is full; if it is still full afterwards, new
+ * clients share one overflow bucket, so a flood from many addresses stays limited as well.
+ * </p>
+ */
+public final class RateLimiter<K> {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxClients;
+    private final ConcurrentHashMap<K, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private volatile long lastSweep;
+
+    /**
+     * @param perMinute  sustained requests per minute
+     * @param burst      requests allowed at once from a full bucket
+     * @param maxClients buckets kept before idle ones are swept
+     */
+    public RateLimiter(int perMinute, int burst, int maxClients) {
+        this.intervalNanos = 60_000_000_000L / Math.max(1, perMinute);
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.maxClients = Math.max(1, maxClients);
+        this.lastSweep = System.nanoTime() - intervalNanos;
+    }
+
+    /**
+     * Takes a token for the client.
+     *
+     * @return 0 if the request may proceed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(K client) {
+        long now = System.nanoTime();
+        AtomicLong bucket = bucket(client, now);
+        while (true) {
+            long full = bucket.get();
+            long next = Math.max(full, now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) return wait;
+            if (bucket.compareAndSet(full, next)) return 0;
+        }
+    }
+
+    public int clients() {
+        return buckets.size();
+    }
+
+    private AtomicLong bucket(K client, long now) {
+        AtomicLong bucket = buckets.get(client);
+        if (bucket != null) return bucket;
+
+        if (buckets.size() >= maxClients) {
+            sweep(now);
+            if (buckets.size() >= maxClients) return overflow;
+        }
+        AtomicLong created = new AtomicLong(now);
+        bucket = buckets.putIfAbsent(client, created);
+        return bucket != null ? bucket : created;
+    }
+
+    /**
+     * Removes buckets that are full again. One thread sweeps at a time, at most once per
+     * refill interval; the others go on with the overflow bucket.
+     */
+    private void sweep(long now) {
+        if (now - lastSweep < intervalNanos || !sweeping.compareAndSet(false, true)) return;
+        try {
+            buckets.values().removeIf(bucket -> bucket.get() - now <= 0);
+            lastSweep = now;
+        } finally {
+            sweeping.set(false);
+        }
+    }
+}
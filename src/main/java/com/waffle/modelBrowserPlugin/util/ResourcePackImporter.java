@@ -5,9 +5,16 @@ import org.bukkit.configuration.file.FileConfiguration;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Copies resource-pack files from a local "imports" folder into the plugin's resource pack,
@@ -18,9 +25,18 @@ import java.util.List;
  * - plugins/ModelBrowser/imports/assets/minecraft/textures/item/<id>.png
  *
  * You can also place items/ json directly; it will be copied as-is.
+ * Zip archives placed in imports/ are imported too (see {@link ZipPackImporter}).
+ *
+ * Copying is change-aware (see {@link PackCopyEngine}): files identical to what is already in
+ * the pack are skipped, and the result carries a manifest of added/changed/removed files.
+ * Imported PNGs are then recompressed by {@link PngOptimizer}, and models and textures that
+ * duplicate files already in the pack are merged by {@link AssetDeduplicator}.
  */
 public final class ResourcePackImporter {
 
+    /** Matches assets/<namespace>/models/item/<id>.json (no subfolders). */
+    private static final Pattern ITEM_MODEL = Pattern.compile("assets/([^/]+)/models/item/([^/]+)\\.json");
+
     private ResourcePackImporter() {}
 
     public record ImportResult(
@@ -28,8 +44,24 @@ public final class ResourcePackImporter {
             Path packRoot,
             int copiedFiles,
             int createdItemWrappers,
-            List<String> createdIds
-    ) {}
+            List<String> createdIds,
+            PackCopyEngine.Manifest manifest,
+            PngOptimizer.Report textures,
+            AssetDeduplicator.Report dedupe
+    ) {
+        /**
+         * Every pack-relative path this import wrote or deduplicated, including generated items/
+         * wrappers. Feed this to {@code ModelManager.applyDelta} to update the index without a rescan.
+         */
+        public List<String> changedPackPaths() {
+            List<String> paths = new ArrayList<>(manifest.touched());
+            for (String id : createdIds) {
+                paths.add(ModelDependencyResolver.itemPath(id));
+            }
+            paths.addAll(dedupe.changedPaths());
+            return paths;
+        }
+    }
 
     public static ImportResult importFromLocalFolder(ModelBrowserPlugin plugin) throws IOException {
         FileConfiguration config = plugin.getConfig();
@@ -41,7 +73,8 @@ public final class ResourcePackImporter {
         if (!Files.exists(importRoot)) {
             Files.createDirectories(importRoot);
             // Nothing to import yet.
-            return new ImportResult(importRoot, packRoot, 0, 0, List.of());
+            return new ImportResult(importRoot, packRoot, 0, 0, List.of(), PackCopyEngine.Manifest.empty(),
+                    PngOptimizer.Report.empty(), AssetDeduplicator.Report.empty());
         }
 
         // Ensure common pack directories exist.
@@ -49,88 +82,95 @@ public final class ResourcePackImporter {
         Files.createDirectories(packRoot.resolve(Paths.get("assets", "minecraft", "models", "item")));
         Files.createDirectories(packRoot.resolve(Paths.get("assets", "minecraft", "textures", "item")));
 
-        int copied = 0;
-
-        // Copy the entire assets/ tree if present, preserving structure.
-        Path importAssets = importRoot.resolve("assets");
-        if (Files.exists(importAssets)) {
-            copied += copyRecursive(importAssets, packRoot.resolve("assets"));
+        // Copy the entire assets/ tree if present, preserving structure, and also support
+        // dropping files directly into imports/ (rare but convenient). Both keep their
+        // relative path, so one change-aware sync covers them; unchanged files are skipped.
+        PackCopyEngine.Options options = new PackCopyEngine.Options(
+                config.getBoolean("imports.compare-hashes", true),
+                config.getInt("imports.copy-threads", 0));
+        Path stateFile = plugin.getDataFolder().toPath().resolve(Paths.get("cache", "import-state.json"));
+
+        // Sources that were deduplicated or rewritten after an earlier import are not copied back.
+        SettledImports settled = plugin.getSettledImports();
+        PackCopyEngine.Manifest synced = PackCopyEngine.sync(importRoot, packRoot, stateFile, options,
+                (relative, attrs) -> (relative.startsWith("assets/") || isLooseFile(relative))
+                        && !settled.isSettled(relative, attrs));
+        List<String> removed = new ArrayList<>(synced.removed());
+        removed.removeIf(settled::isTracked);
+        PackCopyEngine.Manifest manifest = new PackCopyEngine.Manifest(synced.added(), synced.changed(),
+                List.copyOf(removed), synced.unchanged(), synced.bytesCopied(), synced.failed());
+
+        // Zip archives dropped into imports/ are streamed straight into the pack.
+        ZipPackImporter.Limits limits = new ZipPackImporter.Limits(
+                config.getInt("imports.zip.max-entries", ZipPackImporter.Limits.defaults().maxEntries()),
+                config.getLong("imports.zip.max-total-mb", ZipPackImporter.Limits.defaults().maxTotalBytes() >> 20) << 20);
+        try (DirectoryStream<Path> archives = Files.newDirectoryStream(importRoot, "*.zip")) {
+            for (Path archive : archives) {
+                try {
+                    manifest = manifest.merge(ZipPackImporter.extract(archive, packRoot, settled, limits, options.threads()));
+                } catch (IOException e) {
+                    String name = archive.getFileName().toString();
+                    manifest = manifest.merge(new PackCopyEngine.Manifest(List.of(), List.of(), List.of(), 0, 0L,
+                            Map.of(name, String.valueOf(e.getMessage()))));
+                }
+            }
         }
 
-        // Also support dropping files directly into imports/ (rare but convenient).
-        copied += copyLooseFiles(importRoot, packRoot);
-
-        // Auto-create items wrappers for imported model jsons
-        Path packModelsItem = packRoot.resolve(Paths.get("assets", "minecraft", "models", "item"));
-        Path packItems = packRoot.resolve(Paths.get("assets", "minecraft", "items"));
+        if (!manifest.failed().isEmpty()) {
+            plugin.getLogger().warning("Failed to import " + manifest.failed().size() + " file(s):");
+            manifest.failed().forEach((path, error) -> plugin.getLogger().warning("- " + path + ": " + error));
+        }
 
+        // Auto-create items wrappers for the model jsons this import added or changed
         int createdWrappers = 0;
         List<String> createdIds = new ArrayList<>();
 
-        if (Files.exists(packModelsItem)) {
-            try (DirectoryStream<Path> stream = Files.newDirectoryStream(packModelsItem, "*.json")) {
-                for (Path modelJson : stream) {
-                    String fileName = modelJson.getFileName().toString();
-                    String id = fileName.substring(0, fileName.length() - 5); // strip .json
-
-                    // Skip blocking variants; those are referenced by the base item.
-                    if (id.endsWith("_blocking")) continue;
-
-                    Path itemJson = packItems.resolve(id + ".json");
-                    if (Files.exists(itemJson)) continue;
-
-                    String wrapper = """
-                            {
-                              "model": {
-                                "type": "minecraft:model",
-                                "model": "minecraft:item/%s"
-                              }
-                            }
-                            """.formatted(id);
-
-                    Files.writeString(itemJson, wrapper, StandardCharsets.UTF_8,
-                            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-                    createdWrappers++;
-                    createdIds.add("minecraft:" + id);
-                }
-            }
+        for (String touched : manifest.touched()) {
+            Matcher matcher = ITEM_MODEL.matcher(touched);
+            if (!matcher.matches()) continue;
+
+            String namespace = matcher.group(1);
+            String id = matcher.group(2);
+
+            // Skip blocking variants; those are referenced by the base item.
+            if (id.endsWith("_blocking")) continue;
+
+            Path itemJson = packRoot.resolve(Paths.get("assets", namespace, "items", id + ".json"));
+            if (Files.exists(itemJson)) continue;
+
+            String wrapper = """
+                    {
+                      "model": {
+                        "type": "minecraft:model",
+                        "model": "%s:item/%s"
+                      }
+                    }
+                    """.formatted(namespace, id);
+
+            Files.createDirectories(itemJson.getParent());
+            Files.writeString(itemJson, wrapper, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            createdWrappers++;
+            createdIds.add(namespace + ":" + id);
         }
 
-        return new ImportResult(importRoot, packRoot, copied, createdWrappers, createdIds);
-    }
+        // Optimize before deduplicating so identical images compare equal after recompression.
+        PngOptimizer.Report textures = config.getBoolean("optimize.png-on-import", true)
+                ? plugin.getPngOptimizer().optimize(manifest.touched(), config.getInt("optimize.threads", 0), true)
+                : PngOptimizer.Report.empty();
 
-    private static int copyLooseFiles(Path importRoot, Path packRoot) throws IOException {
-        int copied = 0;
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(importRoot)) {
-            for (Path child : stream) {
-                if (Files.isDirectory(child)) continue;
-                // Don't overwrite pack.mcmeta by accident unless user explicitly supplies assets tree.
-                Path target = packRoot.resolve(child.getFileName().toString());
-                Files.copy(child, target, StandardCopyOption.REPLACE_EXISTING);
-                copied++;
-            }
-        }
-        return copied;
+        AssetDeduplicator.Report dedupe = config.getBoolean("imports.dedupe", true)
+                ? plugin.getAssetDeduplicator().deduplicate(manifest.touched(), true)
+                : AssetDeduplicator.Report.empty();
+
+        return new ImportResult(importRoot, packRoot, manifest.copiedFiles(), createdWrappers, createdIds, manifest,
+                textures, dedupe);
     }
 
-    private static int copyRecursive(Path sourceRoot, Path targetRoot) throws IOException {
-        final int[] copied = {0};
-        Files.walk(sourceRoot).forEach(source -> {
-            try {
-                Path rel = sourceRoot.relativize(source);
-                Path target = targetRoot.resolve(rel);
-                if (Files.isDirectory(source)) {
-                    Files.createDirectories(target);
-                } else {
-                    Files.createDirectories(target.getParent());
-                    Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
-                    copied[0]++;
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        });
-        return copied[0];
+    /**
+     * Top-level files in imports/, excluding hidden/temp files.
+     */
+    private static boolean isLooseFile(String relative) {
+        return relative.indexOf('/') < 0 && !relative.startsWith(".") && !relative.endsWith(".zip");
     }
 }
-
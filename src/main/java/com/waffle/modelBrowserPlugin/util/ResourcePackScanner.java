@@ -44,6 +44,37 @@ public class ResourcePackScanner {
         return modelIds;
     }
 
+    /**
+     * Scan items/ folders of EVERY namespace (assets/<ns>/items/*.json), silently.
+     * Returns namespaced ids like "minecraft:coin" or "waffle:coin".
+     */
+    public static List<String> scanAllNamespaces(Path resourcePackPath) throws IOException {
+        List<String> modelIds = new ArrayList<>();
+        Path assetsDir = resourcePackPath.resolve("assets");
+
+        if (!Files.isDirectory(assetsDir)) {
+            return modelIds;
+        }
+
+        try (DirectoryStream<Path> namespaces = Files.newDirectoryStream(assetsDir, Files::isDirectory)) {
+            for (Path namespaceDir : namespaces) {
+                Path itemsDir = namespaceDir.resolve("items");
+                if (!Files.isDirectory(itemsDir)) continue;
+
+                String namespace = namespaceDir.getFileName().toString();
+                try (DirectoryStream<Path> stream = Files.newDirectoryStream(itemsDir, "*.json")) {
+                    for (Path file : stream) {
+                        String fileName = file.getFileName().toString();
+                        if (fileName.startsWith(".")) continue; // staging/temp files of in-flight writes
+                        modelIds.add(namespace + ":" + fileName.substring(0, fileName.length() - 5));
+                    }
+                }
+            }
+        }
+
+        return modelIds;
+    }
+
     /**
      * NUCLEAR OPTION: Manual file listing - no walk, no recursion
      */
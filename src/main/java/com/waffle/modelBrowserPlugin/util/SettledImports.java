@@ -0,0 +1,149 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers imports/ source files whose copy in the pack was deliberately changed afterwards
+ * (deduplicated, rewritten, optimized).
+ * <p>
+ * Without this the next local import would see the pack file differ from its source and copy
+ * the original back. The source's size and mtime are stamped when the pack copy is changed;
+ * while the source still matches the stamp, {@link ResourcePackImporter} leaves it alone.
+ * Editing the source in imports/ breaks the stamp, so it is imported (and processed) again.
+ * </p>
+ * <p>
+ * Files that came from a zip in imports/ are stamped the same way, with the archive name and the
+ * entry's size and CRC; {@link ZipPackImporter} reports each entry it writes through
+ * {@link #extracted}.
+ * </p>
+ */
+public final class SettledImports {
+
+    private static final Gson GSON = new Gson();
+
+    private record Stamp(long size, long modified) {}
+
+    private record EntryStamp(String archive, long size, long crc) {}
+
+    private record State(Map<String, Stamp> files, Map<String, EntryStamp> entries) {}
+
+    private final Path importRoot;
+    private final Path stateFile;
+    private final Map<String, Stamp> stamps = new ConcurrentHashMap<>();
+    private final Map<String, EntryStamp> entryStamps = new ConcurrentHashMap<>();
+    /** Zip entries written since startup, by pack path; stamped once their pack copy changes. */
+    private final Map<String, EntryStamp> extracted = new ConcurrentHashMap<>();
+
+    public SettledImports(Path importRoot, Path stateFile) {
+        this.importRoot = importRoot;
+        this.stateFile = stateFile;
+        load();
+    }
+
+    /**
+     * Stamps the imports/ sources of the given pack paths and saves the state.
+     * Paths without a source in imports/ or a zip in it (web imports) are ignored.
+     */
+    public void remember(Collection<String> packPaths) throws IOException {
+        if (packPaths.isEmpty()) return;
+        for (String path : packPaths) {
+            EntryStamp entry = extracted.get(path);
+            if (entry != null) {
+                entryStamps.put(path, entry);
+                continue;
+            }
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(importRoot.resolve(path), BasicFileAttributes.class);
+                if (attrs.isRegularFile()) {
+                    stamps.put(path, new Stamp(attrs.size(), attrs.lastModifiedTime().toMillis()));
+                }
+            } catch (IOException e) {
+                stamps.remove(path);
+            }
+        }
+        save();
+    }
+
+    /**
+     * Whether an imports/ source file was already imported and changed in the pack,
+     * and has not been edited since.
+     */
+    public boolean isSettled(String relativePath, BasicFileAttributes sourceAttrs) {
+        Stamp stamp = stamps.get(relativePath);
+        return stamp != null && stamp.size() == sourceAttrs.size()
+                && stamp.modified() == sourceAttrs.lastModifiedTime().toMillis();
+    }
+
+    /**
+     * Records that a zip entry was written to the given pack path, so it can be stamped if the
+     * pack copy is changed afterwards.
+     */
+    public void extracted(String packPath, String archive, long size, long crc) {
+        entryStamps.remove(packPath);
+        if (size >= 0 && crc >= 0) {
+            extracted.put(packPath, new EntryStamp(archive, size, crc));
+        } else {
+            extracted.remove(packPath);
+        }
+    }
+
+    /**
+     * Whether a zip entry was already imported to the given pack path and changed in the pack,
+     * and the archive still has the same entry.
+     */
+    public boolean isSettled(String packPath, String archive, long size, long crc) {
+        EntryStamp stamp = entryStamps.get(packPath);
+        return stamp != null && stamp.archive().equals(archive) && stamp.size() == size && stamp.crc() == crc;
+    }
+
+    /**
+     * Whether an imports/ path has a stamp, regardless of its attributes.
+     */
+    public boolean isTracked(String relativePath) {
+        return stamps.containsKey(relativePath);
+    }
+
+    private void load() {
+        if (!Files.isRegularFile(stateFile)) return;
+        try (Reader reader = Files.newBufferedReader(stateFile, StandardCharsets.UTF_8)) {
+            JsonElement tree = JsonParser.parseReader(reader);
+            if (tree.isJsonObject() && (tree.getAsJsonObject().has("files") || tree.getAsJsonObject().has("entries"))) {
+                State state = GSON.fromJson(tree, State.class);
+                if (state.files() != null) stamps.putAll(state.files());
+                if (state.entries() != null) entryStamps.putAll(state.entries());
+            } else {
+                // Older state files held only the imports/ stamps
+                Map<String, Stamp> files = GSON.fromJson(tree, new TypeToken<Map<String, Stamp>>() {}.getType());
+                if (files != null) stamps.putAll(files);
+            }
+        } catch (IOException | JsonParseException | IllegalStateException e) {
+            // Worst case a few files are imported and processed again.
+        }
+    }
+
+    private synchronized void save() throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        Path temp = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            GSON.toJson(new State(new TreeMap<>(stamps), new TreeMap<>(entryStamps)), writer);
+        }
+        Files.move(temp, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,121 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A group of pack files that are written next to their targets first and published together.
+ * <p>
+ * Every file is staged as a hidden {@code .<name>.staged-<n>.part} in its target's folder, so
+ * nothing a scan or reload can see changes until {@link #publish()}. Publishing flushes the
+ * staged data (through the shared {@link GroupCommit}, if any), renames each file over its
+ * target in the order it was added, and then flushes the folders so the renames survive a
+ * crash. Callers add files in dependency order (texture, model, item wrapper), so once the
+ * item is visible everything it points at is already complete.
+ * </p>
+ * <p>
+ * Closing the set removes staged files that were never published.
+ * </p>
+ */
+final class StagedWriteSet implements AutoCloseable {
+
+    private static final String STAGING_MARKER = ".staged-";
+
+    private record Staged(Path staging, Path target) {}
+
+    private final GroupCommit commit;
+    private final List<Staged> staged = new ArrayList<>();
+
+    /**
+     * @param commit shared flusher, or {@code null} to skip fsync (renames stay atomic)
+     */
+    StagedWriteSet(GroupCommit commit) {
+        this.commit = commit;
+    }
+
+    /**
+     * Stages text content for {@code target}.
+     */
+    void write(Path target, String content) throws IOException {
+        Path staging = newStagingFile(target);
+        staged.add(new Staged(staging, target));
+        Files.writeString(staging, content, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stages an already written file (e.g. an upload in a temp folder) for {@code target}.
+     */
+    void adopt(Path file, Path target) throws IOException {
+        Path staging = newStagingFile(target);
+        staged.add(new Staged(staging, target));
+        try {
+            Files.move(file, staging, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(file, staging, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Makes every staged file durable and moves it into place.
+     */
+    void publish() throws IOException {
+        if (commit != null) {
+            commit.sync(staged.stream().map(Staged::staging).toList());
+        }
+
+        Set<Path> folders = new LinkedHashSet<>();
+        for (Staged file : staged) {
+            Files.move(file.staging(), file.target(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            folders.add(file.target().getParent());
+        }
+        staged.clear();
+
+        if (commit != null) {
+            commit.sync(folders);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Staged file : staged) {
+            Files.deleteIfExists(file.staging());
+        }
+        staged.clear();
+    }
+
+    /**
+     * Whether a file name belongs to a staged (not yet published) file.
+     */
+    static boolean isStagingFile(String fileName) {
+        return fileName.startsWith(".") && fileName.contains(STAGING_MARKER) && fileName.endsWith(".part");
+    }
+
+    private static Path newStagingFile(Path target) throws IOException {
+        return createUniqueFile(target.getParent(), "." + target.getFileName() + STAGING_MARKER, ".part");
+    }
+
+    /**
+     * Creates an empty file with a random name. Unlike {@link Files#createTempFile}, the file gets
+     * the default permissions, which it keeps once it is moved into the pack.
+     */
+    static Path createUniqueFile(Path dir, String prefix, String suffix) throws IOException {
+        while (true) {
+            Path file = dir.resolve(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong(), 36) + suffix);
+            try {
+                return Files.createFile(file);
+            } catch (FileAlreadyExistsException e) {
+                // Try another name
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Limits how many requests of one endpoint run at once and records their timing.
+ * <p>
+ * Up to {@code maxConcurrent} requests run; up to {@code maxQueued} more wait for a slot for at
+ * most the queue timeout. Anything beyond that is answered right away with {@code 503} and
+ * {@code Retry-After}, so a burst of uploads cannot pile up unbounded work. Each request's time
+ * is split into queueing (from the server accepting it to getting a slot) and work (running the
+ * wrapped handler).
+ * </p>
+ * <p>
+ * With a {@link RateLimiter}, each client address is also held to its own request rate. That
+ * check comes first and costs no slot, so a single flooding client is answered with cheap
+ * {@code 429}s and cannot take the slots of everyone else.
+ * </p>
+ */
+public final class ThrottledHandler implements HttpHandler {
+
+    /** When the server handed the current exchange to the executor, see {@link #timed(Runnable)}. */
+    private static final ThreadLocal<Long> ACCEPTED_AT = new ThreadLocal<>();
+    private static final int RETRY_AFTER_SECONDS = 1;
+
+    /**
+     * Counters for one endpoint. Times are in nanoseconds.
+     */
+    public record Stats(long requests, long rejected, long limited, int running, int queued,
+                        long queueNanosTotal, long queueNanosMax, long workNanosTotal, long workNanosMax) {
+        public long averageQueueNanos() {
+            long done = requests - rejected - limited;
+            return done > 0 ? queueNanosTotal / done : 0;
+        }
+
+        public long averageWorkNanos() {
+            long done = requests - rejected - limited;
+            return done > 0 ? workNanosTotal / done : 0;
+        }
+    }
+
+    private final String name;
+    private final HttpHandler delegate;
+    private final Semaphore slots;
+    private final int maxQueued;
+    private final long queueTimeoutMillis;
+    private final RateLimiter<InetAddress> limiter;
+    private final Logger logger;
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+    private final LongAdder queueNanos = new LongAdder();
+    private final LongAdder workNanos = new LongAdder();
+    private final AtomicLong queueNanosMax = new AtomicLong();
+    private final AtomicLong workNanosMax = new AtomicLong();
+
+    /**
+     * @param limiter per-client rate limit, or {@code null} for none
+     */
+    ThrottledHandler(String name, HttpHandler delegate, int maxConcurrent, int maxQueued,
+                     long queueTimeoutMillis, RateLimiter<InetAddress> limiter, Logger logger) {
+        this.name = name;
+        this.delegate = delegate;
+        this.slots = new Semaphore(Math.max(1, maxConcurrent));
+        this.maxQueued = Math.max(0, maxQueued);
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.limiter = limiter;
+        this.logger = logger;
+    }
+
+    /**
+     * Wraps an executor task so handlers running inside it know when the request was accepted.
+     */
+    static Runnable timed(Runnable task) {
+        long acceptedAt = System.nanoTime();
+        return () -> {
+            ACCEPTED_AT.set(acceptedAt);
+            try {
+                task.run();
+            } finally {
+                ACCEPTED_AT.remove();
+            }
+        };
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        Long accepted = ACCEPTED_AT.get();
+        long acceptedAt = accepted != null ? accepted : System.nanoTime();
+        requests.increment();
+
+        if (limiter != null) {
+            long wait = limiter.tryAcquire(exchange.getRemoteAddress().getAddress());
+            if (wait > 0) {
+                limited.increment();
+                reject(exchange, 429, "Too many requests", (int) Math.max(1, (wait + 999_999_999L) / 1_000_000_000L));
+                return;
+            }
+        }
+        if (!acquire()) {
+            rejected.increment();
+            reject(exchange, 503, "Server busy, retry later", RETRY_AFTER_SECONDS);
+            return;
+        }
+
+        long started = System.nanoTime();
+        running.incrementAndGet();
+        try {
+            delegate.handle(exchange);
+        } finally {
+            running.decrementAndGet();
+            slots.release();
+            long finished = System.nanoTime();
+            record(started - acceptedAt, finished - started);
+            logger.fine(() -> name + " " + exchange.getRequestMethod() + " " + exchange.getResponseCode()
+                    + " queued " + (started - acceptedAt) / 1_000_000 + " ms, work " + (finished - started) / 1_000_000 + " ms");
+        }
+    }
+
+    private boolean acquire() {
+        if (slots.tryAcquire()) return true;
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return slots.tryAcquire(queueTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    private void record(long queueTime, long workTime) {
+        queueNanos.add(queueTime);
+        workNanos.add(workTime);
+        queueNanosMax.accumulateAndGet(queueTime, Math::max);
+        workNanosMax.accumulateAndGet(workTime, Math::max);
+    }
+
+    private static void reject(HttpExchange exchange, int status, String message, int retryAfterSeconds) throws IOException {
+        // The request body is not read; closing the exchange drops an upload we refuse.
+        try (exchange) {
+            exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            exchange.getResponseHeaders().add("Retry-After", Integer.toString(retryAfterSeconds));
+            byte[] body = message.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of this endpoint's counters.
+     */
+    public Stats stats() {
+        return new Stats(requests.sum(), rejected.sum(), limited.sum(), running.get(), queued.get(),
+                queueNanos.sum(), queueNanosMax.get(), workNanos.sum(), workNanosMax.get());
+    }
+}
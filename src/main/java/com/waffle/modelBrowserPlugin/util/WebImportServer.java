@@ -1,7 +1,7 @@
 package com.waffle.modelBrowserPlugin.util;
 
 import com.waffle.modelBrowserPlugin.ModelBrowserPlugin;
-import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
@@ -12,12 +12,29 @@ import org.bukkit.configuration.file.FileConfiguration;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Base64;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
 
 /**
  * Very small HTTP server that accepts model imports from the web UI.
@@ -30,18 +47,47 @@ import java.util.Base64;
  *   "texturePngBase64": "iVBORw0KGgoAAA..."   // raw base64, no data: prefix
  * }
  *
+ * Endpoint: POST /model-import/batch
+ * Payload (NDJSON): one object like the above per line. Answers with a result per line;
+ * all models are indexed together at the end.
+ *
  * Files are written into the plugin's resource pack folder:
  * - assets/minecraft/models/item/<id>.json
  * - assets/minecraft/textures/item/<id>.png
  * - assets/minecraft/items/<id>.json (wrapper, if missing)
  *
  * CORS is enabled so you can host the web UI separately (e.g. GitHub Pages).
+ *
+ * When pack-hosting is enabled the built pack zip is also served (GET/HEAD, default
+ * /pack.zip), see {@link PackDownloadHandler}.
+ *
+ * Endpoints: GET /api/models, /api/search, /api/models/<id>, /api/categories
+ * Read-only JSON catalog of the model index, cached per index generation and tagged with
+ * it as ETag (304 on If-None-Match), gzip on request; see {@link CatalogHandler}.
+ *
+ * Endpoint: GET /api/events
+ * Server-Sent Events with the added/removed/changed ids of every new index generation;
+ * slow clients get a resync event instead of unbounded buffering, see {@link CatalogEventStream}.
+ *
+ * Request bodies are parsed as a stream; the texture is decoded straight into a temp file
+ * ({@link ImportRequestReader}), with size limits from web-import.max-*.
+ *
+ * Every exchange runs on its own virtual thread. Each endpoint has its own concurrency
+ * limit and bounded wait queue ({@link ThrottledHandler}); overflow gets 503 + Retry-After.
+ * Before that, each client address is held to a per-endpoint request rate ({@link RateLimiter},
+ * rate-limit.*); clients over it get 429 + Retry-After.
  */
 public class WebImportServer {
 
+    /** Model ids become file names under the item folders, so path characters are not allowed. */
+    private static final Pattern MODEL_ID = Pattern.compile("[a-z0-9_.-]+");
+
     private final ModelBrowserPlugin plugin;
-    private final Gson gson = new Gson();
     private HttpServer server;
+    private ExecutorService executor;
+    private GroupCommit groupCommit;
+    private CatalogEventStream eventStream;
+    private final Map<String, ThrottledHandler> endpoints = Collections.synchronizedMap(new LinkedHashMap<>());
 
     public WebImportServer(ModelBrowserPlugin plugin) {
         this.plugin = plugin;
@@ -51,102 +97,290 @@ public class WebImportServer {
         try {
             FileConfiguration cfg = plugin.getPluginConfig();
             int port = cfg.getInt("web-import.port", 8123);
+            long queueTimeout = Math.max(0, cfg.getLong("web-import.queue-timeout-seconds", 10)) * 1000L;
 
+            deleteStaleUploads();
+            if (cfg.getBoolean("web-import.fsync", true)) {
+                groupCommit = new GroupCommit("ModelBrowser-fsync");
+            }
             server = HttpServer.create(new InetSocketAddress("0.0.0.0", port), 0);
-            server.createContext("/model-import", new ImportHandler());
-            server.setExecutor(null); // default executor
+            register("/model-import", new ImportHandler(),
+                    cfg.getInt("web-import.max-concurrent", 4), cfg.getInt("web-import.max-queued", 16), queueTimeout,
+                    rateLimiter(cfg, "import", 60, 20));
+            register("/model-import/batch", new BatchImportHandler(),
+                    cfg.getInt("web-import.max-concurrent-batches", 1), cfg.getInt("web-import.max-queued-batches", 2), queueTimeout,
+                    rateLimiter(cfg, "batch", 6, 2));
+            if (cfg.getBoolean("pack-hosting.enabled", true)) {
+                // Downloads are long and cheap to retry: no queue, extra clients come back later
+                register(cfg.getString("pack-hosting.path", "/pack.zip"),
+                        new PackDownloadHandler(() -> PackZipBuilder.zipPath(plugin)),
+                        cfg.getInt("pack-hosting.max-concurrent-downloads", 32), 0, 0,
+                        rateLimiter(cfg, "download", 30, 10));
+            }
+            if (cfg.getBoolean("catalog-api.enabled", true)) {
+                register("/api", new CatalogHandler(() -> plugin.getModelManager().getIndex()),
+                        cfg.getInt("catalog-api.max-concurrent", 16), cfg.getInt("catalog-api.max-queued", 64), queueTimeout,
+                        rateLimiter(cfg, "catalog", 600, 100));
+                // Streams stay open; each one holds a slot, so the limit is the connection cap
+                eventStream = new CatalogEventStream(() -> plugin.getModelManager().getIndex(),
+                        cfg.getInt("catalog-api.event-buffer", 64));
+                plugin.getModelManager().addIndexListener(eventStream);
+                register("/api/events", eventStream, cfg.getInt("catalog-api.max-event-streams", 64), 0, 0,
+                        rateLimiter(cfg, "events", 30, 10));
+            }
+
+            // One virtual thread per exchange; the per-endpoint limits above bound the real work
+            executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ModelBrowser-web-", 1).factory());
+            ExecutorService tasks = executor;
+            server.setExecutor(task -> tasks.execute(ThrottledHandler.timed(task)));
             server.start();
 
-            plugin.getLogger().info("WebImportServer listening on port " + port + " at /model-import");
+            plugin.getLogger().info("WebImportServer listening on port " + port + " at " + String.join(", ", endpoints.keySet()));
         } catch (IOException e) {
             plugin.getLogger().severe("Failed to start WebImportServer: " + e.getMessage());
         }
     }
 
+    /**
+     * Removes upload and staging temp files left behind by a crash mid-import.
+     */
+    private void deleteStaleUploads() {
+        Path uploads = plugin.getDataFolder().toPath().resolve("cache").resolve("uploads");
+        Path packRoot = packRoot();
+        List<Path> folders = List.of(uploads,
+                packRoot.resolve(Paths.get("assets", "minecraft", "models", "item")),
+                packRoot.resolve(Paths.get("assets", "minecraft", "textures", "item")),
+                packRoot.resolve(Paths.get("assets", "minecraft", "items")));
+
+        for (Path folder : folders) {
+            if (!Files.isDirectory(folder)) continue;
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(folder, ".*.part")) {
+                for (Path file : stale) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(".upload-") || StagedWriteSet.isStagingFile(name)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not clean up old uploads: " + e.getMessage());
+            }
+        }
+    }
+
+    private void register(String path, HttpHandler handler, int maxConcurrent, int maxQueued, long queueTimeoutMillis,
+                          RateLimiter<InetAddress> limiter) {
+        ThrottledHandler throttled = new ThrottledHandler(path, handler, maxConcurrent, maxQueued,
+                queueTimeoutMillis, limiter, plugin.getLogger());
+        server.createContext(path, throttled);
+        endpoints.put(path, throttled);
+    }
+
+    /**
+     * Per-client limit for one endpoint from {@code rate-limit.<name>}, or {@code null} when disabled.
+     */
+    private static RateLimiter<InetAddress> rateLimiter(FileConfiguration cfg, String name, int perMinute, int burst) {
+        if (!cfg.getBoolean("rate-limit.enabled", true)) return null;
+        int rate = cfg.getInt("rate-limit." + name + ".per-minute", perMinute);
+        if (rate <= 0) return null;
+        return new RateLimiter<>(rate, cfg.getInt("rate-limit." + name + ".burst", burst),
+                cfg.getInt("rate-limit.max-clients", 10000));
+    }
+
     public void stop() {
         if (server != null) {
+            if (eventStream != null) {
+                plugin.getModelManager().removeIndexListener(eventStream);
+                eventStream.close();
+                eventStream = null;
+            }
             server.stop(0);
             server = null;
+            executor.shutdownNow();
+            executor = null;
+            endpoints.clear();
+            if (groupCommit != null) {
+                groupCommit.close();
+                groupCommit = null;
+            }
             plugin.getLogger().info("WebImportServer stopped.");
         }
     }
 
-    private class ImportHandler implements HttpHandler {
-        @Override
-        public void handle(HttpExchange exchange) throws IOException {
-            // Basic CORS handling
-            Headers headers = exchange.getResponseHeaders();
-            headers.add("Access-Control-Allow-Origin", "*");
-            headers.add("Access-Control-Allow-Methods", "OPTIONS, POST");
-            headers.add("Access-Control-Allow-Headers", "Content-Type");
-
-            if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
-                exchange.sendResponseHeaders(204, -1);
-                return;
-            }
+    /**
+     * Request counters and timing per endpoint path, empty while the server is stopped.
+     */
+    public Map<String, ThrottledHandler.Stats> getEndpointStats() {
+        Map<String, ThrottledHandler.Stats> stats = new LinkedHashMap<>();
+        endpoints.forEach((path, handler) -> stats.put(path, handler.stats()));
+        return stats;
+    }
+
+    private Path packRoot() {
+        String resourcePackPath = plugin.getPluginConfig().getString("resource-pack.path", "resourcepack");
+        return plugin.getDataFolder().toPath().resolve(resourcePackPath);
+    }
+
+    private Path uploadsDir() throws IOException {
+        return Files.createDirectories(plugin.getDataFolder().toPath().resolve("cache").resolve("uploads"));
+    }
+
+    private ImportRequestReader.Limits limits(long maxBodyMb) {
+        FileConfiguration cfg = plugin.getPluginConfig();
+        return new ImportRequestReader.Limits(
+                maxBodyMb * 1024 * 1024,
+                cfg.getLong("web-import.max-model-kb", 4096) * 1024,
+                cfg.getLong("web-import.max-texture-mb", 16) * 1024 * 1024);
+    }
+
+    private static void createModelFolders(Path packRoot) throws IOException {
+        Files.createDirectories(packRoot.resolve(Paths.get("assets", "minecraft", "models", "item")));
+        Files.createDirectories(packRoot.resolve(Paths.get("assets", "minecraft", "textures", "item")));
+        Files.createDirectories(packRoot.resolve(Paths.get("assets", "minecraft", "items")));
+    }
+
+    /**
+     * Checks an uploaded model before anything is written.
+     *
+     * @return why it is rejected, or {@code null} if it is fine
+     */
+    private static String validateModel(String id, String modelJson) {
+        if (id.isEmpty()) return "Empty id";
+        if (!MODEL_ID.matcher(id).matches() || id.equals(".") || id.equals("..")) {
+            return "Invalid id (allowed: a-z, 0-9, _ . -)";
+        }
+        ModelValidator.ValidationResult validation = ModelValidator.validate(modelJson);
+        if (!validation.isValid()) {
+            return "Invalid model: " + String.join("; ", validation.getErrors());
+        }
+        return null;
+    }
 
-            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
-                sendPlain(exchange, 405, "Method Not Allowed");
-                return;
+    /**
+     * Writes one uploaded model into the pack (folders must exist), crash-safe. The id must have
+     * passed {@link #validateModel}.
+     *
+     * @return pack-relative paths of the model, texture and item wrapper, in that order
+     */
+    private List<String> writeModel(Path packRoot, String id, String modelJson, Path texture) throws IOException {
+        Path modelDir = packRoot.resolve(Paths.get("assets", "minecraft", "models", "item")).normalize();
+        Path modelFile = modelDir.resolve(id + ".json").normalize();
+        if (!modelDir.equals(modelFile.getParent())) {
+            throw new IOException("Model id escapes the item folder: " + id);
+        }
+        Path textureFile = packRoot.resolve(Paths.get("assets", "minecraft", "textures", "item", id + ".png"));
+        Path itemFile = packRoot.resolve(Paths.get("assets", "minecraft", "items", id + ".json"));
+
+        // Staged and published in dependency order: the item only appears once its model and texture are complete
+        try (StagedWriteSet files = new StagedWriteSet(groupCommit)) {
+            files.adopt(texture, textureFile);
+            files.write(modelFile, modelJson);
+            if (!Files.exists(itemFile)) {
+                String wrapper = """
+                        {
+                          "model": {
+                            "type": "minecraft:model",
+                            "model": "minecraft:item/%s"
+                          }
+                        }
+                        """.formatted(id);
+                files.write(itemFile, wrapper);
             }
+            files.publish();
+        }
 
-            try (InputStream is = exchange.getRequestBody()) {
-                String body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                JsonObject json = gson.fromJson(body, JsonObject.class);
+        return List.of(
+                PackCopyEngine.relativePath(packRoot, modelFile),
+                PackCopyEngine.relativePath(packRoot, textureFile),
+                PackCopyEngine.relativePath(packRoot, itemFile));
+    }
 
-                if (json == null || !json.has("id") || !json.has("modelJson") || !json.has("texturePngBase64")) {
-                    sendPlain(exchange, 400, "Missing required fields");
-                    return;
-                }
+    /**
+     * Optimizes and deduplicates freshly written files, then indexes all of them as one delta.
+     */
+    private void finishImport(List<String> written, List<String> textures, int threads) throws IOException {
+        if (written.isEmpty()) return;
 
-                String id = json.get("id").getAsString().trim();
-                String modelJson = json.get("modelJson").getAsString();
-                String textureBase64 = json.get("texturePngBase64").getAsString();
+        // Shrink the textures and merge the upload into existing identical assets before indexing it
+        if (plugin.getConfig().getBoolean("optimize.png-on-import", true)) {
+            plugin.getPngOptimizer().optimize(textures, threads, true);
+        }
+        List<String> changed = new ArrayList<>(written);
+        if (plugin.getConfig().getBoolean("imports.dedupe", true)) {
+            changed.addAll(plugin.getAssetDeduplicator().deduplicate(written, true).changedPaths());
+        }
+
+        // Make the new models visible right away without a full rescan
+        plugin.getModelManager().applyDelta(changed);
+    }
+
+    /**
+     * Adds the CORS headers and answers preflight and non-POST requests.
+     *
+     * @return {@code true} if the request is a POST the caller should handle
+     */
+    private static boolean acceptPost(HttpExchange exchange) throws IOException {
+        // Basic CORS handling
+        Headers headers = exchange.getResponseHeaders();
+        headers.add("Access-Control-Allow-Origin", "*");
+        headers.add("Access-Control-Allow-Methods", "OPTIONS, POST");
+        headers.add("Access-Control-Allow-Headers", "Content-Type");
+
+        if ("OPTIONS".equalsIgnoreCase(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(204, -1);
+            return false;
+        }
+
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            sendPlain(exchange, 405, "Method Not Allowed");
+            return false;
+        }
+        return true;
+    }
+
+    private static void sendPlain(HttpExchange exchange, int code, String msg) throws IOException {
+        byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
 
-                if (id.isEmpty()) {
-                    sendPlain(exchange, 400, "Empty id");
+    private static void sendJson(HttpExchange exchange, int code, String json) throws IOException {
+        Headers headers = exchange.getResponseHeaders();
+        headers.add("Content-Type", "application/json");
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private class ImportHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!acceptPost(exchange)) return;
+
+            try (InputStream is = exchange.getRequestBody();
+                 ImportRequestReader.ImportRequest request = ImportRequestReader.read(is, uploadsDir(),
+                         limits(plugin.getPluginConfig().getLong("web-import.max-body-mb", 32)))) {
+                if (request.id() == null || request.modelJson() == null || request.texture() == null) {
+                    sendPlain(exchange, 400, "Missing required fields");
                     return;
                 }
 
-                byte[] textureBytes;
-                try {
-                    textureBytes = Base64.getDecoder().decode(textureBase64);
-                } catch (IllegalArgumentException e) {
-                    sendPlain(exchange, 400, "Invalid base64 for texture");
+                String id = request.id().trim();
+                String modelJson = request.modelJson();
+
+                String problem = validateModel(id, modelJson);
+                if (problem != null) {
+                    sendPlain(exchange, 400, problem);
                     return;
                 }
 
-                // Write files into the resource pack folder
-                FileConfiguration cfg = plugin.getPluginConfig();
-                String resourcePackPath = cfg.getString("resource-pack.path", "resourcepack");
-                Path packRoot = plugin.getDataFolder().toPath().resolve(resourcePackPath);
-
-                Path modelsItem = packRoot.resolve(Paths.get("assets", "minecraft", "models", "item"));
-                Path texturesItem = packRoot.resolve(Paths.get("assets", "minecraft", "textures", "item"));
-                Path items = packRoot.resolve(Paths.get("assets", "minecraft", "items"));
-
-                Files.createDirectories(modelsItem);
-                Files.createDirectories(texturesItem);
-                Files.createDirectories(items);
-
-                Path modelFile = modelsItem.resolve(id + ".json");
-                Path textureFile = texturesItem.resolve(id + ".png");
-                Path itemFile = items.resolve(id + ".json");
-
-                Files.writeString(modelFile, modelJson, StandardCharsets.UTF_8);
-                Files.write(textureFile, textureBytes);
-
-                if (!Files.exists(itemFile)) {
-                    String wrapper = """
-                            {
-                              "model": {
-                                "type": "minecraft:model",
-                                "model": "minecraft:item/%s"
-                              }
-                            }
-                            """.formatted(id);
-                    Files.writeString(itemFile, wrapper, StandardCharsets.UTF_8);
-                }
+                Path packRoot = packRoot();
+                createModelFolders(packRoot);
+                List<String> written = writeModel(packRoot, id, modelJson, request.texture());
+                finishImport(written, List.of(written.get(1)), 1);
 
                 plugin.getLogger().info("Imported model via web: " + id);
 
@@ -155,29 +389,163 @@ public class WebImportServer {
                 resp.addProperty("status", "ok");
                 resp.addProperty("id", id);
                 sendJson(exchange, 200, resp.toString());
+            } catch (ImportRequestReader.RejectedException e) {
+                sendPlain(exchange, e.status(), e.getMessage());
             } catch (Exception e) {
                 plugin.getLogger().warning("Web import failed: " + e.getMessage());
                 sendPlain(exchange, 500, "Internal server error");
             }
         }
+    }
+
+    /**
+     * Imports many models from one NDJSON body: one {@code /model-import} object per line.
+     * <p>
+     * Lines are parsed as they stream in and each valid model is handed to a pool of writer
+     * threads, so disk writes overlap with receiving the rest of the body. A bounded number of
+     * models is in flight at a time. Bad lines are reported and skipped. Once the body is done, all
+     * written files are optimized, deduplicated and indexed as a single delta. The response lists
+     * a result per line.
+     * </p>
+     */
+    private class BatchImportHandler implements HttpHandler {
 
-        private void sendPlain(HttpExchange exchange, int code, String msg) throws IOException {
-            byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
-            exchange.sendResponseHeaders(code, bytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(bytes);
+        private record Pending(int index, String id, Future<List<String>> written) {}
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!acceptPost(exchange)) return;
+
+            FileConfiguration cfg = plugin.getPluginConfig();
+            int maxItems = Math.max(1, cfg.getInt("web-import.max-batch-items", 1000));
+            int configured = cfg.getInt("imports.copy-threads", 0);
+            int threads = configured > 0 ? configured : Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+            Path packRoot = packRoot();
+            Map<Integer, JsonObject> results = new TreeMap<>();
+            List<String> written = new ArrayList<>();
+            List<String> textures = new ArrayList<>();
+            Set<String> ids = new HashSet<>();
+            Deque<Pending> pending = new ArrayDeque<>();
+            int failed = 0;
+            int status = 200;
+            String error = null;
+
+            AtomicInteger threadIds = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "ModelBrowser-batch-" + threadIds.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            try (InputStream is = exchange.getRequestBody()) {
+                createModelFolders(packRoot);
+                ImportRequestReader reader = ImportRequestReader.open(is, uploadsDir(),
+                        limits(cfg.getLong("web-import.max-batch-mb", 512)));
+
+                for (int index = 0; ; index++) {
+                    ImportRequestReader.ImportRequest request;
+                    try {
+                        request = reader.nextRequest();
+                    } catch (ImportRequestReader.RejectedException e) {
+                        if (e.fatal()) throw e;
+                        results.put(index, itemResult(index, null, e.getMessage()));
+                        failed++;
+                        reader.skipLine();
+                        continue;
+                    }
+                    if (request == null) break;
+
+                    if (index >= maxItems) {
+                        request.close();
+                        throw new ImportRequestReader.RejectedException(413, "More than " + maxItems + " models in one batch", true);
+                    }
+
+                    String id = request.id() != null ? request.id().trim() : null;
+                    String problem = request.id() == null || request.modelJson() == null || request.texture() == null
+                            ? "Missing required fields"
+                            : validateModel(id, request.modelJson());
+                    if (problem == null && !ids.add(id)) problem = "Duplicate id in batch";
+                    if (problem != null) {
+                        request.close();
+                        results.put(index, itemResult(index, id, problem));
+                        failed++;
+                        continue;
+                    }
+
+                    pending.add(new Pending(index, id, pool.submit(() -> {
+                        try (request) {
+                            return writeModel(packRoot, id, request.modelJson(), request.texture());
+                        }
+                    })));
+                    if (pending.size() >= threads * 4) {
+                        failed += collect(pending.poll(), results, written, textures);
+                    }
+                }
+            } catch (ImportRequestReader.RejectedException e) {
+                status = e.status();
+                error = e.getMessage();
+            } catch (Exception e) {
+                plugin.getLogger().warning("Web batch import failed: " + e.getMessage());
+                status = 500;
+                error = "Internal server error";
+            } finally {
+                // Whatever made it to disk is indexed, even if the body was cut short
+                while (!pending.isEmpty()) {
+                    failed += collect(pending.poll(), results, written, textures);
+                }
+                pool.shutdownNow();
+            }
+
+            try {
+                finishImport(written, textures, threads);
+            } catch (Exception e) {
+                plugin.getLogger().warning("Web batch import failed to index: " + e.getMessage());
+                status = 500;
+                error = "Internal server error";
             }
+
+            int imported = results.size() - failed;
+            plugin.getLogger().info("Imported " + imported + " model(s) via web batch (" + failed + " failed)");
+
+            JsonObject resp = new JsonObject();
+            resp.addProperty("status", error != null ? "error" : failed > 0 ? "partial" : "ok");
+            if (error != null) resp.addProperty("error", error);
+            resp.addProperty("imported", imported);
+            resp.addProperty("failed", failed);
+            JsonArray items = new JsonArray();
+            results.values().forEach(items::add);
+            resp.add("results", items);
+            sendJson(exchange, status, resp.toString());
         }
 
-        private void sendJson(HttpExchange exchange, int code, String json) throws IOException {
-            Headers headers = exchange.getResponseHeaders();
-            headers.add("Content-Type", "application/json");
-            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
-            exchange.sendResponseHeaders(code, bytes.length);
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(bytes);
+        /**
+         * Waits for one model's write and records its result; returns 1 if it failed.
+         */
+        private int collect(Pending item, Map<Integer, JsonObject> results, List<String> written, List<String> textures) {
+            try {
+                List<String> paths = item.written().get();
+                written.addAll(paths);
+                textures.add(paths.get(1));
+                results.put(item.index(), itemResult(item.index(), item.id(), null));
+                return 0;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.put(item.index(), itemResult(item.index(), item.id(), "Interrupted"));
+            } catch (ExecutionException e) {
+                plugin.getLogger().warning("Web batch import of " + item.id() + " failed: " + e.getCause().getMessage());
+                results.put(item.index(), itemResult(item.index(), item.id(), "Write failed"));
             }
+            return 1;
+        }
+
+        private JsonObject itemResult(int index, String id, String error) {
+            JsonObject result = new JsonObject();
+            result.addProperty("index", index);
+            if (id != null) result.addProperty("id", id);
+            result.addProperty("status", error == null ? "ok" : "error");
+            if (error != null) result.addProperty("error", error);
+            return result;
         }
     }
 }
-
@@ -0,0 +1,241 @@
+package com.waffle.modelBrowserPlugin.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Streams the {@code assets/} part of a zipped resource pack straight into the plugin's pack.
+ * <p>
+ * Nothing is extracted to a temp folder: each entry is inflated through a fixed-size buffer
+ * directly into a hidden {@code .part} file next to its final location and then moved into
+ * place. Entries are written in parallel ({@link ZipFile} supports concurrent entry streams).
+ * Entries that already exist with the same size and CRC are skipped, and so are entries whose
+ * pack copy was changed on purpose after an earlier import (see {@link SettledImports}) while the
+ * entry itself is unchanged. When several entries map to the same pack path, the last one wins.
+ * </p>
+ * <p>
+ * Only entries under an {@code assets/} folder are imported, so a pack wrapped in a single top
+ * folder ({@code MyPack/assets/...}) works too, while the archive's own {@code pack.mcmeta} never
+ * replaces ours. Entry names are normalised and rejected if they try to escape the pack root,
+ * and the entry count and total inflated size are capped while bytes are written, since
+ * the sizes in the zip headers cannot be trusted.
+ * </p>
+ */
+public final class ZipPackImporter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private ZipPackImporter() {
+        throw new UnsupportedOperationException("This is a utility class and cannot be instantiated");
+    }
+
+    /**
+     * Safety limits for a single archive.
+     *
+     * @param maxEntries    maximum number of imported entries
+     * @param maxTotalBytes maximum total inflated bytes
+     */
+    public record Limits(int maxEntries, long maxTotalBytes) {
+        public static Limits defaults() {
+            return new Limits(50_000, 2L * 1024 * 1024 * 1024);
+        }
+    }
+
+    /**
+     * Imports one archive into the pack.
+     *
+     * @param archive  the zip file
+     * @param packRoot root folder of the resource pack
+     * @param settled  stamps of entries whose pack copy was changed after an earlier import
+     * @param limits   safety limits
+     * @param threads  number of writer threads, {@code 0} for one per CPU core (max 8)
+     * @return manifest with pack-relative paths of added and changed files. If the inflated size
+     *         limit is reached, the import stops; the manifest then covers the files written so
+     *         far and {@code failed} names the archive with the reason.
+     * @throws IOException if the archive cannot be read or has too many entries
+     */
+    public static PackCopyEngine.Manifest extract(Path archive, Path packRoot, SettledImports settled, Limits limits,
+                                                  int threads) throws IOException {
+        Path root = packRoot.toAbsolutePath().normalize();
+        String archiveName = archive.getFileName().toString();
+
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            // One entry per target: wrapped copies (A/assets/x, B/assets/x) would race on the same file
+            Map<String, ZipEntry> byTarget = new LinkedHashMap<>();
+            Enumeration<? extends ZipEntry> enumeration = zip.entries();
+            while (enumeration.hasMoreElements()) {
+                ZipEntry entry = enumeration.nextElement();
+                if (entry.isDirectory()) continue;
+
+                String relative = toPackPath(entry.getName());
+                if (relative == null) continue;
+                if (!root.resolve(relative).normalize().startsWith(root)) {
+                    throw new IOException("Entry escapes the pack folder: " + entry.getName());
+                }
+                byTarget.put(relative, entry);
+                if (byTarget.size() > limits.maxEntries()) {
+                    throw new IOException("Archive has more than " + limits.maxEntries() + " entries");
+                }
+            }
+
+            Set<String> added = new ConcurrentSkipListSet<>();
+            Set<String> changed = new ConcurrentSkipListSet<>();
+            Map<String, String> failed = new ConcurrentHashMap<>();
+            AtomicInteger unchanged = new AtomicInteger();
+            AtomicLong totalBytes = new AtomicLong();
+            AtomicBoolean aborted = new AtomicBoolean();
+
+            int poolSize = threads > 0 ? threads : Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+            AtomicInteger threadIds = new AtomicInteger();
+            ExecutorService pool = Executors.newFixedThreadPool(poolSize, runnable -> {
+                Thread thread = new Thread(runnable, "ModelBrowser-unzip-" + threadIds.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            try {
+                List<Future<?>> futures = new ArrayList<>(byTarget.size());
+                for (Map.Entry<String, ZipEntry> item : byTarget.entrySet()) {
+                    String relative = item.getKey();
+                    ZipEntry entry = item.getValue();
+                    futures.add(pool.submit(() -> {
+                        if (aborted.get()) return;
+                        try {
+                            Path target = root.resolve(relative);
+                            boolean existed = Files.exists(target);
+                            if (settled.isSettled(relative, archiveName, entry.getSize(), entry.getCrc())
+                                    || existed && sameContent(entry, target)) {
+                                unchanged.incrementAndGet();
+                                return;
+                            }
+                            writeEntry(zip, entry, target, limits, totalBytes);
+                            settled.extracted(relative, archiveName, entry.getSize(), entry.getCrc());
+                            (existed ? changed : added).add(relative);
+                        } catch (LimitExceededException e) {
+                            aborted.set(true);
+                            failed.put(relative, e.getMessage());
+                        } catch (IOException e) {
+                            failed.put(relative, e.getClass().getSimpleName() + ": " + e.getMessage());
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Zip import interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Zip import task failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+
+            if (aborted.get()) {
+                // Files already moved into place stay in the manifest, so they still get wrappers and are indexed
+                failed.put(archiveName, "exceeds " + limits.maxTotalBytes()
+                        + " inflated bytes; import stopped");
+            }
+
+            return new PackCopyEngine.Manifest(List.copyOf(added), List.copyOf(changed), List.of(),
+                    unchanged.get(), totalBytes.get(), Map.copyOf(failed));
+        }
+    }
+
+    /**
+     * Maps an entry name to its pack-relative path, or {@code null} if it is not under assets/.
+     */
+    static String toPackPath(String entryName) {
+        String name = entryName.replace('\\', '/');
+        if (name.startsWith("/") || name.contains(":")) return null;
+
+        String[] parts = name.split("/");
+        int assets = -1;
+        for (int i = 0; i < parts.length; i++) {
+            if (parts[i].equals("..")) return null;
+            if (assets < 0 && parts[i].equals("assets")) assets = i;
+        }
+        if (assets < 0 || assets == parts.length - 1) return null;
+
+        StringBuilder relative = new StringBuilder();
+        for (int i = assets; i < parts.length; i++) {
+            if (parts[i].isEmpty() || parts[i].equals(".")) continue;
+            if (relative.length() > 0) relative.append('/');
+            relative.append(parts[i]);
+        }
+        String fileName = parts[parts.length - 1];
+        return fileName.startsWith(".") ? null : relative.toString();
+    }
+
+    private static boolean sameContent(ZipEntry entry, Path target) throws IOException {
+        if (entry.getSize() < 0 || entry.getCrc() < 0 || Files.size(target) != entry.getSize()) {
+            return false;
+        }
+
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue() == entry.getCrc();
+    }
+
+    private static void writeEntry(ZipFile zip, ZipEntry entry, Path target, Limits limits, AtomicLong totalBytes) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling("." + target.getFileName() + ".part");
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = zip.getInputStream(entry);
+             OutputStream out = Files.newOutputStream(temp, StandardOpenOption.CREATE,
+                     StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (totalBytes.addAndGet(read) > limits.maxTotalBytes()) {
+                    throw new LimitExceededException("inflated size limit reached");
+                }
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        if (entry.getTime() > 0) {
+            Files.setLastModifiedTime(temp, FileTime.fromMillis(entry.getTime()));
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class LimitExceededException extends IOException {
+        LimitExceededException(String message) {
+            super(message);
+        }
+    }
+}